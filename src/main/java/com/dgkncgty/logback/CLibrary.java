@@ -0,0 +1,69 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import com.sun.jna.LastErrorException;
+import com.sun.jna.Library;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+
+/**
+ * Binding to the few libc functions needed to talk to journald sockets
+ * directly.
+ */
+interface CLibrary extends Library {
+
+    int AF_UNIX = 1;
+
+    int SOCK_DGRAM = 2;
+
+    int SOCK_CLOEXEC = 0x80000;
+
+    int SOL_SOCKET = 1;
+
+    int SO_SNDBUF = 7;
+
+    int SCM_RIGHTS = 1;
+
+    int MSG_NOSIGNAL = 0x4000;
+
+    int MFD_CLOEXEC = 1;
+
+    int MFD_ALLOW_SEALING = 2;
+
+    int F_ADD_SEALS = 1033;
+
+    /** F_SEAL_SEAL | F_SEAL_SHRINK | F_SEAL_GROW | F_SEAL_WRITE */
+    int ALL_SEALS = 0x1 | 0x2 | 0x4 | 0x8;
+
+    int EMSGSIZE = 90;
+
+    int ENOBUFS = 105;
+
+    int socket(int domain, int type, int protocol) throws LastErrorException;
+
+    int setsockopt(int fd, int level, int name, Pointer value, int length) throws LastErrorException;
+
+    int sendmsg(int fd, Pointer message, int flags) throws LastErrorException;
+
+    NativeLong write(int fd, Pointer buffer, NativeLong count) throws LastErrorException;
+
+    int memfd_create(String name, int flags) throws LastErrorException;
+
+    int fcntl(int fd, int command, int argument) throws LastErrorException;
+
+    int close(int fd);
+}
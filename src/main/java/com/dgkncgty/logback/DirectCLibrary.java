@@ -0,0 +1,48 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import com.sun.jna.LastErrorException;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+/**
+ * Direct mapping of {@code sendmsg}, on the path of every entry sent through
+ * a journal socket.
+ *
+ * <p>Calls through a {@link CLibrary} proxy box their arguments into a new
+ * array each time, about 80 bytes per call. Directly mapped methods are
+ * bound to the native function once, and pass their arguments as is.
+ */
+final class DirectCLibrary {
+
+    static {
+        Native.register("c");
+    }
+
+    private DirectCLibrary() {}
+
+    /**
+     * Binds the native methods, if not done yet.
+     *
+     * @throws UnsatisfiedLinkError if the C library cannot be loaded
+     */
+    static void load() {
+        // done by the static initializer
+    }
+
+    static native int sendmsg(int fd, Pointer message, int flags) throws LastErrorException;
+}
@@ -0,0 +1,203 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import ch.qos.logback.core.spi.ContextAware;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker guarding the calls to the journal.
+ *
+ * <p>The breaker opens after a configurable number of consecutive failures.
+ * While open, events are short-circuited without touching the journal. Once
+ * the backoff delay has elapsed, a single probe is let through: a success
+ * closes the breaker, a failure opens it again with a doubled backoff.
+ *
+ * <p>Failures are not reported one by one: the first one is reported with its
+ * cause, and the following ones are aggregated into a single "N failures in
+ * last M seconds" status per reporting interval.
+ *
+ * <p>This class is not thread-safe, callers are expected to hold the lock of
+ * the owning appender.
+ */
+final class JournalCircuitBreaker {
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final ContextAware owner;
+
+    private final int threshold;
+
+    private final long initialBackoffNanos;
+
+    private final long maxBackoffNanos;
+
+    private final long reportIntervalNanos;
+
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+
+    private int consecutiveFailures = 0;
+
+    private long backoffNanos;
+
+    private long nextProbeNanos;
+
+    private long failuresInWindow = 0;
+
+    private long shortCircuitedInWindow = 0;
+
+    private long windowStartNanos;
+
+    private String lastFailureMessage;
+
+    JournalCircuitBreaker(
+            ContextAware owner,
+            int threshold,
+            long initialBackoffMillis,
+            long maxBackoffMillis,
+            long reportIntervalMillis) {
+        this(owner, threshold, initialBackoffMillis, maxBackoffMillis, reportIntervalMillis, System::nanoTime);
+    }
+
+    JournalCircuitBreaker(
+            ContextAware owner,
+            int threshold,
+            long initialBackoffMillis,
+            long maxBackoffMillis,
+            long reportIntervalMillis,
+            LongSupplier clock) {
+        this.owner = owner;
+        this.threshold = threshold;
+        this.initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, initialBackoffMillis));
+        this.maxBackoffNanos = Math.max(initialBackoffNanos, TimeUnit.MILLISECONDS.toNanos(maxBackoffMillis));
+        this.reportIntervalNanos = TimeUnit.MILLISECONDS.toNanos(reportIntervalMillis);
+        this.clock = clock;
+        this.backoffNanos = initialBackoffNanos;
+        // make sure the very first failure is reported right away
+        this.windowStartNanos = clock.getAsLong() - reportIntervalNanos;
+    }
+
+    /**
+     * Determines whether the next call may go to the journal. When this
+     * returns {@code false}, the event is counted as short-circuited.
+     */
+    boolean allowRequest() {
+        if (tryAcquire()) {
+            return true;
+        }
+        long now = clock.getAsLong();
+        shortCircuitedInWindow++;
+        if (now - windowStartNanos >= reportIntervalNanos) {
+            report(now);
+        }
+        return false;
+    }
+
+    /**
+     * Same as {@link #allowRequest()}, without counting the refused calls.
+     */
+    boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN && clock.getAsLong() - nextProbeNanos >= 0) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+        return false;
+    }
+
+    void onSuccess() {
+        consecutiveFailures = 0;
+        if (state != State.CLOSED) {
+            state = State.CLOSED;
+            backoffNanos = initialBackoffNanos;
+            report(clock.getAsLong());
+            owner.addInfo("systemd journal is reachable again, closing circuit breaker");
+        }
+    }
+
+    void onFailure(String message, Throwable cause) {
+        long now = clock.getAsLong();
+        failuresInWindow++;
+        consecutiveFailures++;
+        lastFailureMessage = message;
+
+        if (now - windowStartNanos >= reportIntervalNanos) {
+            if (failuresInWindow == 1 && shortCircuitedInWindow == 0) {
+                owner.addError(message, cause);
+                failuresInWindow = 0;
+                windowStartNanos = now;
+            } else {
+                report(now);
+            }
+        }
+
+        if (state == State.HALF_OPEN) {
+            backoffNanos = Math.min(maxBackoffNanos, backoffNanos * 2);
+            open(now);
+        } else if (state == State.CLOSED && threshold > 0 && consecutiveFailures >= threshold) {
+            open(now);
+            owner.addWarn("Opening circuit breaker after " + consecutiveFailures
+                    + " consecutive failures, retrying in "
+                    + TimeUnit.NANOSECONDS.toMillis(backoffNanos) + " ms");
+        }
+    }
+
+    /**
+     * Reports whatever failures were aggregated and not reported yet.
+     */
+    void flush() {
+        report(clock.getAsLong());
+    }
+
+    State getState() {
+        return state;
+    }
+
+    private void open(long now) {
+        state = State.OPEN;
+        nextProbeNanos = now + backoffNanos;
+    }
+
+    private void report(long now) {
+        if (failuresInWindow > 0 || shortCircuitedInWindow > 0) {
+            long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(now - windowStartNanos));
+            StringBuilder sb = new StringBuilder();
+            sb.append(failuresInWindow)
+                    .append(" failures in last ")
+                    .append(seconds)
+                    .append(" seconds");
+            if (shortCircuitedInWindow > 0) {
+                sb.append(", ").append(shortCircuitedInWindow).append(" events short-circuited");
+            }
+            if (lastFailureMessage != null) {
+                sb.append(" (last error: ").append(lastFailureMessage).append(')');
+            }
+            owner.addError(sb.toString());
+        }
+        failuresInWindow = 0;
+        shortCircuitedInWindow = 0;
+        windowStartNanos = now;
+    }
+}
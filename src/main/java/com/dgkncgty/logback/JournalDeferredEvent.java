@@ -0,0 +1,313 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.LoggerContextVO;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import ch.qos.logback.core.Layout;
+import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
+import ch.qos.logback.core.pattern.PatternLayoutBase;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import org.slf4j.Marker;
+import org.slf4j.event.KeyValuePair;
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * A view of an event handed over to a writer thread before its message is
+ * formatted.
+ *
+ * <p>What depends on the logging thread, i.e. its name and MDC, is captured
+ * when the view is created, along with a snapshot of the arguments: immutable
+ * ones are kept as is, the others are turned into strings right away since
+ * they may change once the logging call returned. The message is formatted
+ * the first time it is asked for, on the writer thread.
+ *
+ * <p>Caller data is only kept if it was asked for, or already computed, since
+ * it cannot be computed away from the logging thread. See
+ * {@link #needsCallerData(Encoder)}.
+ */
+final class JournalDeferredEvent implements ILoggingEvent {
+
+    private static final StackTraceElement[] NO_CALLER_DATA = new StackTraceElement[0];
+
+    /** conversion words of logback patterns reading caller data */
+    private static final Pattern CALLER_CONVERSION =
+            Pattern.compile("%[-.0-9]*(caller|class|file|line|method|C|F|L|M)(?![A-Za-z])");
+
+    /** rough size of the event and of this view, without their contents */
+    private static final int EVENT_SIZE = 256;
+
+    /** rough size of an object reference, a map entry or a stack frame */
+    private static final int REFERENCE_SIZE = 16;
+
+    private static final int ENTRY_SIZE = 48;
+
+    private static final int FRAME_SIZE = 128;
+
+    /** rough size of a string, without its characters */
+    private static final int STRING_SIZE = 40;
+
+    private final ILoggingEvent event;
+
+    private final String threadName;
+
+    private final Map<String, String> mdc;
+
+    private final Object[] arguments;
+
+    private final List<KeyValuePair> keyValuePairs;
+
+    private final StackTraceElement[] callerData;
+
+    private String formattedMessage;
+
+    JournalDeferredEvent(ILoggingEvent event, boolean includeCallerData) {
+        this.event = event;
+        this.threadName = event.getThreadName();
+        this.mdc = event.getMDCPropertyMap();
+        this.arguments = snapshot(event.getArgumentArray());
+        this.keyValuePairs = snapshot(event.getKeyValuePairs());
+        this.callerData = includeCallerData || event.hasCallerData() ? event.getCallerData() : NO_CALLER_DATA;
+    }
+
+    /**
+     * Whether an encoder may print caller data, e.g. with {@code %caller},
+     * {@code %line} or {@code %method}, in which case it must be computed on
+     * the logging thread. Encoders whose layout is not a pattern are assumed
+     * to need it.
+     */
+    static boolean needsCallerData(Encoder<ILoggingEvent> encoder) {
+        if (encoder == null) {
+            return false;
+        }
+        if (!(encoder instanceof LayoutWrappingEncoder)) {
+            return true;
+        }
+        Layout<ILoggingEvent> layout = ((LayoutWrappingEncoder<ILoggingEvent>) encoder).getLayout();
+        if (!(layout instanceof PatternLayoutBase)) {
+            return true;
+        }
+        String pattern = ((PatternLayoutBase<ILoggingEvent>) layout).getPattern();
+        return pattern != null && CALLER_CONVERSION.matcher(pattern).find();
+    }
+
+    private static Object[] snapshot(Object[] arguments) {
+        if (arguments == null) {
+            return null;
+        }
+        Object[] snapshot = new Object[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            snapshot[i] = snapshot(arguments[i]);
+        }
+        return snapshot;
+    }
+
+    private static List<KeyValuePair> snapshot(List<KeyValuePair> keyValuePairs) {
+        if (keyValuePairs == null || keyValuePairs.isEmpty()) {
+            return keyValuePairs;
+        }
+        List<KeyValuePair> snapshot = new ArrayList<>(keyValuePairs.size());
+        for (KeyValuePair pair : keyValuePairs) {
+            snapshot.add(isImmutable(pair.value) ? pair : new KeyValuePair(pair.key, String.valueOf(pair.value)));
+        }
+        return snapshot;
+    }
+
+    private static Object snapshot(Object argument) {
+        if (isImmutable(argument) || argument instanceof Throwable) {
+            return argument;
+        }
+        // rendered the way the message formatter would do, arrays included
+        return MessageFormatter.basicArrayFormat("{}", new Object[] {argument});
+    }
+
+    static boolean isImmutable(Object value) {
+        return value == null
+                || value instanceof String
+                || value instanceof Boolean
+                || value instanceof Character
+                || value instanceof Integer
+                || value instanceof Long
+                || value instanceof Short
+                || value instanceof Byte
+                || value instanceof Double
+                || value instanceof Float
+                || value instanceof BigInteger && value.getClass() == BigInteger.class
+                || value instanceof BigDecimal && value.getClass() == BigDecimal.class
+                || value instanceof Enum
+                || value instanceof UUID
+                || value instanceof Instant;
+    }
+
+    /**
+     * Estimates the memory kept alive by this view until it is encoded: the
+     * message, arguments, MDC, key/value pairs, exception and caller data.
+     * Strings are counted as one byte per character, as most are Latin-1.
+     */
+    int retainedSize() {
+        long size = EVENT_SIZE + sizeOf(event.getMessage()) + sizeOf(threadName);
+        if (arguments != null) {
+            for (Object argument : arguments) {
+                size += REFERENCE_SIZE + (argument instanceof String ? sizeOf((String) argument) : REFERENCE_SIZE);
+            }
+        }
+        if (mdc != null) {
+            for (Map.Entry<String, String> entry : mdc.entrySet()) {
+                size += ENTRY_SIZE + sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+            }
+        }
+        if (keyValuePairs != null) {
+            for (KeyValuePair pair : keyValuePairs) {
+                size += ENTRY_SIZE
+                        + sizeOf(pair.key)
+                        + (pair.value instanceof String ? sizeOf((String) pair.value) : REFERENCE_SIZE);
+            }
+        }
+        for (IThrowableProxy proxy = event.getThrowableProxy(); proxy != null; proxy = proxy.getCause()) {
+            StackTraceElementProxy[] stack = proxy.getStackTraceElementProxyArray();
+            size += EVENT_SIZE
+                    + sizeOf(proxy.getClassName())
+                    + sizeOf(proxy.getMessage())
+                    + (stack == null ? 0 : (long) stack.length * FRAME_SIZE);
+        }
+        size += (long) callerData.length * FRAME_SIZE;
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    private static long sizeOf(String value) {
+        return value == null ? 0 : STRING_SIZE + value.length();
+    }
+
+    /**
+     * The event this view was created from.
+     */
+    ILoggingEvent getEvent() {
+        return event;
+    }
+
+    @Override
+    public String getThreadName() {
+        return threadName;
+    }
+
+    @Override
+    public Level getLevel() {
+        return event.getLevel();
+    }
+
+    @Override
+    public String getMessage() {
+        return event.getMessage();
+    }
+
+    @Override
+    public Object[] getArgumentArray() {
+        return arguments;
+    }
+
+    @Override
+    public String getFormattedMessage() {
+        if (formattedMessage == null) {
+            String message = event.getMessage();
+            formattedMessage = arguments == null
+                    ? message
+                    : MessageFormatter.arrayFormat(message, arguments).getMessage();
+        }
+        return formattedMessage;
+    }
+
+    @Override
+    public String getLoggerName() {
+        return event.getLoggerName();
+    }
+
+    @Override
+    public LoggerContextVO getLoggerContextVO() {
+        return event.getLoggerContextVO();
+    }
+
+    @Override
+    public IThrowableProxy getThrowableProxy() {
+        return event.getThrowableProxy();
+    }
+
+    @Override
+    public StackTraceElement[] getCallerData() {
+        return callerData;
+    }
+
+    @Override
+    public boolean hasCallerData() {
+        return callerData.length > 0;
+    }
+
+    @Override
+    public List<Marker> getMarkerList() {
+        return event.getMarkerList();
+    }
+
+    @Override
+    public Map<String, String> getMDCPropertyMap() {
+        return mdc;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public Map<String, String> getMdc() {
+        return mdc;
+    }
+
+    @Override
+    public long getTimeStamp() {
+        return event.getTimeStamp();
+    }
+
+    @Override
+    public int getNanoseconds() {
+        return event.getNanoseconds();
+    }
+
+    @Override
+    public Instant getInstant() {
+        return event.getInstant();
+    }
+
+    @Override
+    public long getSequenceNumber() {
+        return event.getSequenceNumber();
+    }
+
+    @Override
+    public List<KeyValuePair> getKeyValuePairs() {
+        return keyValuePairs;
+    }
+
+    @Override
+    public void prepareForDeferredProcessing() {
+        getFormattedMessage();
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A serialized journal entry, made of {@code KEY=value} fields.
+ *
+ * <p>Fields are encoded to UTF-8 directly into a reusable byte array, each of
+ * them prefixed with its length as a big-endian 32 bits integer. This layout
+ * is the serialized form of the entry, so that it can be copied as is to
+ * persistent storage, and each field can be handed to the journal as a single
+ * {@code iovec} without any further copy.
+ */
+final class JournalEntry {
+
+    private static final byte[] NULL_VALUE = "(null)".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buffer;
+
+    private int size = 0;
+
+    private int[] offsets = new int[32];
+
+    private int fieldCount = 0;
+
+    /** start of the field being written, -1 when no field is open */
+    private int fieldStart = -1;
+
+    /** hint used by transports spreading entries over several journals */
+    private int routingKey = 0;
+
+    JournalEntry() {
+        this(512);
+    }
+
+    JournalEntry(int initialCapacity) {
+        buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    /**
+     * Clears this entry so that it can be reused for another one.
+     */
+    void reset() {
+        size = 0;
+        fieldCount = 0;
+        fieldStart = -1;
+        routingKey = 0;
+    }
+
+    int routingKey() {
+        return routingKey;
+    }
+
+    void routingKey(int routingKey) {
+        this.routingKey = routingKey;
+    }
+
+    /**
+     * Adds a field whose value is a character sequence. {@code null} values
+     * are written as {@code (null)}, as printf would do.
+     */
+    JournalEntry add(byte[] keyPrefix, CharSequence value) {
+        beginField(keyPrefix);
+        if (value == null) {
+            appendNull();
+        } else {
+            appendUtf8(value);
+        }
+        return endField();
+    }
+
+    /**
+     * Adds a field whose value is a number.
+     */
+    JournalEntry add(byte[] keyPrefix, long value) {
+        beginField(keyPrefix);
+        appendLong(value);
+        return endField();
+    }
+
+    /**
+     * Adds a field whose value is raw bytes.
+     */
+    JournalEntry add(byte[] keyPrefix, byte[] value, int offset, int length) {
+        beginField(keyPrefix);
+        appendBytes(value, offset, length);
+        return endField();
+    }
+
+    /**
+     * Adds a complete pre-encoded {@code KEY=value} field.
+     */
+    JournalEntry addEncoded(byte[] field) {
+        beginField(field);
+        return endField();
+    }
+
+    /**
+     * Opens a new field starting with the given {@code KEY=} prefix. The value
+     * is then written with the {@code append*} methods, and the field is closed
+     * with {@link #endField()}.
+     */
+    JournalEntry beginField(byte[] keyPrefix) {
+        ensureCapacity(4 + keyPrefix.length);
+        fieldStart = size;
+        size += 4;
+        System.arraycopy(keyPrefix, 0, buffer, size, keyPrefix.length);
+        size += keyPrefix.length;
+        return this;
+    }
+
+    JournalEntry endField() {
+        int length = size - fieldStart - 4;
+        writeInt(buffer, fieldStart, length);
+        if (fieldCount == offsets.length) {
+            offsets = Arrays.copyOf(offsets, fieldCount * 2);
+        }
+        offsets[fieldCount++] = fieldStart + 4;
+        fieldStart = -1;
+        return this;
+    }
+
+    JournalEntry appendBytes(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, buffer, size, length);
+        size += length;
+        return this;
+    }
+
+    /**
+     * Writes {@code (null)}, the way null values are written in every field.
+     */
+    JournalEntry appendNull() {
+        return appendBytes(NULL_VALUE, 0, NULL_VALUE.length);
+    }
+
+    JournalEntry appendByte(byte b) {
+        ensureCapacity(1);
+        buffer[size++] = b;
+        return this;
+    }
+
+    JournalEntry appendLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            return appendBytes(MIN_LONG, 0, MIN_LONG.length);
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            buffer[size++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int pos = size + digits;
+        do {
+            buffer[--pos] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        size += digits;
+        return this;
+    }
+
+    JournalEntry appendUtf8(CharSequence value) {
+        int length = value.length();
+        // worst case is 3 bytes per UTF-16 char
+        ensureCapacity(length * 3);
+        byte[] buf = buffer;
+        int pos = size;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xc0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c)
+                    && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                buf[pos++] = (byte) (0xf0 | (cp >> 18));
+                buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, same replacement as String.getBytes
+                buf[pos++] = '?';
+            } else {
+                buf[pos++] = (byte) (0xe0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buf[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        size = pos;
+        return this;
+    }
+
+    int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Offset in {@link #array()} of the {@code KEY=value} bytes of a field.
+     */
+    int fieldOffset(int index) {
+        return offsets[index];
+    }
+
+    int fieldLength(int index) {
+        return readInt(buffer, offsets[index] - 4);
+    }
+
+    /**
+     * The backing array, holding the serialized entry in its first
+     * {@link #size()} bytes.
+     */
+    byte[] array() {
+        return buffer;
+    }
+
+    /**
+     * The size of the serialized entry.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns field at given index as a string, mostly useful for testing and
+     * debugging purpose.
+     */
+    String field(int index) {
+        return new String(buffer, fieldOffset(index), fieldLength(index), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Replaces the content of this entry with a serialized one.
+     *
+     * @throws IllegalArgumentException if the serialized form is malformed
+     */
+    JournalEntry readFrom(ByteBuffer source, int length) {
+        reset();
+        ensureCapacity(length);
+        source.get(buffer, 0, length);
+        int pos = 0;
+        while (pos < length) {
+            if (pos + 4 > length) {
+                throw new IllegalArgumentException("Truncated journal entry");
+            }
+            int fieldLength = readInt(buffer, pos);
+            if (fieldLength < 0 || pos + 4 + fieldLength > length) {
+                throw new IllegalArgumentException("Truncated journal entry");
+            }
+            if (fieldCount == offsets.length) {
+                offsets = Arrays.copyOf(offsets, fieldCount * 2);
+            }
+            offsets[fieldCount++] = pos + 4;
+            pos += 4 + fieldLength;
+        }
+        size = length;
+        return this;
+    }
+
+    /**
+     * Copies the serialized entry to the given buffer.
+     */
+    void writeTo(ByteBuffer target) {
+        target.put(buffer, 0, size);
+    }
+
+    /**
+     * Size of this entry in the journal native protocol, which is also the
+     * field encoding of the journal export format.
+     */
+    int nativeFormatLength() {
+        int length = 0;
+        for (int i = 0; i < fieldCount; i++) {
+            int offset = offsets[i];
+            int fieldLength = fieldLength(i);
+            if (indexOf((byte) '\n', offset, offset + fieldLength) < 0) {
+                length += fieldLength + 1;
+            } else {
+                // KEY\n<le64 length>value\n, the '=' is dropped
+                length += fieldLength + 8 + 1;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes this entry in the journal native protocol: fields whose value
+     * has no newline are written as {@code KEY=value\n}, the others as
+     * {@code KEY\n}, the value length as a little-endian 64 bits integer,
+     * the value and {@code \n}.
+     *
+     * @return the position right after the written entry
+     */
+    int writeNativeFormat(byte[] target, int pos) {
+        for (int i = 0; i < fieldCount; i++) {
+            int offset = offsets[i];
+            int fieldLength = fieldLength(i);
+            int end = offset + fieldLength;
+            if (indexOf((byte) '\n', offset, end) < 0) {
+                System.arraycopy(buffer, offset, target, pos, fieldLength);
+                pos += fieldLength;
+            } else {
+                int eq = indexOf((byte) '=', offset, end);
+                int keyLength = eq - offset;
+                long valueLength = end - eq - 1;
+                System.arraycopy(buffer, offset, target, pos, keyLength);
+                pos += keyLength;
+                target[pos++] = '\n';
+                for (int b = 0; b < 8; b++) {
+                    target[pos++] = (byte) (valueLength >>> (8 * b));
+                }
+                System.arraycopy(buffer, eq + 1, target, pos, (int) valueLength);
+                pos += (int) valueLength;
+            }
+            target[pos++] = '\n';
+        }
+        return pos;
+    }
+
+    private int indexOf(byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+
+    static void writeInt(byte[] bytes, int pos, int value) {
+        bytes[pos] = (byte) (value >>> 24);
+        bytes[pos + 1] = (byte) (value >>> 16);
+        bytes[pos + 2] = (byte) (value >>> 8);
+        bytes[pos + 3] = (byte) value;
+    }
+
+    static int readInt(byte[] bytes, int pos) {
+        return ((bytes[pos] & 0xff) << 24)
+                | ((bytes[pos + 1] & 0xff) << 16)
+                | ((bytes[pos + 2] & 0xff) << 8)
+                | (bytes[pos + 3] & 0xff);
+    }
+}
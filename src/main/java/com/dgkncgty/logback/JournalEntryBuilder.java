@@ -0,0 +1,102 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds the entries sent by a {@link JournalWriter}, encoding each field as
+ * it is added into a buffer reused from one entry to the next.
+ *
+ * <p>Field names must be valid journal field names: uppercase letters, digits
+ * and underscores, not starting with a digit or an underscore. Their encoded
+ * form is cached by the writer, so that adding a field allocates nothing.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class JournalEntryBuilder {
+
+    private static final byte[] MESSAGE = "MESSAGE=".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] PRIORITY = "PRIORITY=".getBytes(StandardCharsets.US_ASCII);
+
+    private final JournalWriter writer;
+
+    final JournalEntry entry = new JournalEntry();
+
+    JournalEntryBuilder(JournalWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Adds the {@code MESSAGE} field.
+     */
+    public JournalEntryBuilder message(CharSequence message) {
+        entry.add(MESSAGE, message);
+        return this;
+    }
+
+    /**
+     * Adds the {@code PRIORITY} field, from 0 for emergencies to 7 for debug
+     * messages, as syslog levels.
+     */
+    public JournalEntryBuilder priority(int priority) {
+        entry.add(PRIORITY, priority);
+        return this;
+    }
+
+    /**
+     * Adds a field with a numeric value.
+     *
+     * @throws IllegalArgumentException if the name is not a valid journal
+     *     field name
+     */
+    public JournalEntryBuilder field(String name, long value) {
+        entry.add(writer.fieldPrefix(name), value);
+        return this;
+    }
+
+    /**
+     * Adds a field with a textual value, written as {@code (null)} if
+     * {@code null}.
+     *
+     * @throws IllegalArgumentException if the name is not a valid journal
+     *     field name
+     */
+    public JournalEntryBuilder field(String name, CharSequence value) {
+        entry.add(writer.fieldPrefix(name), value);
+        return this;
+    }
+
+    /**
+     * Sends the entry through the writer, and clears this builder for the
+     * next one.
+     *
+     * @throws IOException if the entry could not be delivered
+     */
+    public void send() throws IOException {
+        writer.write(this);
+    }
+
+    /**
+     * Discards the fields added so far.
+     */
+    public JournalEntryBuilder reset() {
+        entry.reset();
+        return this;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File, or standard output, receiving the batches of entries written by the
+ * {@link JournalExportTransport} instances of an appender, which may belong to
+ * several writer threads.
+ *
+ * <p>Batches are written whole, so that the entries of different threads are
+ * never interleaved. Once a file reaches its maximum size, it is rotated to
+ * {@code file.1}, the previous {@code file.1} to {@code file.2}, and so on, and
+ * the oldest one is deleted. Files are only rotated between batches, so each
+ * of them can be imported on its own.
+ *
+ * <p>This class is thread-safe.
+ */
+final class JournalExportFile implements JournalExportTransport.Target {
+
+    /** path designating the standard output */
+    static final String STANDARD_OUTPUT = "-";
+
+    private final File file;
+
+    private final long maxSize;
+
+    private final int maxFiles;
+
+    private final JournalExportTransport.Target.Lane lane = new JournalExportTransport.Target.Lane() {
+        @Override
+        public void write(ByteBuffer batch) throws IOException {
+            JournalExportFile.this.write(batch);
+        }
+
+        @Override
+        public void release() {
+            JournalExportFile.this.release();
+        }
+    };
+
+    private FileChannel channel;
+
+    private long size;
+
+    private int users = 0;
+
+    /**
+     * @param path the path of the file, or {@code -} for the standard output
+     * @param maxSize the size from which the file is rotated, 0 for no limit
+     * @param maxFiles the number of rotated files kept
+     */
+    JournalExportFile(String path, long maxSize, int maxFiles) {
+        this.file = STANDARD_OUTPUT.equals(path) ? null : new File(path);
+        this.maxSize = maxSize;
+        this.maxFiles = Math.max(0, maxFiles);
+    }
+
+    /**
+     * Opens the file for one more transport, all of them writing to the same
+     * lane.
+     */
+    @Override
+    public synchronized JournalExportTransport.Target.Lane acquire() throws IOException {
+        if (channel == null) {
+            open();
+        }
+        users++;
+        return lane;
+    }
+
+    /**
+     * Closes the file once no transport uses it anymore.
+     */
+    synchronized void release() {
+        if (users > 0 && --users == 0) {
+            close();
+        }
+    }
+
+    /**
+     * Writes a batch of whole entries, rotating the file first if the batch
+     * would make it exceed its maximum size.
+     */
+    synchronized void write(ByteBuffer batch) throws IOException {
+        if (channel == null) {
+            open();
+        }
+        if (file != null && maxSize > 0 && size > 0 && size + batch.remaining() > maxSize) {
+            rotate();
+        }
+        try {
+            while (batch.hasRemaining()) {
+                size += channel.write(batch);
+            }
+        } catch (IOException e) {
+            // reopened with the next batch
+            close();
+            throw e;
+        }
+    }
+
+    private void open() throws IOException {
+        if (file == null) {
+            channel = new FileOutputStream(FileDescriptor.out).getChannel();
+            size = 0;
+            return;
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+        channel = FileChannel.open(
+                file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+    }
+
+    private void rotate() throws IOException {
+        close();
+        if (maxFiles == 0) {
+            Files.deleteIfExists(file.toPath());
+        } else {
+            Files.deleteIfExists(rotated(maxFiles).toPath());
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                File older = rotated(i);
+                if (older.exists()) {
+                    Files.move(older.toPath(), rotated(i + 1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file.toPath(), rotated(1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        open();
+    }
+
+    File rotated(int index) {
+        return new File(file.getPath() + "." + index);
+    }
+
+    private void close() {
+        if (channel != null) {
+            // the standard output is left open
+            if (file != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // nothing more can be done
+                }
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.LongSupplier;
+
+/**
+ * Transport writing entries in the journal export format to a file or to the
+ * standard output, for environments without journald, such as containers,
+ * or uploading them to {@code systemd-journal-remote}. Files can be imported
+ * later on with {@code systemd-journal-remote} too.
+ *
+ * <p>Each entry is written as its fields in the journal native protocol,
+ * which keeps binary and multi-line values intact, followed by an empty line.
+ * Entries start with a {@code __REALTIME_TIMESTAMP} field, taken from the
+ * {@code EVENT_TIMESTAMP_USEC} field of the entry if any, or the current time
+ * otherwise.
+ *
+ * <p>Entries are buffered and written many at a time: the buffer is written
+ * when it is full and when {@link #flush()} is called. What the target fails
+ * to write stays in the buffer, ahead of the entries sent afterwards, and is
+ * written again with the next flush.
+ */
+final class JournalExportTransport implements JournalTransport {
+
+    /**
+     * Where the batches of entries go, shared by the transports of the writer
+     * threads of an appender, and thus thread-safe.
+     */
+    interface Target {
+        /**
+         * Gets ready for one more transport.
+         *
+         * @return the lane the transport writes its batches to
+         */
+        Lane acquire() throws IOException;
+
+        /**
+         * The batches of one transport, written in order.
+         */
+        interface Lane {
+            /**
+             * Writes a batch of whole entries, leaving the position of the
+             * batch after the bytes actually written if it fails.
+             */
+            void write(ByteBuffer batch) throws IOException;
+
+            /**
+             * Releases the resources held for the transport, and those of the
+             * target once no transport uses it anymore.
+             */
+            void release();
+        }
+    }
+
+    private static final byte[] REALTIME_TIMESTAMP = "__REALTIME_TIMESTAMP=".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] EVENT_TIMESTAMP_USEC = "EVENT_TIMESTAMP_USEC=".getBytes(StandardCharsets.US_ASCII);
+
+    private final Target target;
+
+    private Target.Lane lane;
+
+    private final LongSupplier clock;
+
+    private final byte[] buffer;
+
+    private int position = 0;
+
+    private boolean started = false;
+
+    JournalExportTransport(Target target, int bufferSize) {
+        this(target, bufferSize, System::currentTimeMillis);
+    }
+
+    JournalExportTransport(Target target, int bufferSize, LongSupplier clock) {
+        this.target = target;
+        this.clock = clock;
+        this.buffer = new byte[Math.max(1024, bufferSize)];
+    }
+
+    @Override
+    public void start() throws IOException {
+        if (!started) {
+            lane = target.acquire();
+            started = true;
+        }
+    }
+
+    @Override
+    public void send(JournalEntry entry) throws IOException {
+        int timestamp = findField(entry, EVENT_TIMESTAMP_USEC);
+        int timestampLength = timestamp < 0 ? 20 : entry.fieldLength(timestamp) - EVENT_TIMESTAMP_USEC.length;
+        int length = REALTIME_TIMESTAMP.length + timestampLength + 1 + entry.nativeFormatLength() + 1;
+        if (buffer.length - position < length) {
+            flush();
+        }
+        if (buffer.length < length) {
+            // larger than the buffer, written on its own
+            byte[] large = new byte[length];
+            int end = writeEntry(entry, timestamp, large, 0);
+            lane.write(ByteBuffer.wrap(large, 0, end));
+        } else {
+            position = writeEntry(entry, timestamp, buffer, position);
+        }
+    }
+
+    private int writeEntry(JournalEntry entry, int timestamp, byte[] target, int pos) {
+        System.arraycopy(REALTIME_TIMESTAMP, 0, target, pos, REALTIME_TIMESTAMP.length);
+        pos += REALTIME_TIMESTAMP.length;
+        if (timestamp < 0) {
+            pos = writeLong(clock.getAsLong() * 1000, target, pos);
+        } else {
+            int length = entry.fieldLength(timestamp) - EVENT_TIMESTAMP_USEC.length;
+            System.arraycopy(
+                    entry.array(), entry.fieldOffset(timestamp) + EVENT_TIMESTAMP_USEC.length, target, pos, length);
+            pos += length;
+        }
+        target[pos++] = '\n';
+        pos = entry.writeNativeFormat(target, pos);
+        target[pos++] = '\n';
+        return pos;
+    }
+
+    private static int writeLong(long value, byte[] target, int pos) {
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int end = pos + digits;
+        do {
+            target[--end] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        return pos + digits;
+    }
+
+    private static int findField(JournalEntry entry, byte[] prefix) {
+        byte[] array = entry.array();
+        for (int i = 0; i < entry.fieldCount(); i++) {
+            if (entry.fieldLength(i) < prefix.length) {
+                continue;
+            }
+            int offset = entry.fieldOffset(i);
+            int j = 0;
+            while (j < prefix.length && array[offset + j] == prefix[j]) {
+                j++;
+            }
+            if (j == prefix.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean isBuffered() {
+        return true;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (position == 0) {
+            return;
+        }
+        ByteBuffer batch = ByteBuffer.wrap(buffer, 0, position);
+        try {
+            lane.write(batch);
+        } finally {
+            // what was not written is kept for the next flush
+            int written = batch.position();
+            System.arraycopy(buffer, written, buffer, 0, position - written);
+            position -= written;
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (!started) {
+            return;
+        }
+        try {
+            flush();
+        } catch (IOException e) {
+            // nothing more can be done when stopping
+        }
+        started = false;
+        lane.release();
+        lane = null;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A field with a constant value, added to every entry.
+ *
+ * <p>In the logback configuration, the name and value are nested elements:
+ *
+ * <pre>
+ * &lt;field&gt;
+ *   &lt;name&gt;SERVICE_VERSION&lt;/name&gt;
+ *   &lt;value&gt;1.2.3&lt;/value&gt;
+ * &lt;/field&gt;
+ * </pre>
+ */
+public class JournalField {
+
+    private String name;
+
+    private String value;
+
+    public JournalField() {}
+
+    public JournalField(String name, String value) {
+        this.name = name;
+        this.value = value;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    /**
+     * Encodes this field as {@code NAME=value}.
+     *
+     * @throws IllegalArgumentException if the name is not a valid journal
+     *     field name, made of at most 64 uppercase letters, digits and
+     *     underscores, and not starting with a digit or an underscore
+     */
+    byte[] encode() {
+        JournalFieldNames.checkName(name);
+        return (name + "=" + (value == null ? "" : value)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return name + "=" + value;
+    }
+}
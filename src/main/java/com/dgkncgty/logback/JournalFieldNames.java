@@ -0,0 +1,119 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the encoded {@code PREFIX_KEY=} prefixes of user fields, so that
+ * keys are only normalized and encoded the first time they are seen.
+ *
+ * <p>The cache is bounded, keys seen once it is full are normalized every
+ * time, to protect against high-cardinality keys.
+ *
+ * <p>Keys rejected by the filter are cached as well, so that filtering costs a
+ * single lookup, and happens before any normalization.
+ */
+final class JournalFieldNames {
+
+    static final int MAX_CACHED_KEYS = 4096;
+
+    /** maximum length of a field name accepted by journald */
+    static final int MAX_NAME_LENGTH = 64;
+
+    /** cached for the keys rejected by the filter */
+    private static final byte[] REJECTED = new byte[0];
+
+    private final String prefix;
+
+    private final String normalizedPrefix;
+
+    private final JournalKeyFilter filter;
+
+    private final ConcurrentHashMap<String, byte[]> cache = new ConcurrentHashMap<>();
+
+    JournalFieldNames(String prefix) {
+        this(prefix, JournalKeyFilter.ALL);
+    }
+
+    JournalFieldNames(String prefix, JournalKeyFilter filter) {
+        this.prefix = prefix;
+        this.normalizedPrefix = normalize(prefix);
+        this.filter = filter;
+    }
+
+    /**
+     * The raw prefix this cache was built for.
+     */
+    String prefix() {
+        return prefix;
+    }
+
+    /**
+     * Returns the encoded {@code PREFIX_KEY=} bytes for a key.
+     *
+     * @return {@code null} if the key is rejected by the filter
+     */
+    byte[] fieldPrefix(String key) {
+        byte[] field = cache.get(key);
+        if (field == null) {
+            field = filter.accept(key)
+                    ? (normalizedPrefix + normalize(key) + "=").getBytes(StandardCharsets.US_ASCII)
+                    : REJECTED;
+            if (cache.size() < MAX_CACHED_KEYS) {
+                cache.putIfAbsent(key, field);
+            }
+        }
+        return field == REJECTED ? null : field;
+    }
+
+    /**
+     * Checks that a name is a valid journal field name, made of at most 64
+     * uppercase letters, digits and underscores, and not starting with a
+     * digit or an underscore.
+     *
+     * @throws IllegalArgumentException if it is not
+     */
+    static void checkName(String name) {
+        if (!isValidName(name)) {
+            throw new IllegalArgumentException(
+                    "Invalid field name [" + name
+                            + "], expected uppercase letters, digits and underscores, not starting with a digit or an underscore");
+        }
+    }
+
+    static boolean isValidName(String name) {
+        if (name == null || name.isEmpty() || name.length() > MAX_NAME_LENGTH) {
+            return false;
+        }
+        char first = name.charAt(0);
+        if (first == '_' || (first >= '0' && first <= '9')) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(c >= 'A' && c <= 'Z') && !(c >= '0' && c <= '9') && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String normalize(String key) {
+        return key.toUpperCase().replaceAll("[^_A-Z0-9]", "_");
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds back the low level events of each context, e.g. request, until an
+ * error happens in that context.
+ *
+ * <p>Each context keeps its most recent events, up to a maximum. Contexts are
+ * discarded when no event was recorded for them during the time to live, and
+ * the least recently used ones are discarded when there are too many of them,
+ * since there is no telling when a request ends.
+ */
+final class JournalFlightRecorder {
+
+    private static final class Recording {
+        final ArrayDeque<ILoggingEvent> events = new ArrayDeque<>();
+        long lastAccessNanos;
+    }
+
+    private final int maxEvents;
+
+    private final int maxContexts;
+
+    private final long ttlNanos;
+
+    private final LongSupplier clock;
+
+    private final LinkedHashMap<String, Recording> recordings = new LinkedHashMap<>(16, 0.75f, true);
+
+    JournalFlightRecorder(int maxEvents, int maxContexts, long ttlMillis) {
+        this(maxEvents, maxContexts, ttlMillis, System::nanoTime);
+    }
+
+    JournalFlightRecorder(int maxEvents, int maxContexts, long ttlMillis, LongSupplier clock) {
+        this.maxEvents = Math.max(1, maxEvents);
+        this.maxContexts = Math.max(1, maxContexts);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.clock = clock;
+    }
+
+    /**
+     * Records an event of a context, dropping the oldest one of that context
+     * if it already holds the maximum number of events.
+     */
+    synchronized void record(String context, ILoggingEvent event) {
+        long now = clock.getAsLong();
+        expire(now);
+        Recording recording = recordings.get(context);
+        if (recording == null) {
+            if (recordings.size() >= maxContexts) {
+                Iterator<Recording> eldest = recordings.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+            recording = new Recording();
+            recordings.put(context, recording);
+        }
+        if (recording.events.size() >= maxEvents) {
+            recording.events.pollFirst();
+        }
+        recording.events.addLast(event);
+        recording.lastAccessNanos = now;
+    }
+
+    /**
+     * Removes and returns the events recorded for a context, oldest first.
+     */
+    synchronized List<ILoggingEvent> drain(String context) {
+        expire(clock.getAsLong());
+        Recording recording = recordings.remove(context);
+        if (recording == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(recording.events);
+    }
+
+    /**
+     * Number of contexts with recorded events.
+     */
+    synchronized int size() {
+        return recordings.size();
+    }
+
+    synchronized void clear() {
+        recordings.clear();
+    }
+
+    private void expire(long now) {
+        // in access order, the least recently used context comes first
+        Iterator<Map.Entry<String, Recording>> it = recordings.entrySet().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().getValue().lastAccessNanos < ttlNanos) {
+                return;
+            }
+            it.remove();
+        }
+    }
+}
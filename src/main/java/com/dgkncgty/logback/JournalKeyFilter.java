@@ -0,0 +1,113 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Selects keys from lists of included and excluded patterns, each of them
+ * either an exact key or a prefix ending with {@code *}.
+ *
+ * <p>A key is accepted if it matches no exclusion and, when there are
+ * inclusions, at least one of them.
+ */
+final class JournalKeyFilter {
+
+    /** filter accepting every key */
+    static final JournalKeyFilter ALL = new JournalKeyFilter(new Patterns(), new Patterns());
+
+    private final Patterns includes;
+
+    private final Patterns excludes;
+
+    private JournalKeyFilter(Patterns includes, Patterns excludes) {
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    /**
+     * Compiles comma separated lists of patterns.
+     *
+     * @throws IllegalArgumentException if a pattern has a {@code *} anywhere
+     *     but at its end
+     */
+    static JournalKeyFilter compile(String includes, String excludes) {
+        Patterns included = Patterns.parse(includes);
+        Patterns excluded = Patterns.parse(excludes);
+        if (included.isEmpty() && excluded.isEmpty()) {
+            return ALL;
+        }
+        return new JournalKeyFilter(included, excluded);
+    }
+
+    boolean accept(String key) {
+        if (excludes.matches(key)) {
+            return false;
+        }
+        return includes.isEmpty() || includes.matches(key);
+    }
+
+    private static final class Patterns {
+
+        private final Set<String> keys = new HashSet<>();
+
+        private String[] prefixes = new String[0];
+
+        static Patterns parse(String definitions) {
+            Patterns patterns = new Patterns();
+            if (definitions == null) {
+                return patterns;
+            }
+            List<String> prefixes = new ArrayList<>();
+            for (String definition : definitions.split(",")) {
+                String pattern = definition.trim();
+                if (pattern.isEmpty()) {
+                    continue;
+                }
+                int star = pattern.indexOf('*');
+                if (star < 0) {
+                    patterns.keys.add(pattern);
+                } else if (star == pattern.length() - 1) {
+                    prefixes.add(pattern.substring(0, star));
+                } else {
+                    throw new IllegalArgumentException(
+                            "Invalid MDC key pattern [" + pattern + "], expected a key or a prefix ending with *");
+                }
+            }
+            patterns.prefixes = prefixes.toArray(new String[0]);
+            return patterns;
+        }
+
+        boolean isEmpty() {
+            return keys.isEmpty() && prefixes.length == 0;
+        }
+
+        boolean matches(String key) {
+            if (keys.contains(key)) {
+                return true;
+            }
+            for (String prefix : prefixes) {
+                if (key.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
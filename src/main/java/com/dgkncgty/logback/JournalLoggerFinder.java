@@ -0,0 +1,95 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends the messages logged with {@link System.Logger}, e.g. by the JDK
+ * itself, straight to the journal through a {@link JournalWriter}, without
+ * going through logback.
+ *
+ * <p>It is not registered by this library, since it would take over platform
+ * logging in every application depending on it. Applications opt in by
+ * listing it in a {@code META-INF/services/java.lang.System$LoggerFinder}
+ * file of their own.
+ *
+ * <p>It is configured with system properties:
+ * <ul>
+ * <li>{@code com.dgkncgty.logback.journal.level}: the lowest level logged,
+ * {@code INFO} by default, whatever its case</li>
+ * <li>{@code com.dgkncgty.logback.journal.namespace}: the journal namespace
+ * to write to, the default one if not set</li>
+ * </ul>
+ *
+ * <p>When the journal cannot be reached, messages are printed to the standard
+ * error instead.
+ */
+public class JournalLoggerFinder extends System.LoggerFinder {
+
+    static final String LEVEL_PROPERTY = "com.dgkncgty.logback.journal.level";
+
+    static final String NAMESPACE_PROPERTY = "com.dgkncgty.logback.journal.namespace";
+
+    private final JournalWriter writer;
+
+    private final System.Logger.Level threshold;
+
+    private final ConcurrentHashMap<String, JournalSystemLogger> loggers = new ConcurrentHashMap<>();
+
+    public JournalLoggerFinder() {
+        this(openWriter(), parseLevel(System.getProperty(LEVEL_PROPERTY)));
+    }
+
+    JournalLoggerFinder(JournalWriter writer, System.Logger.Level threshold) {
+        this.writer = writer;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Parses the level property, whatever its case, falling back to
+     * {@code INFO} when it is not set or invalid, since failing here would
+     * break platform logging for the whole JVM.
+     */
+    static System.Logger.Level parseLevel(String level) {
+        if (level == null || level.isEmpty()) {
+            return System.Logger.Level.INFO;
+        }
+        try {
+            return System.Logger.Level.valueOf(level.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown level [" + level + "] in " + LEVEL_PROPERTY + ", using INFO");
+            return System.Logger.Level.INFO;
+        }
+    }
+
+    private static JournalWriter openWriter() {
+        try {
+            return JournalWriter.open(System.getProperty(NAMESPACE_PROPERTY, ""));
+        } catch (IOException e) {
+            System.err.println("Could not open the systemd journal, platform logging goes to the standard error: "
+                    + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public System.Logger getLogger(String name, Module module) {
+        return loggers.computeIfAbsent(name, n -> new JournalSystemLogger(n, writer, threshold));
+    }
+}
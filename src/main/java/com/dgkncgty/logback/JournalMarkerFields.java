@@ -0,0 +1,153 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Marker;
+
+/**
+ * Turns the markers of an event into journal fields: a {@code MARKERS} field
+ * listing their names, and the fields mapped to specific markers.
+ *
+ * <p>Everything written for a given marker is encoded the first time the
+ * marker is seen. References added to a marker afterwards are not taken into
+ * account.
+ */
+final class JournalMarkerFields {
+
+    static final int MAX_CACHED_MARKERS = 1024;
+
+    private static final byte[] MARKERS = "MARKERS=".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[][] NO_FIELDS = new byte[0][];
+
+    private final boolean logMarkers;
+
+    /** mapped fields by marker name */
+    private final Map<String, byte[]> mappings;
+
+    private final ConcurrentHashMap<Marker, Encoded> cache = new ConcurrentHashMap<>();
+
+    private static final class Encoded {
+        final byte[] name;
+        final byte[][] fields;
+
+        Encoded(byte[] name, byte[][] fields) {
+            this.name = name;
+            this.fields = fields;
+        }
+    }
+
+    JournalMarkerFields(boolean logMarkers, Map<String, byte[]> mappings) {
+        this.logMarkers = logMarkers;
+        this.mappings = mappings;
+    }
+
+    /**
+     * Parses marker mappings, either {@code MARKER} which maps to
+     * {@code MARKER=1}, or {@code MARKER:FIELD=value}.
+     *
+     * @throws IllegalArgumentException if a mapping is malformed, or maps to
+     *     a field name journald would drop
+     */
+    static Map<String, byte[]> parseMappings(List<String> definitions) {
+        Map<String, byte[]> mappings = new LinkedHashMap<>();
+        for (String definition : definitions) {
+            String marker;
+            String name;
+            String value;
+            int colon = definition.indexOf(':');
+            if (colon < 0) {
+                marker = definition.trim();
+                name = JournalFieldNames.normalize(marker);
+                value = "1";
+            } else {
+                marker = definition.substring(0, colon).trim();
+                String mapped = definition.substring(colon + 1).trim();
+                int eq = mapped.indexOf('=');
+                if (eq <= 0) {
+                    throw new IllegalArgumentException(
+                            "Invalid marker field [" + definition + "], expected MARKER or MARKER:FIELD=value");
+                }
+                name = JournalFieldNames.normalize(mapped.substring(0, eq).trim());
+                value = mapped.substring(eq + 1);
+            }
+            if (marker.isEmpty()) {
+                throw new IllegalArgumentException("Invalid marker field [" + definition + "], missing marker name");
+            }
+            JournalFieldNames.checkName(name);
+            mappings.put(marker, (name + "=" + value).getBytes(StandardCharsets.UTF_8));
+        }
+        return mappings;
+    }
+
+    boolean isEmpty() {
+        return !logMarkers && mappings.isEmpty();
+    }
+
+    void append(JournalEntry entry, List<Marker> markers) {
+        if (markers == null || markers.isEmpty()) {
+            return;
+        }
+        int count = markers.size();
+        if (logMarkers) {
+            entry.beginField(MARKERS);
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    entry.appendByte((byte) ',');
+                }
+                byte[] name = encoded(markers.get(i)).name;
+                entry.appendBytes(name, 0, name.length);
+            }
+            entry.endField();
+        }
+        if (!mappings.isEmpty()) {
+            for (int i = 0; i < count; i++) {
+                for (byte[] field : encoded(markers.get(i)).fields) {
+                    entry.addEncoded(field);
+                }
+            }
+        }
+    }
+
+    private Encoded encoded(Marker marker) {
+        Encoded encoded = cache.get(marker);
+        if (encoded == null) {
+            encoded = encode(marker);
+            if (cache.size() < MAX_CACHED_MARKERS) {
+                cache.putIfAbsent(marker, encoded);
+            }
+        }
+        return encoded;
+    }
+
+    private Encoded encode(Marker marker) {
+        List<byte[]> fields = new ArrayList<>();
+        for (Map.Entry<String, byte[]> mapping : mappings.entrySet()) {
+            if (marker.contains(mapping.getKey())) {
+                fields.add(mapping.getValue());
+            }
+        }
+        return new Encoded(
+                marker.getName().getBytes(StandardCharsets.UTF_8),
+                fields.isEmpty() ? NO_FIELDS : fields.toArray(NO_FIELDS));
+    }
+}
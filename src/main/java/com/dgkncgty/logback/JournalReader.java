@@ -0,0 +1,291 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Reads the journal through {@code sd_journal}, so that its entries can be
+ * followed from within the JVM instead of parsing the output of
+ * {@code journalctl}.
+ *
+ * <p>The reader is a cursor over the entries: {@link #next()} moves to the
+ * next entry matching the filters, whose fields are then read with
+ * {@link #getField(String)} or {@link #forEachField(BiConsumer)}. The native
+ * out parameters and the buffer values are decoded from are reused from one
+ * call to the next, so that the only allocations are the returned strings.
+ * Following a service and resuming where the previous run stopped looks like:
+ *
+ * <pre>
+ * try (JournalReader reader = JournalReader.open()) {
+ *     reader.addMatch("_SYSTEMD_UNIT", "orders.service");
+ *     reader.seekAfter(lastCursor);
+ *     while (running) {
+ *         while (reader.next()) {
+ *             ship(reader.getField("MESSAGE"));
+ *             lastCursor = reader.getCursor();
+ *         }
+ *         reader.await(1, TimeUnit.SECONDS);
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>A reader is not thread-safe, it is meant to be used by a single thread.
+ */
+public final class JournalReader implements Closeable {
+
+    private static final int ENOENT = 2;
+
+    private final SystemdJournalLibrary journald;
+
+    private Pointer journal;
+
+    /** out parameters: a pointer, then a size_t or uint64_t */
+    private final Memory out = new Memory(16);
+
+    private final Pointer outLength = out.share(8);
+
+    private byte[] buffer = new byte[256];
+
+    /** cursor of the entry to skip, if it comes first after seeking */
+    private String skippedCursor;
+
+    JournalReader(SystemdJournalLibrary journald, int flags) throws IOException {
+        this.journald = journald;
+        check(journald.sd_journal_open(out, flags), "sd_journal_open");
+        journal = out.getPointer(0);
+        // values are truncated to 64KB by default
+        check(journald.sd_journal_set_data_threshold(journal, new NativeLong(0)), "sd_journal_set_data_threshold");
+    }
+
+    /**
+     * Opens the journal files of the local machine.
+     *
+     * @throws IOException if {@code libsystemd} cannot be loaded or the
+     *     journal cannot be opened
+     */
+    public static JournalReader open() throws IOException {
+        return open(SystemdJournalLibrary.SD_JOURNAL_LOCAL_ONLY);
+    }
+
+    /**
+     * Opens the journal files selected by the given
+     * {@code SystemdJournalLibrary.SD_JOURNAL_*} flags.
+     *
+     * @throws IOException if {@code libsystemd} cannot be loaded or the
+     *     journal cannot be opened
+     */
+    public static JournalReader open(int flags) throws IOException {
+        String name = System.getProperty("systemd.library", "systemd");
+        SystemdJournalLibrary journald;
+        try {
+            journald = Native.load(name, SystemdJournalLibrary.class);
+        } catch (LinkageError e) {
+            throw new IOException("Could not load native library [" + name + "]", e);
+        }
+        return new JournalReader(journald, flags);
+    }
+
+    /**
+     * Only reads the entries having a field with the given value. Matches on
+     * the same field are OR-ed, matches on different fields are AND-ed.
+     */
+    public JournalReader addMatch(String field, String value) throws IOException {
+        byte[] match = (field + "=" + value).getBytes(StandardCharsets.UTF_8);
+        check(journald.sd_journal_add_match(handle(), match, new NativeLong(match.length)), "sd_journal_add_match");
+        return this;
+    }
+
+    /**
+     * OR-es the matches added so far with the ones added next.
+     */
+    public JournalReader addDisjunction() throws IOException {
+        check(journald.sd_journal_add_disjunction(handle()), "sd_journal_add_disjunction");
+        return this;
+    }
+
+    /**
+     * AND-s the matches added so far with the ones added next.
+     */
+    public JournalReader addConjunction() throws IOException {
+        check(journald.sd_journal_add_conjunction(handle()), "sd_journal_add_conjunction");
+        return this;
+    }
+
+    public JournalReader flushMatches() throws IOException {
+        journald.sd_journal_flush_matches(handle());
+        return this;
+    }
+
+    /**
+     * Moves before the first entry.
+     */
+    public void seekHead() throws IOException {
+        skippedCursor = null;
+        check(journald.sd_journal_seek_head(handle()), "sd_journal_seek_head");
+    }
+
+    /**
+     * Moves after the last entry, so that only the entries appended from now
+     * on are read.
+     */
+    public void seekTail() throws IOException {
+        skippedCursor = null;
+        check(journald.sd_journal_seek_tail(handle()), "sd_journal_seek_tail");
+    }
+
+    /**
+     * Moves right after the entry of a cursor, typically the last one
+     * processed by a previous run. When that entry is gone, e.g. rotated
+     * away, reading resumes at the closest one.
+     */
+    public void seekAfter(String cursor) throws IOException {
+        check(journald.sd_journal_seek_cursor(handle(), cursor), "sd_journal_seek_cursor");
+        skippedCursor = cursor;
+    }
+
+    /**
+     * Moves to the next entry.
+     *
+     * @return {@code false} when there is no more entry for now
+     */
+    public boolean next() throws IOException {
+        boolean found = check(journald.sd_journal_next(handle()), "sd_journal_next") > 0;
+        if (found && skippedCursor != null) {
+            String cursor = skippedCursor;
+            skippedCursor = null;
+            if (journald.sd_journal_test_cursor(journal, cursor) > 0) {
+                return next();
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns a field of the current entry, or {@code null} when the entry
+     * does not have it.
+     */
+    public String getField(String field) throws IOException {
+        int result = journald.sd_journal_get_data(handle(), field, out, outLength);
+        if (result == -ENOENT) {
+            return null;
+        }
+        check(result, "sd_journal_get_data");
+        return decode(field.length() + 1);
+    }
+
+    /**
+     * Passes each field of the current entry to the given action, including
+     * the ones added by journald.
+     */
+    public void forEachField(BiConsumer<String, String> action) throws IOException {
+        journald.sd_journal_restart_data(handle());
+        while (check(journald.sd_journal_enumerate_data(journal, out, outLength), "sd_journal_enumerate_data") > 0) {
+            int length = read();
+            int eq = 0;
+            while (eq < length && buffer[eq] != '=') {
+                eq++;
+            }
+            action.accept(
+                    new String(buffer, 0, eq, StandardCharsets.UTF_8),
+                    new String(buffer, Math.min(eq + 1, length), Math.max(0, length - eq - 1), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Returns the wallclock time of the current entry, in microseconds since
+     * the epoch.
+     */
+    public long getRealtimeMicros() throws IOException {
+        check(journald.sd_journal_get_realtime_usec(handle(), out), "sd_journal_get_realtime_usec");
+        return out.getLong(0);
+    }
+
+    /**
+     * Returns the cursor of the current entry, to resume from it later with
+     * {@link #seekAfter(String)}.
+     */
+    public String getCursor() throws IOException {
+        check(journald.sd_journal_get_cursor(handle(), out), "sd_journal_get_cursor");
+        Pointer cursor = out.getPointer(0);
+        try {
+            return cursor.getString(0, StandardCharsets.US_ASCII.name());
+        } finally {
+            Native.free(Pointer.nativeValue(cursor));
+        }
+    }
+
+    /**
+     * Waits until entries are appended to the journal, or its files change.
+     *
+     * @param timeout how long to wait, a negative value meaning forever
+     * @return {@code false} if nothing changed before the timeout
+     */
+    public boolean await(long timeout, TimeUnit unit) throws IOException {
+        long timeoutUsec = timeout < 0 ? -1 : unit.toMicros(timeout);
+        return check(journald.sd_journal_wait(handle(), timeoutUsec), "sd_journal_wait")
+                != SystemdJournalLibrary.SD_JOURNAL_NOP;
+    }
+
+    @Override
+    public void close() {
+        if (journal != null) {
+            journald.sd_journal_close(journal);
+            journal = null;
+        }
+    }
+
+    private Pointer handle() throws IOException {
+        if (journal == null) {
+            throw new IOException("Journal reader is closed");
+        }
+        return journal;
+    }
+
+    /**
+     * Copies the data returned through the out parameters to the buffer.
+     *
+     * @return its length
+     */
+    private int read() {
+        long length = Native.SIZE_T_SIZE == 8 ? outLength.getLong(0) : outLength.getInt(0) & 0xffffffffL;
+        if (length > buffer.length) {
+            buffer = new byte[(int) Math.max(length, buffer.length * 2L)];
+        }
+        out.getPointer(0).read(0, buffer, 0, (int) length);
+        return (int) length;
+    }
+
+    private String decode(int prefixLength) {
+        int length = read();
+        return new String(buffer, prefixLength, Math.max(0, length - prefixLength), StandardCharsets.UTF_8);
+    }
+
+    private static int check(int result, String function) throws IOException {
+        if (result < 0) {
+            throw new IOException(function + " failed with error code " + result);
+        }
+        return result;
+    }
+}
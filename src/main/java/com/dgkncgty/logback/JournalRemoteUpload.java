@@ -0,0 +1,275 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import ch.qos.logback.core.spi.ContextAware;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Uploads batches of entries in the journal export format to the
+ * {@code /upload} endpoint of {@code systemd-journal-remote}, one POST request
+ * per batch.
+ *
+ * <p>Each transport using the upload gets a lane of its own, whose batches are
+ * queued and uploaded in order by a thread of its own, so that logging threads
+ * never wait for the network. A single HTTP client is shared by these threads.
+ * It keeps its connections open between requests, and opens one more whenever
+ * all of them are busy, so that each thread ends up with a persistent
+ * connection of its own.
+ *
+ * <p>A batch that fails to upload because of a network error, a server error
+ * or a {@code 429 Too Many Requests} is retried until it succeeds. Meanwhile,
+ * and whenever its queue is full, the lane refuses new batches, so that the
+ * transport keeps them and the appender spills or falls back for the entries
+ * logged afterwards. A batch rejected with another client error would be
+ * rejected again: it is dropped and reported instead.
+ *
+ * <p>Batches may be compressed with gzip. {@code systemd-journal-remote} does
+ * not decompress gzip itself, so this is meant for uploads going through a
+ * proxy that does.
+ */
+final class JournalRemoteUpload implements JournalExportTransport.Target {
+
+    static final String CONTENT_TYPE = "application/vnd.fdo.journal";
+
+    /** batches waiting for upload per lane at most */
+    private static final int QUEUED_BATCHES = 8;
+
+    private static final long MAX_RETRY_DELAY_MILLIS = 1000;
+
+    private static final long POLL_MILLIS = 100;
+
+    private final ContextAware owner;
+
+    private final URI uri;
+
+    private final boolean gzip;
+
+    private final Duration timeout;
+
+    private final long retryDelayMillis;
+
+    private HttpClient client;
+
+    private int users = 0;
+
+    /**
+     * @param owner where rejected batches are reported
+     * @param url the URL of the upload endpoint, e.g.
+     *     {@code http://logs.example.com:19532/upload}
+     * @param compression {@code none} or {@code gzip}
+     * @throws IllegalArgumentException if the URL or compression is invalid
+     */
+    JournalRemoteUpload(ContextAware owner, String url, String compression, long timeoutMillis) {
+        this(owner, url, compression, timeoutMillis, Math.min(MAX_RETRY_DELAY_MILLIS, timeoutMillis));
+    }
+
+    JournalRemoteUpload(ContextAware owner, String url, String compression, long timeoutMillis, long retryDelayMillis) {
+        if (url == null || url.isEmpty()) {
+            throw new IllegalArgumentException("The remote transport needs a remoteUrl");
+        }
+        this.owner = owner;
+        this.uri = URI.create(url);
+        if (!"http".equals(uri.getScheme()) && !"https".equals(uri.getScheme())) {
+            throw new IllegalArgumentException("Invalid remote URL [" + url + "], expected an http or https URL");
+        }
+        if ("gzip".equalsIgnoreCase(compression)) {
+            this.gzip = true;
+        } else if (compression == null || compression.isEmpty() || "none".equalsIgnoreCase(compression)) {
+            this.gzip = false;
+        } else {
+            throw new IllegalArgumentException(
+                    "Unknown remote compression [" + compression + "], expected none or gzip");
+        }
+        this.timeout = Duration.ofMillis(Math.max(1, timeoutMillis));
+        this.retryDelayMillis = Math.max(1, retryDelayMillis);
+    }
+
+    /**
+     * Starts the lane of one more transport, and the HTTP client with the
+     * first one.
+     */
+    @Override
+    public synchronized JournalExportTransport.Target.Lane acquire() {
+        if (client == null) {
+            client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(timeout)
+                    .build();
+        }
+        users++;
+        UploadLane lane = new UploadLane(client);
+        lane.thread.setName("journal-remote-upload-" + users);
+        lane.thread.start();
+        return lane;
+    }
+
+    private synchronized void releaseClient() {
+        if (users > 0 && --users == 0) {
+            // idle connections are closed by the client once unused
+            client = null;
+        }
+    }
+
+    /**
+     * The queue of batches of a transport, and the thread uploading them.
+     */
+    private final class UploadLane implements JournalExportTransport.Target.Lane {
+
+        private final HttpClient client;
+
+        private final BlockingQueue<byte[]> queue = new LinkedBlockingQueue<>(QUEUED_BATCHES);
+
+        private final Thread thread = new Thread(this::upload);
+
+        private volatile boolean released = false;
+
+        /** the last failed upload, until an upload succeeds */
+        private volatile IOException failure;
+
+        UploadLane(HttpClient client) {
+            this.client = client;
+            thread.setDaemon(true);
+        }
+
+        /**
+         * Queues a batch for upload, leaving it untouched when refused.
+         *
+         * @throws IOException if the last upload failed or the queue is full
+         */
+        @Override
+        public void write(ByteBuffer batch) throws IOException {
+            if (released) {
+                throw new IOException("Remote upload to " + uri + " is stopped");
+            }
+            IOException failed = failure;
+            if (failed != null) {
+                throw new IOException(failed.getMessage(), failed);
+            }
+            if (queue.remainingCapacity() == 0) {
+                throw new IOException("Too many batches waiting for upload to " + uri);
+            }
+            byte[] body = new byte[batch.remaining()];
+            batch.duplicate().get(body);
+            // only written from the thread of the transport, so there is room
+            queue.add(body);
+            batch.position(batch.limit());
+        }
+
+        /**
+         * Waits for the queued batches to be uploaded, for at most the
+         * timeout, and stops the uploading thread.
+         */
+        @Override
+        public void release() {
+            released = true;
+            try {
+                thread.join(timeout.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // gives up the batch being retried
+            thread.interrupt();
+            releaseClient();
+        }
+
+        /**
+         * Uploads the queued batches in order, retrying each of them until it
+         * succeeds or is rejected, until the lane is released and its queue is
+         * empty.
+         */
+        private void upload() {
+            try {
+                while (true) {
+                    byte[] body = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (body == null) {
+                        if (released) {
+                            return;
+                        }
+                        continue;
+                    }
+                    int length = body.length;
+                    if (gzip) {
+                        // once, whatever the number of attempts
+                        body = compress(body);
+                    }
+                    while (!post(body, length)) {
+                        Thread.sleep(retryDelayMillis);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // released while uploads were failing, nothing more can be done
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        /**
+         * @return {@code false} if the batch should be uploaded again
+         */
+        private boolean post(byte[] body, int length) throws InterruptedException {
+            HttpRequest.Builder request =
+                    HttpRequest.newBuilder(uri).timeout(timeout).header("Content-Type", CONTENT_TYPE);
+            if (gzip) {
+                request.header("Content-Encoding", "gzip");
+            }
+            HttpResponse<String> response;
+            try {
+                response = client.send(
+                        request.POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                                .build(),
+                        HttpResponse.BodyHandlers.ofString());
+            } catch (IOException e) {
+                failure = e;
+                return false;
+            }
+            int status = response.statusCode();
+            if (status / 100 == 2) {
+                failure = null;
+                return true;
+            }
+            String message = "Failed to upload entries to " + uri + ": HTTP " + status + " "
+                    + response.body().trim();
+            if (status / 100 == 5 || status == 429) {
+                failure = new IOException(message);
+                return false;
+            }
+            // rejected for good, retrying would block the later batches
+            failure = null;
+            owner.addError(message + ", dropping a batch of " + length + " bytes");
+            return true;
+        }
+    }
+
+    private static byte[] compress(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+}
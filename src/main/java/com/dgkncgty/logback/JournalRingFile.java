@@ -0,0 +1,278 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Memory-mapped ring file queuing the entries for a writer thread, so that
+ * they survive a crash of the application.
+ *
+ * <p>The file starts with a header holding the position of the next record to
+ * read and the lap it belongs to, followed by the records:
+ *
+ * <pre>
+ * | length (4) | lap (4) | crc32c of lap and payload (4) | payload (length) |
+ * </pre>
+ *
+ * <p>A record that does not fit before the end of the file is written at the
+ * start, after a wrap marker whose length is {@code -1}, and the lap is
+ * incremented. On opening, the unread records are found by scanning from the
+ * read position until a record is incomplete, corrupted or belongs to another
+ * lap, so records left from a previous lap or torn by a crash are ignored.
+ *
+ * <p>Delivery is at least once: an entry sent right before a crash may be read
+ * again on restart.
+ *
+ * <p>This class is not thread-safe.
+ */
+final class JournalRingFile implements AutoCloseable {
+
+    static final int HEADER_SIZE = 32;
+
+    static final int RECORD_HEADER_SIZE = 12;
+
+    private static final int MAGIC = 0x4a524e47;
+
+    private static final int VERSION = 1;
+
+    private static final int READ_POSITION_OFFSET = 8;
+
+    private static final int WRAP = -1;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private final CRC32C crc = new CRC32C();
+
+    private final int capacity;
+
+    private int readPosition;
+
+    private int readLap;
+
+    private int writePosition;
+
+    private int writeLap;
+
+    /** bytes between the read and write positions, records and skipped file ends */
+    private int used;
+
+    private JournalRingFile(FileChannel channel, MappedByteBuffer buffer, int capacity) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Opens or creates a ring file. The records left unread by a previous run
+     * are kept and will be read first.
+     */
+    static JournalRingFile open(File file, long size) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+        FileChannel channel = FileChannel.open(
+                file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            // the size of an existing file cannot change, positions depend on it
+            long capacity = channel.size() >= HEADER_SIZE ? channel.size() : size;
+            if (capacity < HEADER_SIZE + RECORD_HEADER_SIZE || capacity > Integer.MAX_VALUE) {
+                throw new IOException("Invalid queue file size " + capacity);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            JournalRingFile ring = new JournalRingFile(channel, buffer, (int) capacity);
+            ring.recover();
+            return ring;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void recover() {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            readPosition = HEADER_SIZE;
+            readLap = 1;
+            saveReadPosition();
+        } else {
+            long saved = buffer.getLong(READ_POSITION_OFFSET);
+            readLap = (int) (saved >>> 32);
+            readPosition = (int) saved;
+            if (readPosition < HEADER_SIZE || readPosition > capacity) {
+                // corrupted header, nothing can be trusted
+                readPosition = HEADER_SIZE;
+            }
+        }
+
+        int pos = readPosition;
+        int lap = readLap;
+        used = 0;
+        while (used <= capacity - HEADER_SIZE) {
+            if (pos + RECORD_HEADER_SIZE > capacity || isWrapMarker(pos, lap)) {
+                used += capacity - pos;
+                pos = HEADER_SIZE;
+                lap++;
+            } else if (isValidRecord(pos, lap)) {
+                int length = RECORD_HEADER_SIZE + buffer.getInt(pos);
+                used += length;
+                pos += length;
+            } else {
+                break;
+            }
+        }
+        writePosition = pos;
+        writeLap = lap;
+    }
+
+    private boolean isWrapMarker(int pos, int lap) {
+        if (buffer.getInt(pos) != WRAP || buffer.getInt(pos + 4) != lap) {
+            return false;
+        }
+        return buffer.getInt(pos + 8) == checksum(lap, null, 0);
+    }
+
+    private boolean isValidRecord(int pos, int lap) {
+        int length = buffer.getInt(pos);
+        if (length <= 0 || length > capacity - pos - RECORD_HEADER_SIZE) {
+            return false;
+        }
+        if (buffer.getInt(pos + 4) != lap) {
+            return false;
+        }
+        crc.reset();
+        crc.update(buffer.duplicate().position(pos + 4).limit(pos + 8));
+        crc.update(buffer.duplicate().position(pos + RECORD_HEADER_SIZE).limit(pos + RECORD_HEADER_SIZE + length));
+        return (int) crc.getValue() == buffer.getInt(pos + 8);
+    }
+
+    private int checksum(int lap, byte[] payload, int length) {
+        crc.reset();
+        crc.update((lap >>> 24) & 0xff);
+        crc.update((lap >>> 16) & 0xff);
+        crc.update((lap >>> 8) & 0xff);
+        crc.update(lap & 0xff);
+        if (payload != null) {
+            crc.update(payload, 0, length);
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Appends an entry to the ring.
+     *
+     * @return {@code false} if there is not enough room left
+     */
+    boolean append(JournalEntry entry) {
+        int length = entry.size();
+        int recordLength = RECORD_HEADER_SIZE + length;
+        if (length == 0 || recordLength > capacity - HEADER_SIZE) {
+            return false;
+        }
+        int pos = writePosition;
+        int lap = writeLap;
+        int skipped = 0;
+        if ((long) pos + recordLength > capacity) {
+            skipped = capacity - pos;
+            pos = HEADER_SIZE;
+            lap++;
+        }
+        if ((long) used + skipped + recordLength > capacity - HEADER_SIZE) {
+            return false;
+        }
+        if (skipped >= RECORD_HEADER_SIZE) {
+            buffer.putInt(writePosition + 4, writeLap);
+            buffer.putInt(writePosition + 8, checksum(writeLap, null, 0));
+            buffer.putInt(writePosition, WRAP);
+        }
+
+        buffer.position(pos + RECORD_HEADER_SIZE);
+        entry.writeTo(buffer);
+        buffer.putInt(pos + 4, lap);
+        buffer.putInt(pos + 8, checksum(lap, entry.array(), length));
+        // written last, so that a torn record is never valid
+        buffer.putInt(pos, length);
+
+        writePosition = pos + recordLength;
+        writeLap = lap;
+        used += skipped + recordLength;
+        return true;
+    }
+
+    boolean hasPending() {
+        return used > 0;
+    }
+
+    /**
+     * Reads the next record into the given entry, without consuming it.
+     *
+     * @return {@code false} if there is nothing to read
+     */
+    boolean peek(JournalEntry entry) {
+        if (used > 0 && (readPosition + RECORD_HEADER_SIZE > capacity || buffer.getInt(readPosition) == WRAP)) {
+            used -= capacity - readPosition;
+            readPosition = HEADER_SIZE;
+            readLap++;
+            saveReadPosition();
+        }
+        if (used == 0) {
+            return false;
+        }
+        int length = buffer.getInt(readPosition);
+        buffer.position(readPosition + RECORD_HEADER_SIZE);
+        entry.readFrom(buffer, length);
+        return true;
+    }
+
+    /**
+     * Consumes the record returned by the last call to {@link #peek}.
+     */
+    void advance() {
+        if (used == 0) {
+            return;
+        }
+        int recordLength = RECORD_HEADER_SIZE + buffer.getInt(readPosition);
+        readPosition += recordLength;
+        used -= recordLength;
+        saveReadPosition();
+    }
+
+    /**
+     * Number of bytes used by the records not read yet.
+     */
+    int pendingBytes() {
+        return used;
+    }
+
+    private void saveReadPosition() {
+        buffer.putLong(READ_POSITION_OFFSET, ((long) readLap << 32) | (readPosition & 0xffffffffL));
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
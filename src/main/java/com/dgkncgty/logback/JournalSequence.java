@@ -0,0 +1,59 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Stamps entries with a {@code SEQNUM} increasing by one for each entry, and
+ * the {@code SEQNUM_ID} of the sequence, so that missing entries can be told
+ * from the gaps in the numbers of each sequence.
+ *
+ * <p>Each sequence has a single writer, the appender lock or a writer thread,
+ * so that numbers are taken without any atomic operation. This class is not
+ * thread-safe.
+ */
+final class JournalSequence {
+
+    private static final byte[] SEQNUM = "SEQNUM=".getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[] idField;
+
+    private long last = 0;
+
+    JournalSequence() {
+        this(UUID.randomUUID());
+    }
+
+    JournalSequence(UUID id) {
+        // formatted like the boot id of the journal
+        String hex = id.toString().replace("-", "");
+        this.idField = ("SEQNUM_ID=" + hex).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Adds the next number of the sequence to an entry.
+     */
+    void stamp(JournalEntry entry) {
+        entry.add(SEQNUM, ++last);
+        entry.addEncoded(idField);
+    }
+
+    long last() {
+        return last;
+    }
+}
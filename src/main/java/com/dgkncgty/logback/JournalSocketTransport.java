@@ -0,0 +1,291 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import com.sun.jna.LastErrorException;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transport writing entries to journald sockets with the journal native
+ * protocol, which allows logging to journal namespaces, and to spread entries
+ * over several of them.
+ *
+ * <p>A single unbound datagram socket is used for every destination. Entries
+ * too large for a datagram are written to a sealed memfd, whose descriptor is
+ * then passed to journald, as {@code sd_journal_sendv} does.
+ *
+ * <p>When the selected destination cannot be reached, the other ones are
+ * tried in turn before giving up.
+ */
+final class JournalSocketTransport implements JournalTransport {
+
+    /**
+     * How entries are spread over the destinations.
+     */
+    enum Sharding {
+        /** each entry goes to the next destination */
+        ROUND_ROBIN,
+        /** entries go to a destination chosen by their routing key */
+        ROUTING_KEY
+    }
+
+    static final String DEFAULT_SOCKET = "/run/systemd/journal/socket";
+
+    /** same send buffer size as libsystemd, to allow for large datagrams */
+    private static final int SNDBUF_SIZE = 8 * 1024 * 1024;
+
+    private static final int SOCKADDR_UN_SIZE = 110;
+
+    private final List<String> socketPaths;
+
+    private final Sharding sharding;
+
+    private final CLibrary libc;
+
+    private CLibrary c;
+
+    /** whether sendmsg goes through {@link DirectCLibrary} */
+    private boolean direct;
+
+    private int fd = -1;
+
+    private Memory[] addresses;
+
+    private int[] addressLengths;
+
+    private Memory message;
+
+    private Memory iovec;
+
+    private Memory control;
+
+    private byte[] datagram = new byte[4096];
+
+    private Memory data = new Memory(4096);
+
+    private int next = 0;
+
+    /**
+     * @param socketPaths the journald sockets to write to
+     * @param libc the C library to use, or {@code null} to load it when the
+     *     transport is started
+     */
+    JournalSocketTransport(List<String> socketPaths, Sharding sharding, CLibrary libc) {
+        if (socketPaths.isEmpty()) {
+            throw new IllegalArgumentException("At least one journal socket is needed");
+        }
+        this.socketPaths = new ArrayList<>(socketPaths);
+        this.sharding = sharding;
+        this.libc = libc;
+    }
+
+    /**
+     * Path of the socket of a journal namespace, the default namespace being
+     * designated by an empty name.
+     */
+    static String socketPath(String namespace) {
+        if (namespace == null || namespace.isEmpty()) {
+            return DEFAULT_SOCKET;
+        }
+        return "/run/systemd/journal." + namespace + "/socket";
+    }
+
+    @Override
+    public void start() throws IOException {
+        try {
+            c = libc != null ? libc : Native.load("c", CLibrary.class);
+            if (libc == null) {
+                DirectCLibrary.load();
+                direct = true;
+            }
+        } catch (LinkageError e) {
+            throw new IOException("Could not load the C library", e);
+        }
+
+        addresses = new Memory[socketPaths.size()];
+        addressLengths = new int[socketPaths.size()];
+        for (int i = 0; i < socketPaths.size(); i++) {
+            byte[] path = socketPaths.get(i).getBytes(StandardCharsets.UTF_8);
+            if (path.length >= SOCKADDR_UN_SIZE - 2) {
+                throw new IOException("Socket path is too long: " + socketPaths.get(i));
+            }
+            Memory address = new Memory(SOCKADDR_UN_SIZE);
+            address.clear();
+            address.setShort(0, (short) CLibrary.AF_UNIX);
+            address.write(2, path, 0, path.length);
+            addresses[i] = address;
+            addressLengths[i] = 2 + path.length + 1;
+        }
+
+        message = new Memory(msghdrSize());
+        iovec = new Memory(Native.POINTER_SIZE + Native.SIZE_T_SIZE);
+        control = new Memory(cmsgSpace());
+
+        try {
+            fd = c.socket(CLibrary.AF_UNIX, CLibrary.SOCK_DGRAM | CLibrary.SOCK_CLOEXEC, 0);
+        } catch (LastErrorException e) {
+            throw new IOException("Could not create journal socket: errno " + e.getErrorCode(), e);
+        }
+        try {
+            Memory size = new Memory(4);
+            size.setInt(0, SNDBUF_SIZE);
+            c.setsockopt(fd, CLibrary.SOL_SOCKET, CLibrary.SO_SNDBUF, size, 4);
+        } catch (LastErrorException e) {
+            // not fatal, large entries will go through a memfd
+        }
+    }
+
+    @Override
+    public void send(JournalEntry entry) throws IOException {
+        int length = entry.nativeFormatLength();
+        if (datagram.length < length) {
+            datagram = new byte[Math.max(length, datagram.length * 2)];
+        }
+        entry.writeNativeFormat(datagram, 0);
+        if (data.size() < length) {
+            data = new Memory(Math.max(length, data.size() * 2));
+        }
+        data.write(0, datagram, 0, length);
+
+        int count = addresses.length;
+        int first = count == 1
+                ? 0
+                : sharding == Sharding.ROUND_ROBIN ? next++ % count : Math.floorMod(entry.routingKey(), count);
+        if (next < 0) {
+            next = 0;
+        }
+        int errno = 0;
+        for (int attempt = 0; attempt < count; attempt++) {
+            int destination = (first + attempt) % count;
+            errno = sendTo(destination, length);
+            if (errno == 0) {
+                return;
+            }
+        }
+        throw new IOException("Failed to send entry to " + socketPaths.get(first) + ": errno " + errno);
+    }
+
+    /**
+     * @return 0 on success, or the error code
+     */
+    private int sendTo(int destination, int length) {
+        try {
+            sendmsg(destination, data, length, -1);
+            return 0;
+        } catch (LastErrorException e) {
+            if (e.getErrorCode() != CLibrary.EMSGSIZE && e.getErrorCode() != CLibrary.ENOBUFS) {
+                return e.getErrorCode();
+            }
+        }
+        // too large for a datagram, pass it through a sealed memfd
+        int memfd = -1;
+        try {
+            memfd = c.memfd_create("logback-journal", CLibrary.MFD_CLOEXEC | CLibrary.MFD_ALLOW_SEALING);
+            long written = 0;
+            while (written < length) {
+                written += c.write(memfd, data.share(written), new NativeLong(length - written))
+                        .longValue();
+            }
+            c.fcntl(memfd, CLibrary.F_ADD_SEALS, CLibrary.ALL_SEALS);
+            sendmsg(destination, null, 0, memfd);
+            return 0;
+        } catch (LastErrorException e) {
+            return e.getErrorCode();
+        } finally {
+            if (memfd >= 0) {
+                c.close(memfd);
+            }
+        }
+    }
+
+    private void sendmsg(int destination, Pointer payload, int length, int passedFd) {
+        int p = Native.POINTER_SIZE;
+        int s = Native.SIZE_T_SIZE;
+        message.clear();
+        // struct msghdr
+        int nameOffset = 0;
+        int nameLengthOffset = p;
+        int iovOffset = align(p + 4, p);
+        int iovLengthOffset = iovOffset + p;
+        int controlOffset = iovLengthOffset + s;
+        int controlLengthOffset = controlOffset + p;
+        message.setPointer(nameOffset, addresses[destination]);
+        message.setInt(nameLengthOffset, addressLengths[destination]);
+        if (payload != null) {
+            iovec.setPointer(0, payload);
+            setWord(iovec, p, s, length);
+            message.setPointer(iovOffset, iovec);
+            setWord(message, iovLengthOffset, s, 1);
+        }
+        if (passedFd >= 0) {
+            // struct cmsghdr followed by the descriptor
+            control.clear();
+            setWord(control, 0, s, cmsgLength());
+            control.setInt(s, CLibrary.SOL_SOCKET);
+            control.setInt(s + 4, CLibrary.SCM_RIGHTS);
+            control.setInt(s + 8, passedFd);
+            message.setPointer(controlOffset, control);
+            setWord(message, controlLengthOffset, s, cmsgSpace());
+        }
+        if (direct) {
+            DirectCLibrary.sendmsg(fd, message, CLibrary.MSG_NOSIGNAL);
+        } else {
+            c.sendmsg(fd, message, CLibrary.MSG_NOSIGNAL);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (fd >= 0) {
+            c.close(fd);
+            fd = -1;
+        }
+    }
+
+    private static int msghdrSize() {
+        int p = Native.POINTER_SIZE;
+        int s = Native.SIZE_T_SIZE;
+        int iovOffset = align(p + 4, p);
+        return align(iovOffset + p + s + p + s + 4, p);
+    }
+
+    private static int cmsgLength() {
+        return Native.SIZE_T_SIZE + 8 + 4;
+    }
+
+    private static int cmsgSpace() {
+        return align(cmsgLength(), Native.SIZE_T_SIZE);
+    }
+
+    private static int align(int value, int alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+
+    private static void setWord(Memory memory, long offset, int width, long value) {
+        if (width == 8) {
+            memory.setLong(offset, value);
+        } else {
+            memory.setInt(offset, (int) value);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Memory-mapped, size-capped file holding the entries that could not be sent
+ * to the journal, until they are replayed.
+ *
+ * <p>The file starts with a header holding the current epoch and the position
+ * of the next record to replay, followed by the records:
+ *
+ * <pre>
+ * | length (4) | epoch (4) | crc32c of epoch and payload (4) | payload (length) |
+ * </pre>
+ *
+ * <p>Records are only ever appended. The end of the file is found by scanning
+ * the records until one is incomplete, corrupted or belongs to another epoch,
+ * so a record torn by a crash is simply ignored. Once every record has been
+ * replayed, the epoch is incremented and the file is reused from the start,
+ * which invalidates the stale records without having to clear them.
+ *
+ * <p>Delivery is at least once: an entry sent right before a crash may be
+ * replayed again on restart.
+ *
+ * <p>This class is not thread-safe, except for {@link #hasPending()}, which
+ * may be called without holding the lock guarding the other methods.
+ */
+final class JournalSpillFile implements AutoCloseable {
+
+    static final int HEADER_SIZE = 32;
+
+    static final int RECORD_HEADER_SIZE = 12;
+
+    private static final int MAGIC = 0x4a53504c;
+
+    private static final int VERSION = 1;
+
+    private static final int EPOCH_OFFSET = 8;
+
+    private static final int READ_POSITION_OFFSET = 16;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private final CRC32C crc = new CRC32C();
+
+    private final int capacity;
+
+    private int epoch;
+
+    private int readPosition;
+
+    private int writePosition;
+
+    /** whether records are left to replay, readable without the lock */
+    private volatile boolean pending;
+
+    private JournalSpillFile(FileChannel channel, MappedByteBuffer buffer, int capacity) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Opens or creates a spill file. The records left by a previous run are
+     * kept and will be replayed.
+     */
+    static JournalSpillFile open(File file, long size) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+        FileChannel channel = FileChannel.open(
+                file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            // never shrink an existing file, it may still hold records
+            long capacity = Math.max(size, channel.size());
+            if (capacity < HEADER_SIZE + RECORD_HEADER_SIZE || capacity > Integer.MAX_VALUE) {
+                throw new IOException("Invalid spill file size " + capacity);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            JournalSpillFile spill = new JournalSpillFile(channel, buffer, (int) capacity);
+            spill.recover();
+            return spill;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void recover() {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            epoch = 1;
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(EPOCH_OFFSET, epoch);
+            readPosition = HEADER_SIZE;
+            writePosition = HEADER_SIZE;
+            buffer.putLong(READ_POSITION_OFFSET, readPosition);
+            return;
+        }
+        epoch = buffer.getInt(EPOCH_OFFSET);
+        long savedReadPosition = buffer.getLong(READ_POSITION_OFFSET);
+
+        int pos = HEADER_SIZE;
+        boolean readPositionIsValid = savedReadPosition == pos;
+        while (isValidRecord(pos)) {
+            pos += RECORD_HEADER_SIZE + buffer.getInt(pos);
+            readPositionIsValid |= savedReadPosition == pos;
+        }
+        writePosition = pos;
+        // a read position that is not a record boundary means the header is
+        // corrupted, replaying everything is the safest option
+        readPosition = readPositionIsValid ? (int) savedReadPosition : HEADER_SIZE;
+        pending = readPosition < writePosition;
+    }
+
+    private boolean isValidRecord(int pos) {
+        if (pos + RECORD_HEADER_SIZE > capacity) {
+            return false;
+        }
+        int length = buffer.getInt(pos);
+        if (length <= 0 || length > capacity - pos - RECORD_HEADER_SIZE) {
+            return false;
+        }
+        if (buffer.getInt(pos + 4) != epoch) {
+            return false;
+        }
+        crc.reset();
+        crc.update(buffer.duplicate().position(pos + 4).limit(pos + 8));
+        crc.update(buffer.duplicate().position(pos + RECORD_HEADER_SIZE).limit(pos + RECORD_HEADER_SIZE + length));
+        return (int) crc.getValue() == buffer.getInt(pos + 8);
+    }
+
+    /**
+     * Appends an entry to the file.
+     *
+     * @return {@code false} if the file is full
+     */
+    boolean append(JournalEntry entry) {
+        int length = entry.size();
+        if (length == 0 || (long) writePosition + RECORD_HEADER_SIZE + length > capacity) {
+            return false;
+        }
+        crc.reset();
+        crc.update((epoch >>> 24) & 0xff);
+        crc.update((epoch >>> 16) & 0xff);
+        crc.update((epoch >>> 8) & 0xff);
+        crc.update(epoch & 0xff);
+        crc.update(entry.array(), 0, length);
+
+        buffer.position(writePosition + RECORD_HEADER_SIZE);
+        entry.writeTo(buffer);
+        buffer.putInt(writePosition + 4, epoch);
+        buffer.putInt(writePosition + 8, (int) crc.getValue());
+        buffer.putInt(writePosition, length);
+        writePosition += RECORD_HEADER_SIZE + length;
+        pending = true;
+        return true;
+    }
+
+    boolean hasPending() {
+        return pending;
+    }
+
+    /**
+     * Reads the next record to replay into the given entry, without consuming
+     * it.
+     *
+     * @return {@code false} if there is nothing to replay
+     */
+    boolean peek(JournalEntry entry) {
+        if (!hasPending()) {
+            return false;
+        }
+        int length = buffer.getInt(readPosition);
+        buffer.position(readPosition + RECORD_HEADER_SIZE);
+        entry.readFrom(buffer, length);
+        return true;
+    }
+
+    /**
+     * Consumes the record returned by the last call to {@link #peek}.
+     */
+    void advance() {
+        if (!hasPending()) {
+            return;
+        }
+        readPosition += RECORD_HEADER_SIZE + buffer.getInt(readPosition);
+        if (readPosition == writePosition) {
+            // everything was replayed, start over with a new epoch
+            epoch++;
+            buffer.putInt(EPOCH_OFFSET, epoch);
+            readPosition = HEADER_SIZE;
+            writePosition = HEADER_SIZE;
+            pending = false;
+        }
+        buffer.putLong(READ_POSITION_OFFSET, readPosition);
+    }
+
+    /**
+     * Number of bytes used by the records not replayed yet.
+     */
+    int pendingBytes() {
+        return writePosition - readPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
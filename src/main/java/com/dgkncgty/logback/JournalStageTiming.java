@@ -0,0 +1,89 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+/**
+ * Time spent by the appender in one of its stages, over the sampled events.
+ *
+ * <p>Stages are {@code FORMAT} for the message or encoder, {@code STACK_TRACE}
+ * for the exception fields, {@code MDC} for the MDC fields, {@code FIELDS} for
+ * the other fields and {@code SEND} for the call to the journal. Percentiles
+ * are approximated within 12.5%.
+ */
+public final class JournalStageTiming {
+
+    private final String stage;
+
+    private final long count;
+
+    private final long meanNanos;
+
+    private final long p50Nanos;
+
+    private final long p90Nanos;
+
+    private final long p99Nanos;
+
+    private final long maxNanos;
+
+    JournalStageTiming(
+            String stage, long count, long meanNanos, long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos) {
+        this.stage = stage;
+        this.count = count;
+        this.meanNanos = meanNanos;
+        this.p50Nanos = p50Nanos;
+        this.p90Nanos = p90Nanos;
+        this.p99Nanos = p99Nanos;
+        this.maxNanos = maxNanos;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    /**
+     * Number of sampled events that went through this stage.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public long getMeanNanos() {
+        return meanNanos;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP90Nanos() {
+        return p90Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return stage + ": count=" + count + ", mean=" + meanNanos + "ns, p50=" + p50Nanos + "ns, p90=" + p90Nanos
+                + "ns, p99=" + p99Nanos + "ns, max=" + maxNanos + "ns";
+    }
+}
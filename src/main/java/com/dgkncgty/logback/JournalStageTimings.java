@@ -0,0 +1,207 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histograms of the time spent in each stage of the appender, fed
+ * by sampled events.
+ *
+ * <p>Durations are counted in buckets with 8 sub-buckets per power of two, so
+ * that the reported percentiles are within 12.5% of the actual values.
+ */
+final class JournalStageTimings {
+
+    enum Stage {
+        /** formatting the message, or running the encoder */
+        FORMAT,
+        /** writing the exception fields and stack trace */
+        STACK_TRACE,
+        /** normalizing and writing the MDC fields */
+        MDC,
+        /** writing the other fields */
+        FIELDS,
+        /** handing the entry to the transport */
+        SEND
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private static final int BUCKETS = 62 * 8;
+
+    private final Histogram[] histograms = new Histogram[STAGES.length];
+
+    JournalStageTimings() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Starts timing an event.
+     */
+    Sample start() {
+        Sample sample = new Sample(this);
+        sample.resume();
+        return sample;
+    }
+
+    void record(Stage stage, long nanos) {
+        histograms[stage.ordinal()].record(nanos);
+    }
+
+    List<JournalStageTiming> snapshot() {
+        List<JournalStageTiming> timings = new ArrayList<>(STAGES.length);
+        for (Stage stage : STAGES) {
+            timings.add(histograms[stage.ordinal()].snapshot(stage.name()));
+        }
+        return timings;
+    }
+
+    void reset() {
+        for (Histogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    static int bucket(long nanos) {
+        if (nanos < 8) {
+            return (int) Math.max(0, nanos);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - 3)) & 7;
+        return ((exponent - 2) << 3) | sub;
+    }
+
+    /**
+     * The largest duration counted in a bucket.
+     */
+    static long upperBound(int bucket) {
+        if (bucket < 8) {
+            return bucket;
+        }
+        int shift = (bucket >>> 3) - 1;
+        return ((8L | (bucket & 7)) << shift) + (1L << shift) - 1;
+    }
+
+    /**
+     * Durations of the stages of a single event, recorded all at once when it
+     * is done. Only used by one thread at a time.
+     */
+    static final class Sample {
+
+        private final JournalStageTimings timings;
+
+        private final long[] nanos = new long[STAGES.length];
+
+        private int recorded = 0;
+
+        private long last;
+
+        private Sample(JournalStageTimings timings) {
+            this.timings = timings;
+        }
+
+        /**
+         * Starts counting from now, ignoring the time elapsed since the last
+         * stage.
+         */
+        void resume() {
+            last = System.nanoTime();
+        }
+
+        /**
+         * Adds the time elapsed since the last stage to the given one.
+         */
+        void lap(Stage stage) {
+            long now = System.nanoTime();
+            nanos[stage.ordinal()] += now - last;
+            recorded |= 1 << stage.ordinal();
+            last = now;
+        }
+
+        void finish() {
+            for (Stage stage : STAGES) {
+                if ((recorded & (1 << stage.ordinal())) != 0) {
+                    timings.record(stage, nanos[stage.ordinal()]);
+                }
+            }
+        }
+    }
+
+    private static final class Histogram {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            buckets.incrementAndGet(bucket(nanos));
+            totalNanos.add(nanos);
+            if (nanos > maxNanos.get()) {
+                maxNanos.accumulateAndGet(nanos, Math::max);
+            }
+        }
+
+        JournalStageTiming snapshot(String stage) {
+            long[] counts = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                count += counts[i];
+            }
+            long mean = count == 0 ? 0 : totalNanos.sum() / count;
+            return new JournalStageTiming(
+                    stage,
+                    count,
+                    mean,
+                    percentile(counts, count, 0.5),
+                    percentile(counts, count, 0.9),
+                    percentile(counts, count, 0.99),
+                    maxNanos.get());
+        }
+
+        private static long percentile(long[] counts, long count, double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(count * percentile);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return upperBound(i);
+                }
+            }
+            return upperBound(counts.length - 1);
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            totalNanos.reset();
+            maxNanos.set(0);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Transport writing entries as lines to the journald stdout stream socket,
+ * over a single long-lived connection opened with the JDK unix domain socket
+ * support (Java 16 or later), without any native code.
+ *
+ * <p>Only the {@code MESSAGE} and {@code PRIORITY} fields are kept, the
+ * priority being sent as a {@code <N>} line prefix. Lines are buffered and
+ * written many at a time: the buffer is flushed when it is full, when an
+ * error entry is written, and when {@link #flush()} is called. A multi-line
+ * message ends up as one journal entry per line.
+ *
+ * <p>The buffered lines may be lost if journald is restarted before they are
+ * flushed.
+ */
+final class JournalStreamTransport implements JournalTransport {
+
+    static final String DEFAULT_SOCKET = "/run/systemd/journal/stdout";
+
+    private static final byte[] MESSAGE = "MESSAGE=".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] PRIORITY = "PRIORITY=".getBytes(StandardCharsets.US_ASCII);
+
+    /** priority up to which lines are flushed right away */
+    private static final int FLUSH_PRIORITY = 3;
+
+    private static final Method UNIX_DOMAIN_ADDRESS;
+
+    static {
+        Method method;
+        try {
+            method = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class);
+        } catch (ReflectiveOperationException e) {
+            method = null;
+        }
+        UNIX_DOMAIN_ADDRESS = method;
+    }
+
+    private final String socketPath;
+
+    private final String identifier;
+
+    private final ByteBuffer buffer;
+
+    private SocketChannel channel;
+
+    JournalStreamTransport(String socketPath, String identifier, int bufferSize) {
+        this.socketPath = socketPath;
+        this.identifier = identifier;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Path of the stdout socket of a journal namespace, the default namespace
+     * being designated by an empty name.
+     */
+    static String socketPath(String namespace) {
+        if (namespace == null || namespace.isEmpty()) {
+            return DEFAULT_SOCKET;
+        }
+        return "/run/systemd/journal." + namespace + "/stdout";
+    }
+
+    @Override
+    public void start() throws IOException {
+        if (UNIX_DOMAIN_ADDRESS == null) {
+            throw new IOException("The journal stream transport requires Java 16 or later");
+        }
+    }
+
+    private void connect() throws IOException {
+        SocketAddress address;
+        try {
+            address = (SocketAddress) UNIX_DOMAIN_ADDRESS.invoke(null, socketPath);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IOException("Invalid socket path " + socketPath, e);
+        }
+        channel = SocketChannel.open(address);
+        // stream header: identifier, unit id, default priority, level prefix,
+        // forward to syslog, kmsg and console
+        String header = identifier + "\n\n6\n1\n0\n0\n0\n";
+        buffer.clear();
+        buffer.put(header.getBytes(StandardCharsets.UTF_8));
+        try {
+            flush();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void send(JournalEntry entry) throws IOException {
+        if (channel == null) {
+            connect();
+        }
+        int priority = 6;
+        int message = -1;
+        for (int i = 0; i < entry.fieldCount(); i++) {
+            if (startsWith(entry, i, PRIORITY)) {
+                priority = parseDigit(entry, i, priority);
+            } else if (message < 0 && startsWith(entry, i, MESSAGE)) {
+                message = i;
+            }
+        }
+        if (message < 0) {
+            return;
+        }
+
+        byte[] array = entry.array();
+        int pos = entry.fieldOffset(message) + MESSAGE.length;
+        int end = entry.fieldOffset(message) + entry.fieldLength(message);
+        do {
+            int lineEnd = pos;
+            while (lineEnd < end && array[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            writeLine(priority, array, pos, lineEnd - pos);
+            pos = lineEnd + 1;
+        } while (pos < end);
+
+        if (priority <= FLUSH_PRIORITY) {
+            flush();
+        }
+    }
+
+    private void writeLine(int priority, byte[] array, int offset, int length) throws IOException {
+        // <N>, the line and the newline
+        if (buffer.remaining() < length + 4) {
+            flush();
+        }
+        if (buffer.remaining() < length + 4) {
+            // larger than the buffer, write it on its own
+            ByteBuffer line = ByteBuffer.allocate(length + 4);
+            putLine(line, priority, array, offset, length);
+            line.flip();
+            write(line);
+        } else {
+            putLine(buffer, priority, array, offset, length);
+        }
+    }
+
+    private static void putLine(ByteBuffer target, int priority, byte[] array, int offset, int length) {
+        target.put((byte) '<').put((byte) ('0' + priority)).put((byte) '>');
+        target.put(array, offset, length);
+        target.put((byte) '\n');
+    }
+
+    @Override
+    public boolean isBuffered() {
+        return true;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (channel == null || buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        try {
+            write(buffer);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    private void write(ByteBuffer source) throws IOException {
+        try {
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void stop() {
+        try {
+            flush();
+        } catch (IOException e) {
+            // nothing more can be done when stopping
+        }
+        close();
+    }
+
+    private void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // ignored, the connection is dropped anyway
+            }
+            channel = null;
+        }
+    }
+
+    private static boolean startsWith(JournalEntry entry, int index, byte[] prefix) {
+        if (entry.fieldLength(index) < prefix.length) {
+            return false;
+        }
+        byte[] array = entry.array();
+        int offset = entry.fieldOffset(index);
+        for (int i = 0; i < prefix.length; i++) {
+            if (array[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int parseDigit(JournalEntry entry, int index, int defaultValue) {
+        if (entry.fieldLength(index) != PRIORITY.length + 1) {
+            return defaultValue;
+        }
+        int digit = entry.array()[entry.fieldOffset(index) + PRIORITY.length] - '0';
+        return digit >= 0 && digit <= 7 ? digit : defaultValue;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+/**
+ * A {@link System.Logger} writing to the journal, created by
+ * {@link JournalLoggerFinder}.
+ *
+ * <p>Each thread keeps its own entry builder, so that logging a message
+ * without parameters allocates nothing. Entries hold {@code MESSAGE},
+ * {@code PRIORITY}, {@code THREAD_NAME} and {@code LOGGER_NAME}, plus
+ * {@code EXN_NAME} and {@code EXN_MESSAGE} when a throwable is logged. Unlike
+ * the appender, no timestamp, source location or stack trace fields are
+ * written, and the finder has its own {@link JournalWriter}, with its own
+ * cache of field prefixes.
+ */
+final class JournalSystemLogger implements System.Logger {
+
+    private final String name;
+
+    /** {@code null} when the journal could not be opened */
+    private final JournalWriter writer;
+
+    private final Level threshold;
+
+    private final ThreadLocal<JournalEntryBuilder> entries;
+
+    JournalSystemLogger(String name, JournalWriter writer, Level threshold) {
+        this.name = name;
+        this.writer = writer;
+        this.threshold = threshold;
+        this.entries = writer == null ? null : ThreadLocal.withInitial(writer::newEntry);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean isLoggable(Level level) {
+        return level != Level.OFF && level.getSeverity() >= threshold.getSeverity();
+    }
+
+    @Override
+    public void log(Level level, ResourceBundle bundle, String msg, Throwable thrown) {
+        if (isLoggable(level)) {
+            write(level, localize(bundle, msg), thrown);
+        }
+    }
+
+    @Override
+    public void log(Level level, ResourceBundle bundle, String format, Object... params) {
+        if (isLoggable(level)) {
+            String message = localize(bundle, format);
+            if (params != null && params.length > 0 && message != null) {
+                message = MessageFormat.format(message, params);
+            }
+            write(level, message, null);
+        }
+    }
+
+    private static String localize(ResourceBundle bundle, String msg) {
+        if (bundle == null || msg == null) {
+            return msg;
+        }
+        try {
+            return bundle.getString(msg);
+        } catch (MissingResourceException e) {
+            return msg;
+        }
+    }
+
+    private void write(Level level, String message, Throwable thrown) {
+        if (writer == null) {
+            printToStandardError(level, message, thrown);
+            return;
+        }
+        JournalEntryBuilder entry = entries.get();
+        entry.message(message)
+                .priority(priority(level))
+                .field("THREAD_NAME", Thread.currentThread().getName())
+                .field("LOGGER_NAME", name);
+        if (thrown != null) {
+            entry.field("EXN_NAME", thrown.getClass().getName()).field("EXN_MESSAGE", thrown.getMessage());
+        }
+        try {
+            entry.send();
+        } catch (IOException e) {
+            printToStandardError(level, message, thrown);
+        }
+    }
+
+    private void printToStandardError(Level level, String message, Throwable thrown) {
+        System.err.println(level.getName() + " " + name + ": " + message);
+        if (thrown != null) {
+            thrown.printStackTrace();
+        }
+    }
+
+    static int priority(Level level) {
+        switch (level) {
+            case ERROR:
+                return 3;
+            case WARNING:
+                return 4;
+            case INFO:
+                return 6;
+            default:
+                return 7;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Encodes the time of an event as {@code EVENT_TIMESTAMP_USEC}, in
+ * microseconds since the epoch, and {@code SYSLOG_TIMESTAMP}, in the local
+ * time zone, since the journal stamps entries when they are received.
+ *
+ * <p>The encoded fields of the last millisecond are cached, so that events
+ * logged within the same millisecond only have the microseconds to append.
+ * This class is thread-safe.
+ */
+final class JournalTimestampFields {
+
+    private static final byte[] EVENT_TIMESTAMP_USEC = "EVENT_TIMESTAMP_USEC=".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] SYSLOG_TIMESTAMP = "SYSLOG_TIMESTAMP=".getBytes(StandardCharsets.US_ASCII);
+
+    /** the encoded fields of a millisecond */
+    private static final class Cached {
+        final long millis;
+        /** {@code EVENT_TIMESTAMP_USEC=} and the milliseconds */
+        final byte[] usecPrefix;
+        /** the whole {@code SYSLOG_TIMESTAMP} field */
+        final byte[] syslog;
+
+        Cached(long millis, byte[] usecPrefix, byte[] syslog) {
+            this.millis = millis;
+            this.usecPrefix = usecPrefix;
+            this.syslog = syslog;
+        }
+    }
+
+    private final DateTimeFormatter syslogFormatter;
+
+    private volatile Cached cached;
+
+    JournalTimestampFields() {
+        this(ZoneId.systemDefault());
+    }
+
+    JournalTimestampFields(ZoneId zone) {
+        // the RFC 3164 format, e.g. "Oct  8 14:05:09"
+        this.syslogFormatter =
+                DateTimeFormatter.ofPattern("MMM ppd HH:mm:ss", Locale.ROOT).withZone(zone);
+    }
+
+    /**
+     * Adds the timestamp fields of an event.
+     *
+     * @param millis the time of the event, in milliseconds since the epoch
+     * @param nanos the nanoseconds within the second of the event, or a
+     *     negative value if unknown
+     */
+    void append(JournalEntry entry, long millis, int nanos) {
+        Cached current = cached(millis);
+        int micros = nanos < 0 ? 0 : (nanos / 1000) % 1000;
+        entry.beginField(current.usecPrefix)
+                .appendByte((byte) ('0' + micros / 100))
+                .appendByte((byte) ('0' + micros / 10 % 10))
+                .appendByte((byte) ('0' + micros % 10))
+                .endField();
+        entry.addEncoded(current.syslog);
+    }
+
+    private Cached cached(long millis) {
+        Cached current = cached;
+        if (current != null && current.millis == millis) {
+            return current;
+        }
+        byte[] syslog;
+        if (current != null && Math.floorDiv(current.millis, 1000) == Math.floorDiv(millis, 1000)) {
+            syslog = current.syslog;
+        } else {
+            syslog = concat(
+                    SYSLOG_TIMESTAMP,
+                    syslogFormatter.format(Instant.ofEpochMilli(millis)).getBytes(StandardCharsets.US_ASCII));
+        }
+        current = new Cached(
+                millis,
+                concat(EVENT_TIMESTAMP_USEC, Long.toString(millis).getBytes(StandardCharsets.US_ASCII)),
+                syslog);
+        cached = current;
+        return current;
+    }
+
+    private static byte[] concat(byte[] prefix, byte[] value) {
+        byte[] bytes = new byte[prefix.length + value.length];
+        System.arraycopy(prefix, 0, bytes, 0, prefix.length);
+        System.arraycopy(value, 0, bytes, prefix.length, value.length);
+        return bytes;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import ch.qos.logback.classic.Level;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Keeps one event out of N per level, deciding from a trace id so that all the
+ * events of a trace are kept or dropped together.
+ *
+ * <p>The trace id is hashed to a number in {@code [0, 1)}, and the event is
+ * kept when that number is below {@code 1/N}. A trace kept at some rate is
+ * therefore also kept at any higher rate, e.g. its INFO events are kept
+ * whenever its DEBUG events are. Events without trace id are sampled
+ * individually. WARN and ERROR events are always kept.
+ */
+final class JournalTraceSampler {
+
+    private final int traceRate;
+
+    private final int debugRate;
+
+    private final int infoRate;
+
+    JournalTraceSampler(int traceRate, int debugRate, int infoRate) {
+        this.traceRate = Math.max(1, traceRate);
+        this.debugRate = Math.max(1, debugRate);
+        this.infoRate = Math.max(1, infoRate);
+    }
+
+    /**
+     * Whether some level is sampled at all.
+     */
+    boolean isEnabled() {
+        return traceRate > 1 || debugRate > 1 || infoRate > 1;
+    }
+
+    /**
+     * The sample rate of a level, {@code 1} if all the events are kept.
+     */
+    int rate(Level level) {
+        switch (level.toInt()) {
+            case Level.TRACE_INT:
+                return traceRate;
+            case Level.DEBUG_INT:
+                return debugRate;
+            case Level.INFO_INT:
+                return infoRate;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Decides whether to keep an event sampled at the given rate.
+     *
+     * @param traceId the trace id of the event, or {@code null}
+     */
+    boolean keep(String traceId, int rate) {
+        if (rate <= 1) {
+            return true;
+        }
+        long hash = traceId == null ? ThreadLocalRandom.current().nextLong() : hash(traceId);
+        // top 53 bits as a double in [0, 1)
+        double position = (hash >>> 11) * 0x1.0p-53;
+        return position * rate < 1;
+    }
+
+    /**
+     * 64 bits FNV-1a of the characters, with the murmur3 finalizer to spread
+     * ids differing only by their last characters.
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
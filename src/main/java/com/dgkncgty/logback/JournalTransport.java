@@ -0,0 +1,60 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import java.io.IOException;
+
+/**
+ * Delivers serialized entries to the journal.
+ *
+ * <p>Transports are not thread-safe, each of them is used by a single thread at
+ * a time.
+ */
+interface JournalTransport {
+
+    /**
+     * Acquires whatever resources the transport needs.
+     *
+     * @throws IOException if the transport cannot be used
+     */
+    default void start() throws IOException {}
+
+    /**
+     * Sends an entry to the journal.
+     *
+     * @throws IOException if the entry could not be delivered
+     */
+    void send(JournalEntry entry) throws IOException;
+
+    /**
+     * Whether sent entries may be held back until the next {@link #flush()}.
+     */
+    default boolean isBuffered() {
+        return false;
+    }
+
+    /**
+     * Writes out the entries held back by a buffered transport.
+     *
+     * @throws IOException if the entries could not be delivered
+     */
+    default void flush() throws IOException {}
+
+    /**
+     * Releases the resources held by the transport.
+     */
+    default void stop() {}
+}
@@ -0,0 +1,139 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes structured entries straight to the journal, without going through
+ * logback, for code that cannot afford a logging event per entry.
+ *
+ * <p>Entries are built with a {@link JournalEntryBuilder}, which encodes the
+ * fields into a reusable buffer, and sent through the journal socket the same
+ * way the appender does, with a directly mapped {@code sendmsg}. Once the
+ * buffers have grown to the size of the entries, building and sending an
+ * entry allocates nothing:
+ *
+ * <pre>
+ * JournalWriter writer = JournalWriter.open();
+ * JournalEntryBuilder entry = writer.newEntry();
+ * ...
+ * entry.message("Quote received").priority(6)
+ *         .field("SYMBOL", symbol)
+ *         .field("PRICE", price)
+ *         .send();
+ * </pre>
+ *
+ * <p>The writer is thread-safe, entries being sent one at a time. Builders are
+ * not, each thread is expected to keep its own.
+ */
+public final class JournalWriter implements Closeable {
+
+    private final JournalTransport transport;
+
+    /** encoded {@code NAME=} prefixes of the field names seen so far */
+    private final ConcurrentHashMap<String, byte[]> fieldPrefixes = new ConcurrentHashMap<>();
+
+    private boolean closed = false;
+
+    JournalWriter(JournalTransport transport) throws IOException {
+        this.transport = transport;
+        transport.start();
+    }
+
+    /**
+     * Opens a writer to the default journal namespace.
+     *
+     * @throws IOException if the journal socket cannot be used
+     */
+    public static JournalWriter open() throws IOException {
+        return open("");
+    }
+
+    /**
+     * Opens a writer to a journal namespace, the default one being designated
+     * by an empty name.
+     *
+     * @throws IOException if the journal socket cannot be used
+     */
+    public static JournalWriter open(String namespace) throws IOException {
+        try {
+            return new JournalWriter(new JournalSocketTransport(
+                    Collections.singletonList(JournalSocketTransport.socketPath(namespace)),
+                    JournalSocketTransport.Sharding.ROUND_ROBIN,
+                    null));
+        } catch (LinkageError e) {
+            throw new IOException("Could not load the C library", e);
+        }
+    }
+
+    /**
+     * Creates a builder for the entries of this writer, meant to be kept and
+     * reused by a single thread.
+     */
+    public JournalEntryBuilder newEntry() {
+        return new JournalEntryBuilder(this);
+    }
+
+    /**
+     * Sends an entry, then clears the builder for the next one.
+     *
+     * @throws IOException if the entry could not be delivered, in which case
+     *     the builder is cleared as well
+     */
+    public void write(JournalEntryBuilder entry) throws IOException {
+        try {
+            synchronized (this) {
+                if (closed) {
+                    throw new IOException("Journal writer is closed");
+                }
+                transport.send(entry.entry);
+            }
+        } finally {
+            entry.reset();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            transport.stop();
+        }
+    }
+
+    /**
+     * Returns the encoded {@code NAME=} prefix of a field.
+     *
+     * @throws IllegalArgumentException if the name is not a valid journal
+     *     field name
+     */
+    byte[] fieldPrefix(String name) {
+        byte[] prefix = name == null ? null : fieldPrefixes.get(name);
+        if (prefix == null) {
+            JournalFieldNames.checkName(name);
+            prefix = (name + "=").getBytes(StandardCharsets.US_ASCII);
+            if (fieldPrefixes.size() < JournalFieldNames.MAX_CACHED_KEYS) {
+                fieldPrefixes.putIfAbsent(name, prefix);
+            }
+        }
+        return prefix;
+    }
+}
@@ -0,0 +1,423 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A platform writer thread delivering entries handed over by other threads,
+ * with its own transport and circuit breaker.
+ *
+ * <p>Producers take an {@link Item} with {@link #acquire()}, encode the entry
+ * into it and hand it over with {@link #enqueue(Item)}. Items go through a
+ * lock-free queue, and are recycled once delivered, so that the entry buffers
+ * are reused.
+ *
+ * <p>The capacity of the shard is a number of bytes: the size of the buffers
+ * of all the items it holds, queued or waiting to be reused, plus the
+ * estimated size of the events still to be encoded by the writer thread. Once
+ * it is reached, items are only taken from those waiting to be reused, and
+ * none at all once it is exceeded, and items given back are dropped instead
+ * of kept for reuse, so that memory held by the shard stays around its
+ * capacity whatever the size of the entries.
+ *
+ * <p>A shard may instead queue entries in a {@link JournalRingFile}, so that
+ * they are not lost if the application crashes. Items are then only used to
+ * encode entries, which are copied to the file with {@link #persist}. Entries
+ * that cannot be sent stay in the file, and are retried once the circuit
+ * breaker lets them through.
+ */
+final class JournalWriterShard implements Runnable {
+
+    private static final MethodHandle IS_VIRTUAL;
+
+    static {
+        MethodHandle isVirtual;
+        try {
+            isVirtual = MethodHandles.publicLookup()
+                    .findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (ReflectiveOperationException e) {
+            // virtual threads are not supported before Java 21
+            isVirtual = null;
+        }
+        IS_VIRTUAL = isVirtual;
+    }
+
+    /** how long an idle writer waits before checking whether it was stopped */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Delivers the entries taken from the queue, on the writer thread.
+     */
+    interface Delivery {
+        void deliver(JournalWriterShard shard, Item item);
+    }
+
+    /**
+     * An entry handed over to the writer thread, along with the event it was
+     * encoded from, needed by fallback appenders. The entry may also be left
+     * empty, to be encoded from the event on the writer thread.
+     */
+    static final class Item {
+        final JournalEntry entry = new JournalEntry();
+        ILoggingEvent event;
+        /** whether the entry is still to be encoded from the event */
+        boolean deferred;
+        /** sample rate of the event, for deferred entries */
+        int sampleRate;
+        /** stage timings of the event, {@code null} if it is not sampled */
+        JournalStageTimings.Sample sample;
+        /** estimated size of the event, while the entry is still to be encoded */
+        int eventBytes;
+        /** size of the entry buffer and event counted in the shard capacity */
+        int accountedBytes;
+    }
+
+    final JournalTransport transport;
+
+    final JournalCircuitBreaker breaker;
+
+    /** {@code null} unless entries are numbered */
+    final JournalSequence sequence;
+
+    private final Delivery delivery;
+
+    private final long capacityBytes;
+
+    private final ConcurrentLinkedQueue<Item> queue = new ConcurrentLinkedQueue<>();
+
+    private final ConcurrentLinkedQueue<Item> free = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final Thread thread;
+
+    /** {@code null} when entries are queued in memory */
+    private final JournalRingFile ring;
+
+    private final JournalEntry ringEntry;
+
+    /** whether the last entry read from the ring could not be sent */
+    private boolean ringBlocked = false;
+
+    private volatile boolean running = true;
+
+    private volatile boolean waiting = false;
+
+    private boolean transportAvailable = false;
+
+    JournalWriterShard(
+            String name,
+            JournalTransport transport,
+            JournalCircuitBreaker breaker,
+            Delivery delivery,
+            long capacityBytes) {
+        this(name, transport, breaker, delivery, capacityBytes, null, null);
+    }
+
+    JournalWriterShard(
+            String name,
+            JournalTransport transport,
+            JournalCircuitBreaker breaker,
+            Delivery delivery,
+            long capacityBytes,
+            JournalRingFile ring,
+            JournalSequence sequence) {
+        this.transport = transport;
+        this.breaker = breaker;
+        this.sequence = sequence;
+        this.delivery = delivery;
+        this.capacityBytes = capacityBytes;
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+        this.ring = ring;
+        this.ringEntry = ring == null ? null : new JournalEntry();
+    }
+
+    static boolean isVirtual(Thread thread) {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(thread);
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Takes an item to encode an entry into.
+     *
+     * @return {@code null} if the shard is full
+     */
+    Item acquire() {
+        if (bytes.get() > capacityBytes) {
+            return null;
+        }
+        Item item = free.poll();
+        if (item != null) {
+            return item;
+        }
+        if (bytes.get() >= capacityBytes) {
+            return null;
+        }
+        item = new Item();
+        item.accountedBytes = item.entry.array().length;
+        bytes.addAndGet(item.accountedBytes);
+        return item;
+    }
+
+    /**
+     * Gives back an item that will not be enqueued.
+     */
+    void release(Item item) {
+        recycle(item);
+    }
+
+    void enqueue(Item item) {
+        // the entry buffer may have grown while encoding, or the item may
+        // hold an event to encode
+        account(item);
+        size.incrementAndGet();
+        queue.offer(item);
+        if (waiting) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    boolean isPersistent() {
+        return ring != null;
+    }
+
+    /**
+     * Copies an entry to the ring file, for shards created with one. Entries
+     * are numbered here when the shard has a sequence, in the order of the
+     * file.
+     *
+     * @return {@code false} if the ring file is full
+     */
+    boolean persist(JournalEntry entry) {
+        boolean appended;
+        synchronized (ring) {
+            if (sequence != null) {
+                sequence.stamp(entry);
+            }
+            appended = ring.append(entry);
+        }
+        if (appended && waiting) {
+            LockSupport.unpark(thread);
+        }
+        return appended;
+    }
+
+    /**
+     * Number of queued items not delivered yet.
+     */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Size of the buffers of all the items held by this shard.
+     */
+    long bytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Whether the transport of this shard was started successfully, only
+     * meaningful on the writer thread.
+     */
+    boolean isTransportAvailable() {
+        return transportAvailable;
+    }
+
+    @Override
+    public void run() {
+        startTransport();
+        while (true) {
+            if (ring != null ? deliverFromRing() : deliverFromQueue()) {
+                continue;
+            }
+            flush();
+            // entries left in the ring are sent after a restart
+            if (!running && (ring != null || queue.isEmpty())) {
+                break;
+            }
+            waiting = true;
+            if (running && isIdle()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            waiting = false;
+        }
+        transport.stop();
+    }
+
+    private void startTransport() {
+        try {
+            transport.start();
+            transportAvailable = true;
+        } catch (Exception | LinkageError e) {
+            breaker.onFailure("Failed to start systemd journal transport of " + thread.getName(), e);
+        }
+    }
+
+    private boolean isIdle() {
+        if (ring == null) {
+            return queue.isEmpty();
+        }
+        if (ringBlocked) {
+            return true;
+        }
+        synchronized (ring) {
+            return !ring.hasPending();
+        }
+    }
+
+    private boolean deliverFromQueue() {
+        Item item = queue.poll();
+        if (item == null) {
+            return false;
+        }
+        if (!transportAvailable && breaker.tryAcquire()) {
+            // started again at the pace of the circuit breaker probes
+            startTransport();
+            if (transportAvailable) {
+                breaker.onSuccess();
+            }
+        }
+        try {
+            delivery.deliver(this, item);
+        } finally {
+            size.decrementAndGet();
+            recycle(item);
+        }
+        return true;
+    }
+
+    /**
+     * Sends the next entry of the ring file, and consumes it once sent.
+     *
+     * @return {@code false} if the ring is empty or the entry could not be
+     *     sent
+     */
+    private boolean deliverFromRing() {
+        synchronized (ring) {
+            if (!ring.peek(ringEntry)) {
+                ringBlocked = false;
+                return false;
+            }
+        }
+        ringBlocked = true;
+        if (!breaker.tryAcquire()) {
+            return false;
+        }
+        if (!transportAvailable) {
+            startTransport();
+            if (!transportAvailable) {
+                return false;
+            }
+        }
+        try {
+            transport.send(ringEntry);
+            breaker.onSuccess();
+        } catch (Exception e) {
+            breaker.onFailure("Failed to append event to systemd journal: " + e.getMessage(), e);
+            return false;
+        }
+        synchronized (ring) {
+            ring.advance();
+        }
+        ringBlocked = false;
+        return true;
+    }
+
+    private void flush() {
+        if (transportAvailable && transport.isBuffered()) {
+            try {
+                transport.flush();
+            } catch (Exception e) {
+                breaker.onFailure("Failed to flush entries to systemd journal: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void account(Item item) {
+        int length = item.entry.array().length + item.eventBytes;
+        if (length != item.accountedBytes) {
+            bytes.addAndGet(length - item.accountedBytes);
+            item.accountedBytes = length;
+        }
+    }
+
+    private void recycle(Item item) {
+        item.event = null;
+        item.deferred = false;
+        item.eventBytes = 0;
+        item.sample = null;
+        item.entry.reset();
+        // the entry buffer may have grown while encoding
+        account(item);
+        if (bytes.get() > capacityBytes) {
+            bytes.addAndGet(-item.accountedBytes);
+        } else {
+            free.offer(item);
+        }
+    }
+
+    /**
+     * Closes the ring file, once the writer is stopped.
+     */
+    void closeRing() throws IOException {
+        if (ring != null) {
+            synchronized (ring) {
+                ring.close();
+            }
+        }
+    }
+
+    /**
+     * Stops the writer once the queued entries are delivered, waiting for at
+     * most the given time.
+     *
+     * @return {@code true} if the writer stopped in time
+     */
+    boolean stop(long maxFlushMillis) {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(maxFlushMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !thread.isAlive();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import java.io.IOException;
+
+/**
+ * Transport sending entries through {@code sd_journal_sendv}.
+ *
+ * <p>The native library is only loaded when the transport is started, so that
+ * a missing {@code libsystemd} is detected once, instead of failing on every
+ * event.
+ *
+ * <p>The serialized entry is copied once to native memory, and the
+ * {@code iovec} array points directly to the fields in there. Both native
+ * buffers are kept around and only grown when needed.
+ */
+final class NativeJournalTransport implements JournalTransport {
+
+    private static final int IOVEC_SIZE = Native.POINTER_SIZE + Native.SIZE_T_SIZE;
+
+    private SystemdJournalLibrary journald;
+
+    private Memory data = new Memory(4096);
+
+    private Memory iovecs = new Memory(32L * IOVEC_SIZE);
+
+    /**
+     * @param journald the library to use, or {@code null} to load it when the
+     *     transport is started
+     */
+    NativeJournalTransport(SystemdJournalLibrary journald) {
+        this.journald = journald;
+    }
+
+    @Override
+    public void start() throws IOException {
+        if (journald != null) {
+            return;
+        }
+        String name = System.getProperty("systemd.library", "systemd");
+        try {
+            journald = Native.load(name, SystemdJournalLibrary.class);
+        } catch (LinkageError e) {
+            throw new IOException("Could not load native library [" + name + "]", e);
+        }
+    }
+
+    @Override
+    public void send(JournalEntry entry) throws IOException {
+        int size = entry.size();
+        int count = entry.fieldCount();
+        if (data.size() < size) {
+            data = new Memory(Math.max(size, data.size() * 2));
+        }
+        if (iovecs.size() < (long) count * IOVEC_SIZE) {
+            iovecs = new Memory(Math.max((long) count * IOVEC_SIZE, iovecs.size() * 2));
+        }
+        data.write(0, entry.array(), 0, size);
+        long base = Pointer.nativeValue(data);
+        for (int i = 0; i < count; i++) {
+            long iovec = (long) i * IOVEC_SIZE;
+            setWord(iovecs, iovec, Native.POINTER_SIZE, base + entry.fieldOffset(i));
+            setWord(iovecs, iovec + Native.POINTER_SIZE, Native.SIZE_T_SIZE, entry.fieldLength(i));
+        }
+        int result = journald.sd_journal_sendv(iovecs, count);
+        if (result < 0) {
+            throw new IOException("sd_journal_sendv failed with error code " + result);
+        }
+    }
+
+    private static void setWord(Memory memory, long offset, int width, long value) {
+        if (width == 8) {
+            memory.setLong(offset, value);
+        } else {
+            memory.setInt(offset, (int) value);
+        }
+    }
+}
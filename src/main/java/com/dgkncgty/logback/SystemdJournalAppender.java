@@ -19,20 +19,96 @@ import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.classic.spi.IThrowableProxy;
 import ch.qos.logback.classic.spi.StackTraceElementProxy;
-import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
 import ch.qos.logback.core.encoder.Encoder;
-import java.io.StringWriter;
+import ch.qos.logback.core.spi.AppenderAttachable;
+import ch.qos.logback.core.spi.AppenderAttachableImpl;
+import ch.qos.logback.core.util.Duration;
+import ch.qos.logback.core.util.FileSize;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.slf4j.event.KeyValuePair;
 
 /**
  * An appender that send the events to systemd journal
  *
+ * <p>Calls to the journal are guarded by a circuit breaker. When it is open,
+ * events are written to the spill file if one is configured, and replayed once
+ * the journal is reachable again. Otherwise, they are forwarded to the attached
+ * fallback appenders, if any, and dropped.
+ *
+ * <p>The native library is loaded when the appender is started, or in the
+ * background when {@code transportWarmUp} is set. If it cannot be loaded, this
+ * is reported once and events go to the spill file and fallback appenders.
+ *
+ * <p>Events logged from virtual threads are encoded on the calling thread and
+ * handed to a platform writer thread, so that native calls do not pin their
+ * carrier thread. Events logged from platform threads are sent directly, unless
+ * {@code writerThreads} is set: all events then go through that many writer
+ * threads, each with its own queue and transport. A logging thread always uses
+ * the same writer, so that its events are kept in order.
+ *
+ * <p>When {@code queueFile} is set, writer threads queue the entries in
+ * memory-mapped ring files instead of memory, and the entries not sent when
+ * the application stops or crashes are sent on the next start.
+ *
+ * <p>INFO, DEBUG and TRACE events may be sampled, keeping all the events of a
+ * trace, identified by the {@code samplingKey} MDC key, or none of them. Kept
+ * events have a {@code SAMPLE_RATE} field.
+ *
+ * <p>When {@code flightRecorderKey} is set, events at or below
+ * {@code flightRecorderLevel} that have this MDC key are held back per value of the key, e.g. per request, and only sent
+ * when an error is logged with the same value.
+ *
+ * <p>When {@code timingSampleInterval} is set, the time spent in each stage of
+ * the appender is measured for one event out of that many on average, and
+ * exposed through JMX, see {@link SystemdJournalAppenderMXBean}.
+ *
  * @author Lucas Satabin
  */
-public class SystemdJournalAppender extends AppenderBase<ILoggingEvent> {
+public class SystemdJournalAppender extends UnsynchronizedAppenderBase<ILoggingEvent>
+        implements AppenderAttachable<ILoggingEvent>, SystemdJournalAppenderMXBean {
+
+    private static final byte[] MESSAGE = fieldPrefix("MESSAGE");
+    private static final byte[] PRIORITY = fieldPrefix("PRIORITY");
+    private static final byte[] CODE_FILE = fieldPrefix("CODE_FILE");
+    private static final byte[] CODE_LINE = fieldPrefix("CODE_LINE");
+    private static final byte[] CODE_FUNC = fieldPrefix("CODE_FUNC");
+    private static final byte[] EXN_NAME = fieldPrefix("EXN_NAME");
+    private static final byte[] EXN_MESSAGE = fieldPrefix("EXN_MESSAGE");
+    private static final byte[] EXN_STACKTRACE = fieldPrefix("EXN_STACKTRACE");
+    private static final byte[] THREAD_NAME = fieldPrefix("THREAD_NAME");
+    private static final byte[] MESSAGE_ID = fieldPrefix("MESSAGE_ID");
+    private static final byte[] SYSLOG_IDENTIFIER = fieldPrefix("SYSLOG_IDENTIFIER");
+    private static final byte[] LOGGER_NAME = fieldPrefix("LOGGER_NAME");
+    private static final byte[] SAMPLE_RATE = fieldPrefix("SAMPLE_RATE");
+
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+
+    /** maximum number of spilled entries replayed in one go */
+    private static final int SPILL_REPLAY_BATCH = 1024;
+
+    /** how long a logging thread waits before checking again for room in a full writer queue */
+    private static final long QUEUE_FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
 
     boolean logLocation = true;
 
@@ -46,148 +122,999 @@ public class SystemdJournalAppender extends AppenderBase<ILoggingEvent> {
 
     boolean logLoggerName = false;
 
+    boolean logEventTimestamp = true;
+
+    boolean logSequenceNumber = false;
+
     boolean logMdc = false;
 
     String mdcKeyPrefix = "";
 
+    String mdcIncludes = "";
+
+    String mdcExcludes = "";
+
+    boolean logKeyValuePairs = false;
+
+    boolean logMarkers = false;
+
+    List<String> markerFields = new ArrayList<>();
+
+    String keyValueKeyPrefix = "";
+
     String syslogIdentifier = "";
 
+    List<JournalField> fields = new ArrayList<>();
+
     Encoder<ILoggingEvent> encoder = null;
 
+    int circuitBreakerThreshold = 5;
+
+    Duration circuitBreakerInitialBackoff = Duration.buildBySeconds(1);
+
+    Duration circuitBreakerMaxBackoff = Duration.buildByMinutes(1);
+
+    Duration errorReportInterval = Duration.buildBySeconds(10);
+
+    String spillFile = null;
+
+    FileSize spillFileSize = new FileSize(64 * FileSize.MB_COEFFICIENT);
+
+    Duration spillReplayInterval = Duration.buildBySeconds(1);
+
+    String transportType = "auto";
+
+    FileSize streamBufferSize = new FileSize(64 * FileSize.KB_COEFFICIENT);
+
+    String exportFile = JournalExportFile.STANDARD_OUTPUT;
+
+    FileSize exportFileSize = new FileSize(128 * FileSize.MB_COEFFICIENT);
+
+    int exportFileCount = 5;
+
+    String remoteUrl = null;
+
+    String remoteCompression = "none";
+
+    FileSize remoteBatchSize = new FileSize(FileSize.MB_COEFFICIENT);
+
+    Duration remoteTimeout = Duration.buildBySeconds(10);
+
+    Duration flushInterval = Duration.buildBySeconds(1);
+
+    String namespace = "";
+
+    String namespaceSharding = "roundRobin";
+
+    boolean transportWarmUp = false;
+
+    boolean virtualThreadOffload = true;
+
+    int writerThreads = 0;
+
+    FileSize writerQueueCapacity = new FileSize(8 * FileSize.MB_COEFFICIENT);
+
+    Duration maxFlushTime = Duration.buildBySeconds(1);
+
+    boolean deferredFormatting = true;
+
+    String queueFile = null;
+
+    FileSize queueFileSize = new FileSize(64 * FileSize.MB_COEFFICIENT);
+
+    int timingSampleInterval = 0;
+
+    String flightRecorderKey = "";
+
+    String flightRecorderLevel = "DEBUG";
+
+    int flightRecorderSize = 256;
+
+    int flightRecorderMaxKeys = 1024;
+
+    Duration flightRecorderTtl = Duration.buildByMinutes(1);
+
+    String samplingKey = "";
+
+    int traceSampleRate = 1;
+
+    int debugSampleRate = 1;
+
+    int infoSampleRate = 1;
+
+    SystemdJournalLibrary journald = null;
+
+    JournalTransport transport = null;
+
+    /** creates the transports of writer threads, defaults to the configured transport */
+    Supplier<JournalTransport> transportFactory = null;
+
+    /** tells the virtual threads apart, replaced by tests running on Java versions without them */
+    Predicate<Thread> virtualThreads = JournalWriterShard::isVirtual;
+
+    private volatile boolean transportAvailable = false;
+
+    private Future<?> transportStart;
+
+    private final AppenderAttachableImpl<ILoggingEvent> fallbackAppenders = new AppenderAttachableImpl<>();
+
+    private final JournalEntry entry = new JournalEntry();
+
+    private final JournalTimestampFields timestampFields = new JournalTimestampFields();
+
+    /** where the {@code export} and {@code remote} transports write, {@code null} for other transports */
+    private JournalExportTransport.Target exportTarget;
+
+    /** numbers the entries sent by the appender itself, {@code null} if disabled */
+    private JournalSequence sequence;
+
+    private JournalKeyFilter mdcFilter = JournalKeyFilter.ALL;
+
+    private JournalFieldNames mdcFieldNames;
+
+    private JournalFieldNames keyValueFieldNames;
+
+    private JournalMarkerFields markerFieldEncoder;
+
+    /** the static fields, encoded when the appender is started */
+    private byte[][] encodedFields;
+
+    private JournalCircuitBreaker circuitBreaker;
+
+    /** volatile for the writer threads checking it for every entry */
+    private volatile JournalSpillFile spill;
+
+    private JournalEntry replayEntry;
+
+    private ScheduledFuture<?> spillReplayer;
+
+    private ScheduledFuture<?> flusher;
+
+    private boolean spillFullReported = false;
+
+    private volatile JournalWriterShard[] writers;
+
+    /** the writer of the virtual threads when {@code writers} is not set */
+    private volatile JournalWriterShard[] virtualThreadShards;
+
+    private volatile boolean queueFileFullReported = false;
+
+    private final JournalStageTimings stageTimings = new JournalStageTimings();
+
+    private ObjectName mbeanName;
+
+    /** {@code null} when the flight recorder is disabled */
+    private JournalFlightRecorder flightRecorder;
+
+    private Level flightRecorderThreshold;
+
+    /** {@code null} when no level is sampled */
+    private JournalTraceSampler traceSampler;
+
+    /** whether deferred events keep the caller data of the logging thread */
+    private boolean deferredCallerData;
+
+    @Override
+    public void start() {
+        if (isStarted()) {
+            return;
+        }
+        try {
+            markerFieldEncoder = new JournalMarkerFields(logMarkers, JournalMarkerFields.parseMappings(markerFields));
+            encodedFields = encodeFields(fields);
+            mdcFilter = JournalKeyFilter.compile(mdcIncludes, mdcExcludes);
+            mdcFieldNames = new JournalFieldNames(mdcKeyPrefix, mdcFilter);
+        } catch (IllegalArgumentException e) {
+            addError(e.getMessage());
+            return;
+        }
+        circuitBreaker = newCircuitBreaker();
+        sequence = logSequenceNumber ? new JournalSequence() : null;
+        // validated before any file is opened, creating it holds no resource
+        boolean createdTransport = transport == null;
+        if (createdTransport) {
+            try {
+                transport = createTransport();
+            } catch (IllegalArgumentException e) {
+                addError(e.getMessage());
+                return;
+            }
+        }
+        JournalRingFile[] rings = null;
+        if (queueFile != null && !queueFile.isEmpty()) {
+            try {
+                rings = openQueueFiles(Math.max(1, writerThreads));
+            } catch (IOException e) {
+                addError("Failed to open queue file [" + queueFile + "]", e);
+                abortStart(createdTransport, null);
+                return;
+            }
+        }
+        if (spillFile != null && !spillFile.isEmpty()) {
+            try {
+                spill = JournalSpillFile.open(new File(spillFile), spillFileSize.getSize());
+            } catch (IOException e) {
+                addError("Failed to open spill file [" + spillFile + "]", e);
+                abortStart(createdTransport, rings);
+                return;
+            }
+            replayEntry = new JournalEntry();
+            if (spill.hasPending()) {
+                addInfo(spill.pendingBytes() + " bytes of entries left in spill file [" + spillFile
+                        + "] will be replayed");
+            }
+            long interval = spillReplayInterval.getMilliseconds();
+            spillReplayer = getContext()
+                    .getScheduledExecutorService()
+                    .scheduleWithFixedDelay(this::replaySpill, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        if (transportWarmUp) {
+            transportStart = getContext().getExecutorService().submit(this::startTransport);
+        } else {
+            startTransport();
+        }
+        if (transport.isBuffered()) {
+            long interval = flushInterval.getMilliseconds();
+            flusher = getContext()
+                    .getScheduledExecutorService()
+                    .scheduleWithFixedDelay(this::flushTransport, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        if (rings != null) {
+            writers = startWriters(rings.length, rings);
+        } else if (writerThreads > 0) {
+            writers = startWriters(writerThreads, null);
+        }
+        if (timingSampleInterval > 0) {
+            registerMBean();
+        }
+        deferredCallerData = logSourceLocation || JournalDeferredEvent.needsCallerData(encoder);
+        JournalTraceSampler sampler = new JournalTraceSampler(traceSampleRate, debugSampleRate, infoSampleRate);
+        traceSampler = sampler.isEnabled() ? sampler : null;
+        if (flightRecorderKey != null && !flightRecorderKey.isEmpty()) {
+            flightRecorderThreshold = Level.toLevel(flightRecorderLevel, Level.DEBUG);
+            flightRecorder = new JournalFlightRecorder(
+                    flightRecorderSize, flightRecorderMaxKeys, flightRecorderTtl.getMilliseconds());
+        }
+        super.start();
+    }
+
+    /**
+     * Releases what a failed {@link #start()} already set up, so that a later
+     * start opens everything anew.
+     */
+    private void abortStart(boolean createdTransport, JournalRingFile[] rings) {
+        if (rings != null) {
+            closeRings(rings);
+        }
+        if (createdTransport) {
+            transport = null;
+            exportTarget = null;
+        }
+    }
+
+    private void registerMBean() {
+        try {
+            ObjectName name = new ObjectName("com.dgkncgty.logback:type=SystemdJournalAppender,context="
+                    + ObjectName.quote(String.valueOf(getContext().getName())) + ",name="
+                    + ObjectName.quote(String.valueOf(getName())));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            mbeanName = name;
+        } catch (JMException e) {
+            addWarn("Failed to register stage timings in JMX", e);
+        }
+    }
+
+    /**
+     * Opens one ring file per writer thread, named after {@code queueFile}
+     * with the index of the writer appended when there are several of them.
+     */
+    private JournalRingFile[] openQueueFiles(int count) throws IOException {
+        JournalRingFile[] rings = new JournalRingFile[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                File file = new File(count == 1 ? queueFile : queueFile + "." + i);
+                rings[i] = JournalRingFile.open(file, queueFileSize.getSize());
+                if (rings[i].hasPending()) {
+                    addInfo(rings[i].pendingBytes() + " bytes of entries left in queue file [" + file
+                            + "] will be sent");
+                }
+            }
+        } catch (IOException e) {
+            closeRings(rings);
+            throw e;
+        }
+        return rings;
+    }
+
+    private void closeRings(JournalRingFile[] rings) {
+        for (JournalRingFile ring : rings) {
+            if (ring != null) {
+                try {
+                    ring.close();
+                } catch (IOException e) {
+                    addError("Failed to close queue file [" + queueFile + "]", e);
+                }
+            }
+        }
+    }
+
+    private static byte[][] encodeFields(List<JournalField> fields) {
+        byte[][] encoded = new byte[fields.size()][];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = fields.get(i).encode();
+        }
+        return encoded;
+    }
+
+    private JournalCircuitBreaker newCircuitBreaker() {
+        return new JournalCircuitBreaker(
+                this,
+                circuitBreakerThreshold,
+                circuitBreakerInitialBackoff.getMilliseconds(),
+                circuitBreakerMaxBackoff.getMilliseconds(),
+                errorReportInterval.getMilliseconds());
+    }
+
+    private JournalTransport createTransport() {
+        List<String> namespaces = new ArrayList<>();
+        for (String name : namespace.split(",")) {
+            if (!name.trim().isEmpty()) {
+                namespaces.add(name.trim());
+            }
+        }
+        switch (transportType.toLowerCase()) {
+            case "auto":
+                return namespaces.isEmpty() ? new NativeJournalTransport(journald) : createSocketTransport(namespaces);
+            case "native":
+                if (!namespaces.isEmpty()) {
+                    throw new IllegalArgumentException("The native transport does not support namespaces");
+                }
+                return new NativeJournalTransport(journald);
+            case "socket":
+                return createSocketTransport(namespaces);
+            case "stream":
+                if (namespaces.size() > 1) {
+                    throw new IllegalArgumentException("The stream transport supports a single namespace");
+                }
+                return new JournalStreamTransport(
+                        JournalStreamTransport.socketPath(namespaces.isEmpty() ? "" : namespaces.get(0)),
+                        syslogIdentifier.isEmpty() ? "java" : syslogIdentifier,
+                        (int) streamBufferSize.getSize());
+            case "export":
+                // shared by the transports of the writer threads
+                if (exportTarget == null) {
+                    exportTarget = new JournalExportFile(exportFile, exportFileSize.getSize(), exportFileCount);
+                }
+                return new JournalExportTransport(exportTarget, (int) streamBufferSize.getSize());
+            case "remote":
+                if (exportTarget == null) {
+                    exportTarget = new JournalRemoteUpload(
+                            this, remoteUrl, remoteCompression, remoteTimeout.getMilliseconds());
+                }
+                return new JournalExportTransport(exportTarget, (int) remoteBatchSize.getSize());
+            default:
+                throw new IllegalArgumentException("Unknown transport [" + transportType
+                        + "], expected auto, native, socket, stream, export or remote");
+        }
+    }
+
+    private JournalTransport createSocketTransport(List<String> namespaces) {
+        List<String> sockets = new ArrayList<>();
+        for (String name : namespaces) {
+            sockets.add(JournalSocketTransport.socketPath(name));
+        }
+        if (sockets.isEmpty()) {
+            sockets.add(JournalSocketTransport.DEFAULT_SOCKET);
+        }
+        JournalSocketTransport.Sharding sharding;
+        if ("roundRobin".equalsIgnoreCase(namespaceSharding)) {
+            sharding = JournalSocketTransport.Sharding.ROUND_ROBIN;
+        } else if ("logger".equalsIgnoreCase(namespaceSharding)) {
+            sharding = JournalSocketTransport.Sharding.ROUTING_KEY;
+        } else {
+            throw new IllegalArgumentException(
+                    "Unknown namespace sharding [" + namespaceSharding + "], expected roundRobin or logger");
+        }
+        return new JournalSocketTransport(sockets, sharding, null);
+    }
+
+    private void startTransport() {
+        try {
+            transport.start();
+            transportAvailable = true;
+        } catch (IOException | LinkageError e) {
+            transportAvailable = false;
+            addError(
+                    "systemd journal is not available, events will only go to the spill file and fallback appenders",
+                    e);
+        }
+    }
+
+    /**
+     * Waits for the transport to be started in the background, if it is.
+     *
+     * @return {@code true} if the transport can be used
+     */
+    private boolean awaitTransport() {
+        if (transportStart != null) {
+            try {
+                transportStart.get();
+                transportStart = null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                transportStart = null;
+                addError("Failed to start systemd journal transport", e.getCause());
+            }
+        }
+        return transportAvailable;
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+        if (mbeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            } catch (JMException e) {
+                addWarn("Failed to unregister stage timings from JMX", e);
+            }
+            mbeanName = null;
+        }
+        JournalWriterShard[] stoppedWriters;
+        JournalWriterShard[] stoppedVirtualThreadShards;
+        synchronized (this) {
+            stoppedWriters = writers;
+            writers = null;
+            stoppedVirtualThreadShards = virtualThreadShards;
+            virtualThreadShards = null;
+        }
+        // outside of the lock, the writers need it to spill entries
+        long deadline = System.currentTimeMillis() + maxFlushTime.getMilliseconds();
+        stopWriters(stoppedWriters, deadline);
+        stopWriters(stoppedVirtualThreadShards, deadline);
+        synchronized (this) {
+            if (spill != null) {
+                spillReplayer.cancel(false);
+                try {
+                    spill.close();
+                } catch (IOException e) {
+                    addError("Failed to close spill file [" + spillFile + "]", e);
+                }
+                spill = null;
+            }
+            if (transportStart != null) {
+                transportStart.cancel(false);
+                transportStart = null;
+            }
+            if (flusher != null) {
+                flusher.cancel(false);
+                flusher = null;
+            }
+            transport.stop();
+            transportAvailable = false;
+            circuitBreaker.flush();
+        }
+        if (flightRecorder != null) {
+            flightRecorder.clear();
+            flightRecorder = null;
+        }
+        fallbackAppenders.detachAndStopAllAppenders();
+    }
+
     @Override
     protected void append(ILoggingEvent event) {
+        // before sampling, so that a failing trace is recorded in full
+        JournalFlightRecorder recorder = flightRecorder;
+        if (recorder != null) {
+            String context = event.getMDCPropertyMap().get(flightRecorderKey);
+            if (context != null) {
+                Level level = event.getLevel();
+                if (!level.isGreaterOrEqual(Level.ERROR) && flightRecorderThreshold.isGreaterOrEqual(level)) {
+                    event.prepareForDeferredProcessing();
+                    if (deferredCallerData) {
+                        // computed lazily, from the stack of the error otherwise
+                        event.getCallerData();
+                    }
+                    recorder.record(context, event);
+                    return;
+                }
+                if (level.isGreaterOrEqual(Level.ERROR)) {
+                    for (ILoggingEvent recorded : recorder.drain(context)) {
+                        dispatch(recorded, 1);
+                    }
+                }
+            }
+        }
+        int sampleRate = 1;
+        JournalTraceSampler sampler = traceSampler;
+        if (sampler != null) {
+            // decided from the MDC only, before anything is formatted
+            sampleRate = sampler.rate(event.getLevel());
+            if (sampleRate > 1 && !sampler.keep(event.getMDCPropertyMap().get(samplingKey), sampleRate)) {
+                return;
+            }
+        }
+        dispatch(event, sampleRate);
+    }
+
+    private void dispatch(ILoggingEvent event, int sampleRate) {
+        JournalStageTimings.Sample sample = timingSampleInterval > 0 ? sample() : null;
+        Thread current = Thread.currentThread();
+        JournalWriterShard[] shards = writers;
+        if (shards == null && virtualThreadOffload && virtualThreads.test(current)) {
+            shards = virtualThreadWriters();
+        }
+        if (shards != null) {
+            offload(shards[(int) Math.floorMod(current.getId(), (long) shards.length)], event, sampleRate, sample);
+            return;
+        }
+        synchronized (this) {
+            try {
+                entry.reset();
+                encode(event, entry, sampleRate, sample);
+            } catch (Exception e) {
+                addError("Failed to append event to systemd journal", e);
+                return;
+            }
+            if (sequence != null) {
+                sequence.stamp(entry);
+            }
+            deliver(event, entry, sample);
+        }
+    }
+
+    private JournalStageTimings.Sample sample() {
+        int interval = timingSampleInterval;
+        return interval > 0 && ThreadLocalRandom.current().nextInt(interval) == 0 ? stageTimings.start() : null;
+    }
+
+    /**
+     * Queues the event for a writer thread, waiting for room in its queue if
+     * it is full. The event is encoded on the calling thread, unless
+     * {@code deferredFormatting} is set and entries are queued in memory.
+     */
+    private void offload(
+            JournalWriterShard shard, ILoggingEvent event, int sampleRate, JournalStageTimings.Sample sample) {
+        JournalWriterShard.Item item;
+        while ((item = shard.acquire()) == null) {
+            if (!isStarted()) {
+                return;
+            }
+            LockSupport.parkNanos(this, QUEUE_FULL_PARK_NANOS);
+        }
         try {
-            // get the message id if any
-            Map<String, String> mdc = event.getMDCPropertyMap();
+            if (deferredFormatting && !shard.isPersistent()) {
+                // the writer thread formats and encodes the event
+                JournalDeferredEvent deferred = new JournalDeferredEvent(event, deferredCallerData);
+                item.event = deferred;
+                item.eventBytes = deferred.retainedSize();
+                item.deferred = true;
+                item.sampleRate = sampleRate;
+                item.sample = sample;
+                if (sample != null) {
+                    sample.lap(JournalStageTimings.Stage.FORMAT);
+                }
+                shard.enqueue(item);
+                return;
+            }
+            encode(event, item.entry, sampleRate, sample);
+            if (shard.isPersistent()) {
+                persist(shard, event, item.entry);
+                shard.release(item);
+                if (sample != null) {
+                    sample.finish();
+                }
+                return;
+            }
+            // the fallback appenders may see the event on the writer thread
+            event.prepareForDeferredProcessing();
+        } catch (Exception e) {
+            shard.release(item);
+            addError("Failed to append event to systemd journal", e);
+            return;
+        }
+        item.event = event;
+        item.sample = sample;
+        shard.enqueue(item);
+    }
+
+    private void persist(JournalWriterShard shard, ILoggingEvent event, JournalEntry entry) {
+        if (shard.persist(entry)) {
+            if (queueFileFullReported) {
+                queueFileFullReported = false;
+            }
+            return;
+        }
+        if (!queueFileFullReported) {
+            queueFileFullReported = true;
+            addWarn("Queue file [" + queueFile + "] is full, events go to the spill file and fallback appenders");
+        }
+        synchronized (this) {
+            spillOrFallback(event, entry);
+        }
+    }
+
+    /**
+     * The writer used for virtual threads when {@code writerThreads} is not
+     * set, started with the first event logged from a virtual thread. Events
+     * of platform threads are still sent directly.
+     */
+    private JournalWriterShard[] virtualThreadWriters() {
+        JournalWriterShard[] shards = virtualThreadShards;
+        if (shards != null) {
+            return shards;
+        }
+        synchronized (this) {
+            if (virtualThreadShards == null && isStarted()) {
+                virtualThreadShards = startWriters(1, null);
+            }
+            return virtualThreadShards;
+        }
+    }
 
-            List<Object> messages = new ArrayList<>();
+    private void stopWriters(JournalWriterShard[] shards, long deadline) {
+        if (shards == null) {
+            return;
+        }
+        for (JournalWriterShard shard : shards) {
+            if (!shard.stop(Math.max(1, deadline - System.currentTimeMillis()))) {
+                addWarn("Writer thread did not stop within " + maxFlushTime + ", " + shard.size()
+                        + " queued events are lost");
+            } else if (shard.isPersistent()) {
+                try {
+                    shard.closeRing();
+                } catch (IOException e) {
+                    addError("Failed to close queue file [" + queueFile + "]", e);
+                }
+            }
+            shard.breaker.flush();
+        }
+    }
 
-            // the formatted human readable message
-            if (encoder == null) messages.add(event.getFormattedMessage());
-            else {
-                String message = new String(encoder.encode(event));
-                messages.add(message);
+    private JournalWriterShard[] startWriters(int count, JournalRingFile[] rings) {
+        JournalWriterShard[] shards = new JournalWriterShard[count];
+        for (int i = 0; i < count; i++) {
+            JournalTransport writerTransport = transportFactory != null ? transportFactory.get() : createTransport();
+            shards[i] = new JournalWriterShard(
+                    getName() + "-writer-" + i,
+                    writerTransport,
+                    newCircuitBreaker(),
+                    this::deliverQueued,
+                    writerQueueCapacity.getSize(),
+                    rings == null ? null : rings[i],
+                    logSequenceNumber ? new JournalSequence() : null);
+            shards[i].start();
+        }
+        return shards;
+    }
+
+    private void encode(ILoggingEvent event, JournalEntry entry, int sampleRate, JournalStageTimings.Sample sample) {
+        String loggerName = event.getLoggerName();
+        entry.routingKey(loggerName == null ? 0 : loggerName.hashCode());
+
+        // get the message id if any
+        Map<String, String> mdc = event.getMDCPropertyMap();
+
+        // the formatted human readable message
+        if (encoder == null) entry.add(MESSAGE, event.getFormattedMessage());
+        else {
+            byte[] message;
+            // encoders are not meant to be shared by threads
+            synchronized (encoder) {
+                message = encoder.encode(event);
             }
+            entry.add(MESSAGE, message, 0, message.length);
+        }
+        if (sample != null) {
+            sample.lap(JournalStageTimings.Stage.FORMAT);
+        }
+
+        // the log level
+        entry.add(PRIORITY, levelToInt(event.getLevel()));
 
-            // the log level
-            messages.add("PRIORITY=%i");
-            messages.add(levelToInt(event.getLevel()));
+        // one event out of sampleRate was kept
+        if (sampleRate > 1) {
+            entry.add(SAMPLE_RATE, sampleRate);
+        }
+
+        // when the event happened, the journal only knows when it got it
+        if (logEventTimestamp) {
+            timestampFields.append(entry, event.getTimeStamp(), event.getNanoseconds());
+        }
+        if (sample != null) {
+            sample.lap(JournalStageTimings.Stage.FIELDS);
+        }
+
+        if (hasException(event)) {
+            StackTraceElementProxy[] stack = event.getThrowableProxy().getStackTraceElementProxyArray();
+            if (stack != null && stack.length > 0) {
+
+                // the location information if any is available and it is
+                // enabled
+                if (logLocation) {
+                    StackTraceElement elt = stack[0].getStackTraceElement();
+                    appendLocation(entry, elt);
+                }
+
+                // if one wants to log the exception name and message, just
+                // do it
+                if (logException) {
+                    entry.add(EXN_NAME, event.getThrowableProxy().getClassName());
+                    entry.add(EXN_MESSAGE, event.getThrowableProxy().getMessage());
+                }
 
-            if (hasException(event)) {
-                StackTraceElementProxy[] stack = event.getThrowableProxy().getStackTraceElementProxyArray();
-                if (stack != null && stack.length > 0) {
+                // if one wants to log the exception stack trace, just do it
+                if (logStackTrace) {
+                    entry.beginField(EXN_STACKTRACE);
 
-                    // the location information if any is available and it is
-                    // enabled
-                    if (logLocation) {
-                        StackTraceElement elt = stack[0].getStackTraceElement();
-                        appendLocation(messages, elt);
+                    // The main exception
+                    for (StackTraceElementProxy st : stack) {
+                        entry.appendUtf8(st.getSTEAsString()).appendByte((byte) '\n');
                     }
 
-                    // if one wants to log the exception name and message, just
-                    // do it
-                    if (logException) {
-                        messages.add("EXN_NAME=%s");
-                        messages.add(event.getThrowableProxy().getClassName());
-                        messages.add("EXN_MESSAGE=%s");
-                        messages.add(event.getThrowableProxy().getMessage());
+                    // Go down the caused by chain
+                    IThrowableProxy cause = event.getThrowableProxy().getCause();
+                    while (cause != null) {
+                        entry.appendUtf8("Caused by: ")
+                                .appendUtf8(cause.getClassName())
+                                .appendUtf8(": ")
+                                .appendUtf8(Objects.toString(cause.getMessage(), ""))
+                                .appendByte((byte) '\n');
+                        for (StackTraceElementProxy st : cause.getStackTraceElementProxyArray()) {
+                            entry.appendUtf8(st.getSTEAsString()).appendByte((byte) '\n');
+                        }
+                        cause = cause.getCause();
                     }
 
-                    // if one wants to log the exception stack trace, just do it
-                    if (logStackTrace) {
-                        messages.add("EXN_STACKTRACE=%s");
+                    entry.endField();
+                }
+            }
+            if (sample != null) {
+                sample.lap(JournalStageTimings.Stage.STACK_TRACE);
+            }
+        }
 
-                        // The main exception
-                        StringWriter stacktrace = new StringWriter();
-                        for (StackTraceElementProxy st : stack) {
-                            stacktrace.write(st.getSTEAsString());
-                            stacktrace.write('\n');
-                        }
+        // log thread name if enabled
+        if (logThreadName) {
+            entry.add(THREAD_NAME, event.getThreadName());
+        }
 
-                        // Go down the caused by chain
-                        IThrowableProxy cause = event.getThrowableProxy().getCause();
-                        while (cause != null) {
-                            stacktrace.write("Caused by: ");
-                            stacktrace.write(cause.getClassName());
-                            stacktrace.write(": ");
-                            stacktrace.write(Objects.toString(cause.getMessage(), ""));
-                            stacktrace.write("\n");
-                            for (StackTraceElementProxy st : cause.getStackTraceElementProxyArray()) {
-                                stacktrace.write(st.getSTEAsString());
-                                stacktrace.write('\n');
-                            }
-                            cause = cause.getCause();
-                        }
+        // add a message id field if any is defined for this logging event
+        if (mdc.containsKey(SystemdJournal.MESSAGE_ID)) {
+            entry.add(MESSAGE_ID, mdc.get(SystemdJournal.MESSAGE_ID));
+        }
+
+        // override the syslog identifier string if set
+        if (!syslogIdentifier.isEmpty()) {
+            entry.add(SYSLOG_IDENTIFIER, syslogIdentifier);
+        }
+
+        for (byte[] field : encodedFields) {
+            entry.addEncoded(field);
+        }
+
+        if (logLoggerName) {
+            entry.add(LOGGER_NAME, event.getLoggerName());
+        }
+
+        if (sample != null) {
+            sample.lap(JournalStageTimings.Stage.FIELDS);
+        }
+
+        if (logMdc) {
+            JournalFieldNames names = mdcFieldNames();
+            for (Map.Entry<String, String> mdcEntry : mdc.entrySet()) {
+                String key = mdcEntry.getKey();
+                if (key != null && !key.equals(SystemdJournal.MESSAGE_ID)) {
+                    byte[] fieldPrefix = names.fieldPrefix(key);
+                    if (fieldPrefix != null) {
+                        entry.add(fieldPrefix, mdcEntry.getValue());
+                    }
+                }
+            }
+            if (sample != null) {
+                sample.lap(JournalStageTimings.Stage.MDC);
+            }
+        }
+
+        if (logKeyValuePairs) {
+            List<KeyValuePair> keyValuePairs = event.getKeyValuePairs();
+            if (keyValuePairs != null && !keyValuePairs.isEmpty()) {
+                JournalFieldNames names = keyValueFieldNames();
+                for (int i = 0; i < keyValuePairs.size(); i++) {
+                    KeyValuePair pair = keyValuePairs.get(i);
+                    if (pair.key != null) {
+                        appendValue(entry.beginField(names.fieldPrefix(pair.key)), pair.value);
+                        entry.endField();
+                    }
+                }
+            }
+        }
+
+        if (!markerFieldEncoder.isEmpty()) {
+            markerFieldEncoder.append(entry, event.getMarkerList());
+        }
+
+        if (logSourceLocation && !hasException(event)) {
+            StackTraceElement[] callerData = event.getCallerData();
+            if (callerData != null && callerData.length >= 1) {
+                appendLocation(entry, callerData[0]);
+            }
+        }
+        if (sample != null) {
+            sample.lap(JournalStageTimings.Stage.FIELDS);
+        }
+    }
+
+    /**
+     * Sends an encoded entry to the journal. Entries go to the spill file, if
+     * enabled, when the journal is not reachable or older entries are still
+     * waiting to be replayed, so that ordering is preserved.
+     */
+    private void deliver(ILoggingEvent event, JournalEntry entry, JournalStageTimings.Sample sample) {
+        if (!awaitTransport() || !circuitBreaker.allowRequest()) {
+            spillOrFallback(event, entry);
+            return;
+        }
+        if (spill != null && spill.hasPending()) {
+            drainSpill(SPILL_REPLAY_BATCH);
+            if (spill.hasPending()) {
+                spillOrFallback(event, entry);
+                return;
+            }
+        }
+        if (sample != null) {
+            sample.resume();
+        }
+        if (send(entry)) {
+            if (sample != null) {
+                sample.lap(JournalStageTimings.Stage.SEND);
+                sample.finish();
+            }
+            return;
+        }
+        spillOrFallback(event, entry);
+    }
 
-                        messages.add(stacktrace.toString());
-                    }
+    /**
+     * Sends an entry taken from the queue of a writer thread, with the
+     * transport and circuit breaker of that thread.
+     */
+    private void deliverQueued(JournalWriterShard shard, JournalWriterShard.Item item) {
+        ILoggingEvent event = item.event;
+        JournalEntry entry = item.entry;
+        JournalStageTimings.Sample sample = item.sample;
+        if (item.deferred) {
+            if (sample != null) {
+                sample.resume();
+            }
+            try {
+                encode(event, entry, item.sampleRate, sample);
+            } catch (Exception e) {
+                addError("Failed to append event to systemd journal", e);
+                return;
+            }
+        }
+        if (shard.sequence != null) {
+            shard.sequence.stamp(entry);
+        }
+        if (shard.isTransportAvailable() && !hasSpilledEntries() && shard.breaker.allowRequest()) {
+            try {
+                if (sample != null) {
+                    sample.resume();
+                }
+                shard.transport.send(entry);
+                shard.breaker.onSuccess();
+                if (sample != null) {
+                    sample.lap(JournalStageTimings.Stage.SEND);
+                    sample.finish();
                 }
+                return;
+            } catch (Exception e) {
+                shard.breaker.onFailure("Failed to append event to systemd journal: " + e.getMessage(), e);
             }
+        }
+        synchronized (this) {
+            spillOrFallback(event, entry);
+        }
+    }
 
-            // log thread name if enabled
-            if (logThreadName) {
-                messages.add("THREAD_NAME=%s");
-                messages.add(event.getThreadName());
-            }
+    private boolean hasSpilledEntries() {
+        // without the lock, which the writer threads would contend for
+        JournalSpillFile current = spill;
+        return current != null && current.hasPending();
+    }
 
-            // add a message id field if any is defined for this logging event
-            if (mdc.containsKey(SystemdJournal.MESSAGE_ID)) {
-                messages.add("MESSAGE_ID=%s");
-                messages.add(mdc.get(SystemdJournal.MESSAGE_ID));
-            }
+    private boolean send(JournalEntry entry) {
+        try {
+            transport.send(entry);
+            circuitBreaker.onSuccess();
+            return true;
+        } catch (Exception e) {
+            circuitBreaker.onFailure("Failed to append event to systemd journal: " + e.getMessage(), e);
+            return false;
+        }
+    }
 
-            // override the syslog identifier string if set
-            if (!syslogIdentifier.isEmpty()) {
-                messages.add("SYSLOG_IDENTIFIER=%s");
-                messages.add(syslogIdentifier);
+    private void spillOrFallback(ILoggingEvent event, JournalEntry entry) {
+        if (spill != null) {
+            if (spill.append(entry)) {
+                spillFullReported = false;
+                return;
             }
-
-            if (logLoggerName) {
-                messages.add("LOGGER_NAME=%s");
-                messages.add(event.getLoggerName());
+            if (!spillFullReported) {
+                spillFullReported = true;
+                addWarn("Spill file [" + spillFile + "] is full, events will not be replayed");
             }
+        }
+        fallback(event);
+    }
 
-            if (logMdc) {
-                String normalizedKeyPrefix = normalizeKey(mdcKeyPrefix);
-                for (Map.Entry<String, String> entry : mdc.entrySet()) {
-                    String key = entry.getKey();
-                    if (key != null && !key.equals(SystemdJournal.MESSAGE_ID)) {
-                        messages.add(normalizedKeyPrefix + normalizeKey(key) + "=%s");
-                        messages.add(entry.getValue());
-                    }
-                }
+    /**
+     * Replays spilled entries, in order, until the spill file is empty, the
+     * limit is reached or the journal fails again.
+     */
+    private void drainSpill(int limit) {
+        for (int i = 0; i < limit && spill.peek(replayEntry); i++) {
+            if (!send(replayEntry)) {
+                return;
             }
+            spill.advance();
+        }
+    }
 
-            if (logSourceLocation && !hasException(event)) {
-                StackTraceElement[] callerData = event.getCallerData();
-                if (callerData != null && callerData.length >= 1) {
-                    appendLocation(messages, callerData[0]);
+    private void replaySpill() {
+        boolean more = true;
+        while (more) {
+            // release the lock between batches to let events go through
+            synchronized (this) {
+                if (spill == null
+                        || !spill.hasPending()
+                        || transportStart != null
+                        || !transportAvailable
+                        || !circuitBreaker.tryAcquire()) {
+                    return;
                 }
+                drainSpill(SPILL_REPLAY_BATCH);
+                more = spill.hasPending() && circuitBreaker.getState() == JournalCircuitBreaker.State.CLOSED;
             }
+        }
+    }
 
-            // the vararg list is null terminated
-            messages.add(null);
-
-            SystemdJournalLibrary journald = SystemdJournalLibrary.INSTANCE;
-
-            journald.sd_journal_send("MESSAGE=%s", messages.toArray());
-        } catch (Exception e) {
-            addError("Failed to append event to systemd journal", e);
+    private void flushTransport() {
+        synchronized (this) {
+            if (!transportAvailable || transportStart != null) {
+                return;
+            }
+            try {
+                transport.flush();
+            } catch (IOException e) {
+                circuitBreaker.onFailure("Failed to flush entries to systemd journal: " + e.getMessage(), e);
+            }
         }
     }
 
+    private void fallback(ILoggingEvent event) {
+        fallbackAppenders.appendLoopOnAppenders(event);
+    }
+
     private boolean hasException(ILoggingEvent event) {
         return event.getThrowableProxy() != null;
     }
 
-    private void appendLocation(List<Object> messages, StackTraceElement stackTraceElement) {
-        messages.add("CODE_FILE=%s");
-        messages.add(stackTraceElement.getFileName());
-        messages.add("CODE_LINE=%i");
-        messages.add(stackTraceElement.getLineNumber());
-        messages.add("CODE_FUNC=%s.%s");
-        messages.add(stackTraceElement.getClassName());
-        messages.add(stackTraceElement.getMethodName());
+    private void appendLocation(JournalEntry entry, StackTraceElement stackTraceElement) {
+        entry.add(CODE_FILE, stackTraceElement.getFileName());
+        entry.add(CODE_LINE, stackTraceElement.getLineNumber());
+        entry.beginField(CODE_FUNC)
+                .appendUtf8(stackTraceElement.getClassName())
+                .appendByte((byte) '.')
+                .appendUtf8(stackTraceElement.getMethodName())
+                .endField();
     }
 
     private int levelToInt(Level l) {
@@ -206,8 +1133,54 @@ public class SystemdJournalAppender extends AppenderBase<ILoggingEvent> {
         }
     }
 
-    private static String normalizeKey(String key) {
-        return key.toUpperCase().replaceAll("[^_A-Z0-9]", "_");
+    /**
+     * Writes a value in the field being built, encoding primitive wrappers
+     * directly instead of going through their string representation, and
+     * null as {@code (null)} like the other fields.
+     */
+    static void appendValue(JournalEntry entry, Object value) {
+        if (value == null) {
+            entry.appendNull();
+        } else if (value instanceof CharSequence) {
+            entry.appendUtf8((CharSequence) value);
+        } else if (value instanceof Long
+                || value instanceof Integer
+                || value instanceof Short
+                || value instanceof Byte) {
+            entry.appendLong(((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            byte[] bool = (Boolean) value ? TRUE : FALSE;
+            entry.appendBytes(bool, 0, bool.length);
+        } else if (value instanceof Character) {
+            char c = (Character) value;
+            if (c < 0x80) {
+                entry.appendByte((byte) c);
+            } else {
+                entry.appendUtf8(String.valueOf(c));
+            }
+        } else {
+            entry.appendUtf8(String.valueOf(value));
+        }
+    }
+
+    private JournalFieldNames mdcFieldNames() {
+        JournalFieldNames names = mdcFieldNames;
+        if (names == null || !names.prefix().equals(mdcKeyPrefix)) {
+            names = mdcFieldNames = new JournalFieldNames(mdcKeyPrefix, mdcFilter);
+        }
+        return names;
+    }
+
+    private JournalFieldNames keyValueFieldNames() {
+        JournalFieldNames names = keyValueFieldNames;
+        if (names == null || !names.prefix().equals(keyValueKeyPrefix)) {
+            names = keyValueFieldNames = new JournalFieldNames(keyValueKeyPrefix);
+        }
+        return names;
+    }
+
+    private static byte[] fieldPrefix(String key) {
+        return (key + "=").getBytes(StandardCharsets.US_ASCII);
     }
 
     public boolean isLogLocation() {
@@ -250,6 +1223,17 @@ public class SystemdJournalAppender extends AppenderBase<ILoggingEvent> {
         this.syslogIdentifier = syslogIdentifier;
     }
 
+    public List<JournalField> getFields() {
+        return fields;
+    }
+
+    /**
+     * Adds a field with a constant value to every entry.
+     */
+    public void addField(JournalField field) {
+        this.fields.add(field);
+    }
+
     public Encoder<ILoggingEvent> getEncoder() {
         return encoder;
     }
@@ -274,6 +1258,68 @@ public class SystemdJournalAppender extends AppenderBase<ILoggingEvent> {
         return mdcKeyPrefix;
     }
 
+    public String getMdcIncludes() {
+        return mdcIncludes;
+    }
+
+    /**
+     * Sets the MDC keys to log, as a comma separated list of keys and of
+     * prefixes ending with {@code *}. All keys are logged when empty.
+     */
+    public void setMdcIncludes(String mdcIncludes) {
+        this.mdcIncludes = mdcIncludes;
+    }
+
+    public String getMdcExcludes() {
+        return mdcExcludes;
+    }
+
+    /**
+     * Sets the MDC keys not to log, as a comma separated list of keys and of
+     * prefixes ending with {@code *}. Exclusions take precedence over
+     * inclusions.
+     */
+    public void setMdcExcludes(String mdcExcludes) {
+        this.mdcExcludes = mdcExcludes;
+    }
+
+    public boolean isLogKeyValuePairs() {
+        return logKeyValuePairs;
+    }
+
+    public void setLogKeyValuePairs(boolean logKeyValuePairs) {
+        this.logKeyValuePairs = logKeyValuePairs;
+    }
+
+    public String getKeyValueKeyPrefix() {
+        return keyValueKeyPrefix;
+    }
+
+    public void setKeyValueKeyPrefix(String keyValueKeyPrefix) {
+        this.keyValueKeyPrefix = keyValueKeyPrefix;
+    }
+
+    public boolean isLogMarkers() {
+        return logMarkers;
+    }
+
+    public void setLogMarkers(boolean logMarkers) {
+        this.logMarkers = logMarkers;
+    }
+
+    public List<String> getMarkerFields() {
+        return markerFields;
+    }
+
+    /**
+     * Adds a field written when the event has a given marker, either as
+     * {@code MARKER}, which writes {@code MARKER=1}, or as
+     * {@code MARKER:FIELD=value}.
+     */
+    public void addMarkerField(String markerField) {
+        this.markerFields.add(markerField);
+    }
+
     public void setLogLoggerName(boolean logLoggerName) {
         this.logLoggerName = logLoggerName;
     }
@@ -282,6 +1328,32 @@ public class SystemdJournalAppender extends AppenderBase<ILoggingEvent> {
         return logLoggerName;
     }
 
+    public boolean isLogSequenceNumber() {
+        return logSequenceNumber;
+    }
+
+    /**
+     * Sets whether entries are numbered, in the {@code SEQNUM} field, to
+     * measure how many are lost. Numbers increase by one within each
+     * sequence, identified by the {@code SEQNUM_ID} field: one for the
+     * entries sent by the appender itself, and one for each writer thread.
+     */
+    public void setLogSequenceNumber(boolean logSequenceNumber) {
+        this.logSequenceNumber = logSequenceNumber;
+    }
+
+    public boolean isLogEventTimestamp() {
+        return logEventTimestamp;
+    }
+
+    /**
+     * Sets whether the time of the event is logged, in the
+     * {@code EVENT_TIMESTAMP_USEC} and {@code SYSLOG_TIMESTAMP} fields.
+     */
+    public void setLogEventTimestamp(boolean logEventTimestamp) {
+        this.logEventTimestamp = logEventTimestamp;
+    }
+
     public void setLogSourceLocation(boolean logSourceLocation) {
         this.logSourceLocation = logSourceLocation;
     }
@@ -289,4 +1361,428 @@ public class SystemdJournalAppender extends AppenderBase<ILoggingEvent> {
     public boolean isLogSourceLocation() {
         return logSourceLocation;
     }
+
+    public String getTransport() {
+        return transportType;
+    }
+
+    /**
+     * Sets how entries are sent to the journal: {@code native} through
+     * libsystemd, {@code socket} with the journal native protocol,
+     * {@code stream} as lines on the journald stdout stream, {@code export}
+     * in the journal export format to a file or the standard output,
+     * {@code remote} by uploading the export format to
+     * {@code systemd-journal-remote}, or {@code auto} to use {@code socket}
+     * when a namespace is set, and {@code native} otherwise.
+     */
+    public void setTransport(String transport) {
+        this.transportType = transport;
+    }
+
+    public FileSize getStreamBufferSize() {
+        return streamBufferSize;
+    }
+
+    public void setStreamBufferSize(FileSize streamBufferSize) {
+        this.streamBufferSize = streamBufferSize;
+    }
+
+    public String getExportFile() {
+        return exportFile;
+    }
+
+    /**
+     * Sets the file written by the {@code export} transport, or {@code -} for
+     * the standard output.
+     */
+    public void setExportFile(String exportFile) {
+        this.exportFile = exportFile;
+    }
+
+    public FileSize getExportFileSize() {
+        return exportFileSize;
+    }
+
+    /**
+     * Sets the size from which the export file is rotated, 0 for no limit.
+     */
+    public void setExportFileSize(FileSize exportFileSize) {
+        this.exportFileSize = exportFileSize;
+    }
+
+    public String getRemoteUrl() {
+        return remoteUrl;
+    }
+
+    /**
+     * Sets the URL of the {@code systemd-journal-remote} upload endpoint the
+     * {@code remote} transport posts to, e.g.
+     * {@code http://logs.example.com:19532/upload}.
+     */
+    public void setRemoteUrl(String remoteUrl) {
+        this.remoteUrl = remoteUrl;
+    }
+
+    public String getRemoteCompression() {
+        return remoteCompression;
+    }
+
+    /**
+     * Sets how uploads are compressed: {@code none} or {@code gzip}.
+     */
+    public void setRemoteCompression(String remoteCompression) {
+        this.remoteCompression = remoteCompression;
+    }
+
+    public FileSize getRemoteBatchSize() {
+        return remoteBatchSize;
+    }
+
+    /**
+     * Sets the size of the batches uploaded by the {@code remote} transport.
+     */
+    public void setRemoteBatchSize(FileSize remoteBatchSize) {
+        this.remoteBatchSize = remoteBatchSize;
+    }
+
+    public Duration getRemoteTimeout() {
+        return remoteTimeout;
+    }
+
+    public void setRemoteTimeout(Duration remoteTimeout) {
+        this.remoteTimeout = remoteTimeout;
+    }
+
+    public int getExportFileCount() {
+        return exportFileCount;
+    }
+
+    /**
+     * Sets how many rotated export files are kept.
+     */
+    public void setExportFileCount(int exportFileCount) {
+        this.exportFileCount = exportFileCount;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    /**
+     * Sets the journal namespace to log to, or a comma separated list of
+     * namespaces to spread the entries over.
+     */
+    public void setNamespace(String namespace) {
+        this.namespace = namespace;
+    }
+
+    public String getNamespaceSharding() {
+        return namespaceSharding;
+    }
+
+    public void setNamespaceSharding(String namespaceSharding) {
+        this.namespaceSharding = namespaceSharding;
+    }
+
+    public boolean isTransportWarmUp() {
+        return transportWarmUp;
+    }
+
+    public void setTransportWarmUp(boolean transportWarmUp) {
+        this.transportWarmUp = transportWarmUp;
+    }
+
+    public boolean isVirtualThreadOffload() {
+        return virtualThreadOffload;
+    }
+
+    public void setVirtualThreadOffload(boolean virtualThreadOffload) {
+        this.virtualThreadOffload = virtualThreadOffload;
+    }
+
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    /**
+     * Sets the number of writer threads all events go through, {@code 0} to
+     * send events from the logging threads, except virtual ones.
+     */
+    public void setWriterThreads(int writerThreads) {
+        this.writerThreads = writerThreads;
+    }
+
+    public FileSize getWriterQueueCapacity() {
+        return writerQueueCapacity;
+    }
+
+    /**
+     * Sets the memory each writer thread may use for the events waiting to be
+     * sent, counted as the size of their serialized entries.
+     */
+    public void setWriterQueueCapacity(FileSize writerQueueCapacity) {
+        this.writerQueueCapacity = writerQueueCapacity;
+    }
+
+    public boolean isDeferredFormatting() {
+        return deferredFormatting;
+    }
+
+    /**
+     * Sets whether events handed to a writer thread are formatted and encoded
+     * there, the logging thread only taking a snapshot of their arguments.
+     * Caller data is still computed on the logging thread when
+     * {@code logSourceLocation} is set or the encoder pattern uses it.
+     */
+    public void setDeferredFormatting(boolean deferredFormatting) {
+        this.deferredFormatting = deferredFormatting;
+    }
+
+    public Duration getMaxFlushTime() {
+        return maxFlushTime;
+    }
+
+    public void setMaxFlushTime(Duration maxFlushTime) {
+        this.maxFlushTime = maxFlushTime;
+    }
+
+    public int getTimingSampleInterval() {
+        return timingSampleInterval;
+    }
+
+    /**
+     * Sets how often the time spent in each stage of the appender is
+     * measured: one event out of that many on average, {@code 0} to disable
+     * it.
+     */
+    public void setTimingSampleInterval(int timingSampleInterval) {
+        this.timingSampleInterval = timingSampleInterval;
+    }
+
+    @Override
+    public List<JournalStageTiming> getStageTimings() {
+        return stageTimings.snapshot();
+    }
+
+    @Override
+    public void resetStageTimings() {
+        stageTimings.reset();
+    }
+
+    public String getSamplingKey() {
+        return samplingKey;
+    }
+
+    /**
+     * Sets the MDC key, e.g. a trace id, whose value decides whether sampled
+     * events are kept, so that the events of a trace are kept or dropped
+     * together.
+     */
+    public void setSamplingKey(String samplingKey) {
+        this.samplingKey = samplingKey;
+    }
+
+    public int getTraceSampleRate() {
+        return traceSampleRate;
+    }
+
+    /**
+     * Keeps one TRACE event, or trace, out of that many.
+     */
+    public void setTraceSampleRate(int traceSampleRate) {
+        this.traceSampleRate = traceSampleRate;
+    }
+
+    public int getDebugSampleRate() {
+        return debugSampleRate;
+    }
+
+    /**
+     * Keeps one DEBUG event, or trace, out of that many.
+     */
+    public void setDebugSampleRate(int debugSampleRate) {
+        this.debugSampleRate = debugSampleRate;
+    }
+
+    public int getInfoSampleRate() {
+        return infoSampleRate;
+    }
+
+    /**
+     * Keeps one INFO event, or trace, out of that many.
+     */
+    public void setInfoSampleRate(int infoSampleRate) {
+        this.infoSampleRate = infoSampleRate;
+    }
+
+    public String getFlightRecorderKey() {
+        return flightRecorderKey;
+    }
+
+    /**
+     * Sets the MDC key, e.g. a trace id, whose values identify the contexts
+     * whose low level events are held back until an error happens in the same
+     * context. Disabled when empty.
+     */
+    public void setFlightRecorderKey(String flightRecorderKey) {
+        this.flightRecorderKey = flightRecorderKey;
+    }
+
+    public String getFlightRecorderLevel() {
+        return flightRecorderLevel;
+    }
+
+    /**
+     * Sets the highest level of the events held back, events of this level
+     * and below being held back. Errors are never held back.
+     */
+    public void setFlightRecorderLevel(String flightRecorderLevel) {
+        this.flightRecorderLevel = flightRecorderLevel;
+    }
+
+    public int getFlightRecorderSize() {
+        return flightRecorderSize;
+    }
+
+    public void setFlightRecorderSize(int flightRecorderSize) {
+        this.flightRecorderSize = flightRecorderSize;
+    }
+
+    public int getFlightRecorderMaxKeys() {
+        return flightRecorderMaxKeys;
+    }
+
+    public void setFlightRecorderMaxKeys(int flightRecorderMaxKeys) {
+        this.flightRecorderMaxKeys = flightRecorderMaxKeys;
+    }
+
+    public Duration getFlightRecorderTtl() {
+        return flightRecorderTtl;
+    }
+
+    public void setFlightRecorderTtl(Duration flightRecorderTtl) {
+        this.flightRecorderTtl = flightRecorderTtl;
+    }
+
+    public String getQueueFile() {
+        return queueFile;
+    }
+
+    /**
+     * Sets the path of the memory-mapped file entries are queued in for the
+     * writer threads, so that they are sent even if the application crashes.
+     * With several writer threads, each one has its own file, named after
+     * this path followed by the index of the writer.
+     */
+    public void setQueueFile(String queueFile) {
+        this.queueFile = queueFile;
+    }
+
+    public FileSize getQueueFileSize() {
+        return queueFileSize;
+    }
+
+    public void setQueueFileSize(FileSize queueFileSize) {
+        this.queueFileSize = queueFileSize;
+    }
+
+    public String getSpillFile() {
+        return spillFile;
+    }
+
+    public void setSpillFile(String spillFile) {
+        this.spillFile = spillFile;
+    }
+
+    public FileSize getSpillFileSize() {
+        return spillFileSize;
+    }
+
+    public void setSpillFileSize(FileSize spillFileSize) {
+        this.spillFileSize = spillFileSize;
+    }
+
+    public Duration getSpillReplayInterval() {
+        return spillReplayInterval;
+    }
+
+    public void setSpillReplayInterval(Duration spillReplayInterval) {
+        this.spillReplayInterval = spillReplayInterval;
+    }
+
+    public int getCircuitBreakerThreshold() {
+        return circuitBreakerThreshold;
+    }
+
+    public void setCircuitBreakerThreshold(int circuitBreakerThreshold) {
+        this.circuitBreakerThreshold = circuitBreakerThreshold;
+    }
+
+    public Duration getCircuitBreakerInitialBackoff() {
+        return circuitBreakerInitialBackoff;
+    }
+
+    public void setCircuitBreakerInitialBackoff(Duration circuitBreakerInitialBackoff) {
+        this.circuitBreakerInitialBackoff = circuitBreakerInitialBackoff;
+    }
+
+    public Duration getCircuitBreakerMaxBackoff() {
+        return circuitBreakerMaxBackoff;
+    }
+
+    public void setCircuitBreakerMaxBackoff(Duration circuitBreakerMaxBackoff) {
+        this.circuitBreakerMaxBackoff = circuitBreakerMaxBackoff;
+    }
+
+    public Duration getErrorReportInterval() {
+        return errorReportInterval;
+    }
+
+    public void setErrorReportInterval(Duration errorReportInterval) {
+        this.errorReportInterval = errorReportInterval;
+    }
+
+    @Override
+    public void addAppender(Appender<ILoggingEvent> newAppender) {
+        addInfo("Attaching fallback appender named [" + newAppender.getName() + "] to " + getName());
+        fallbackAppenders.addAppender(newAppender);
+    }
+
+    @Override
+    public Iterator<Appender<ILoggingEvent>> iteratorForAppenders() {
+        return fallbackAppenders.iteratorForAppenders();
+    }
+
+    @Override
+    public Appender<ILoggingEvent> getAppender(String name) {
+        return fallbackAppenders.getAppender(name);
+    }
+
+    @Override
+    public boolean isAttached(Appender<ILoggingEvent> appender) {
+        return fallbackAppenders.isAttached(appender);
+    }
+
+    @Override
+    public void detachAndStopAllAppenders() {
+        fallbackAppenders.detachAndStopAllAppenders();
+    }
+
+    @Override
+    public boolean detachAppender(Appender<ILoggingEvent> appender) {
+        return fallbackAppenders.detachAppender(appender);
+    }
+
+    @Override
+    public boolean detachAppender(String name) {
+        return fallbackAppenders.detachAppender(name);
+    }
 }
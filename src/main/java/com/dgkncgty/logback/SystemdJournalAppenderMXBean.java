@@ -0,0 +1,33 @@
+/*
+ * This file is part of the logback-journal project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dgkncgty.logback;
+
+import java.util.List;
+
+/**
+ * Management interface of {@link SystemdJournalAppender}, registered as
+ * {@code com.dgkncgty.logback:type=SystemdJournalAppender,context=...,name=...}
+ * when stage timing is enabled.
+ */
+public interface SystemdJournalAppenderMXBean {
+
+    /**
+     * Time spent in each stage of the appender, over the sampled events.
+     */
+    List<JournalStageTiming> getStageTimings();
+
+    void resetStageTimings();
+}
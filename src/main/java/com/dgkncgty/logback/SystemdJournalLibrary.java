@@ -17,6 +17,8 @@ package com.dgkncgty.logback;
 
 import com.sun.jna.Library;
 import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
 
 /**
  * Binding to the native journald library.
@@ -25,12 +27,113 @@ import com.sun.jna.Native;
  */
 public interface SystemdJournalLibrary extends Library {
 
+    /**
+     * The library loaded eagerly, the first time this field is accessed.
+     * {@link SystemdJournalAppender} does not use it and loads the library
+     * when it is started instead.
+     */
     SystemdJournalLibrary INSTANCE =
             Native.load(System.getProperty("systemd.library", "systemd"), SystemdJournalLibrary.class);
 
+    /** only open the journal files generated on the local machine */
+    int SD_JOURNAL_LOCAL_ONLY = 1;
+
+    /** only open the volatile journal files, excluding persistent ones */
+    int SD_JOURNAL_RUNTIME_ONLY = 2;
+
+    /** only open the journal files of system services and the kernel */
+    int SD_JOURNAL_SYSTEM = 4;
+
+    /** only open the journal files of the current user */
+    int SD_JOURNAL_CURRENT_USER = 8;
+
+    /** {@code sd_journal_wait} timed out without any change */
+    int SD_JOURNAL_NOP = 0;
+
+    /** entries were appended to the journal files */
+    int SD_JOURNAL_APPEND = 1;
+
+    /** journal files were added or removed */
+    int SD_JOURNAL_INVALIDATE = 2;
+
     int sd_journal_print(int priority, String format, Object... args);
 
     int sd_journal_send(String format, Object... args);
 
+    int sd_journal_sendv(Pointer iov, int n);
+
     int sd_journal_perror(String message);
+
+    /**
+     * Opens the journal for reading.
+     *
+     * @param ret receives the {@code sd_journal} pointer
+     */
+    int sd_journal_open(Pointer ret, int flags);
+
+    void sd_journal_close(Pointer journal);
+
+    /**
+     * Sets the maximum size of the field values returned, 0 for unlimited.
+     */
+    int sd_journal_set_data_threshold(Pointer journal, NativeLong size);
+
+    /**
+     * Adds a {@code FIELD=value} match, {@code size} being the length of
+     * {@code data} in bytes.
+     */
+    int sd_journal_add_match(Pointer journal, byte[] data, NativeLong size);
+
+    int sd_journal_add_disjunction(Pointer journal);
+
+    int sd_journal_add_conjunction(Pointer journal);
+
+    void sd_journal_flush_matches(Pointer journal);
+
+    int sd_journal_seek_head(Pointer journal);
+
+    int sd_journal_seek_tail(Pointer journal);
+
+    int sd_journal_seek_cursor(Pointer journal, String cursor);
+
+    int sd_journal_next(Pointer journal);
+
+    /**
+     * Reads a field of the current entry.
+     *
+     * @param data receives a pointer to the {@code FIELD=value} bytes, valid
+     *     until the next call on the journal
+     * @param length receives their length, as a {@code size_t}
+     */
+    int sd_journal_get_data(Pointer journal, String field, Pointer data, Pointer length);
+
+    void sd_journal_restart_data(Pointer journal);
+
+    /**
+     * Reads the next field of the current entry, with the same arguments as
+     * {@link #sd_journal_get_data}.
+     *
+     * @return 0 once all the fields were read
+     */
+    int sd_journal_enumerate_data(Pointer journal, Pointer data, Pointer length);
+
+    int sd_journal_get_realtime_usec(Pointer journal, Pointer usec);
+
+    /**
+     * Reads the cursor of the current entry.
+     *
+     * @param cursor receives a pointer to a string to be freed by the caller
+     */
+    int sd_journal_get_cursor(Pointer journal, Pointer cursor);
+
+    int sd_journal_test_cursor(Pointer journal, String cursor);
+
+    /**
+     * Waits until the journal changes, for at most {@code timeoutUsec}
+     * microseconds, -1 meaning forever.
+     *
+     * @return {@link #SD_JOURNAL_NOP}, {@link #SD_JOURNAL_APPEND} or
+     *     {@link #SD_JOURNAL_INVALIDATE}
+     */
+    int sd_journal_wait(Pointer journal, long timeoutUsec);
 }
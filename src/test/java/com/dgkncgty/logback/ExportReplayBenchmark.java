@@ -0,0 +1,61 @@
+package com.dgkncgty.logback;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.util.Duration;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replays a {@code journalctl -o export} dump through the appender, to
+ * measure it on real traffic: real message sizes, field counts, exceptions
+ * and MDC.
+ *
+ * <p>Entries go to a transport that only counts them, so that this measures
+ * the appender itself and not journald. Run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.dgkncgty.logback.ExportReplayBenchmark
+ * -Dexec.args="dump.export 0 4"}, the arguments being the dump, {@code -} for
+ * stdin, the rate in events per second, 0 for as fast as possible, and the
+ * number of writer threads.
+ */
+public class ExportReplayBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("usage: ExportReplayBenchmark <dump|-> [events per second] [writer threads]");
+            System.exit(2);
+        }
+        long eventsPerSecond = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        int writerThreads = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+
+        LoggerContext context = new LoggerContext();
+        LongAdder sent = new LongAdder();
+        JournalTransport counting = entry -> sent.increment();
+
+        SystemdJournalAppender appender = new SystemdJournalAppender();
+        appender.setContext(context);
+        appender.setWriterThreads(writerThreads);
+        appender.setLogMdc(true);
+        appender.setLogLoggerName(true);
+        appender.setLogThreadName(true);
+        appender.setLogStackTrace(true);
+        appender.transport = counting;
+        appender.transportFactory = () -> counting;
+        appender.start();
+
+        long replayed;
+        long start = System.nanoTime();
+        try (InputStream in = args[0].equals("-") ? System.in : new FileInputStream(args[0]);
+                JournalExportReader reader = new JournalExportReader(in, 16 * 1024 * 1024)) {
+            replayed = new JournalExportReplayer(context).replay(reader, appender, eventsPerSecond);
+        }
+        appender.setMaxFlushTime(Duration.buildByMinutes(1));
+        appender.stop();
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf(
+                "%d events replayed, %d sent in %.1f s: %.0f events/s%n",
+                replayed, sent.sum(), elapsed / 1e9, sent.sum() * 1e9 / elapsed);
+    }
+}
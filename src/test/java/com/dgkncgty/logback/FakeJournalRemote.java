@@ -0,0 +1,117 @@
+package com.dgkncgty.logback;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * HTTP server standing for the upload endpoint of systemd-journal-remote,
+ * collecting the entries it receives in the journal export format.
+ */
+class FakeJournalRemote implements AutoCloseable {
+
+    private final HttpServer server;
+
+    private final List<Map<String, String>> entries = new ArrayList<>();
+
+    private final List<String> contentEncodings = new ArrayList<>();
+
+    private int requests = 0;
+
+    private int failures = 0;
+
+    volatile int status = 202;
+
+    volatile long delayMillis = 0;
+
+    /** delays only the requests holding this message, if set */
+    volatile String slowMessage = null;
+
+    FakeJournalRemote() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/upload", this::upload);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/upload";
+    }
+
+    private void upload(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())
+                    || !JournalRemoteUpload.CONTENT_TYPE.equals(
+                            exchange.getRequestHeaders().getFirst("Content-Type"))) {
+                respond(exchange, 415, "Unsupported request");
+                return;
+            }
+            String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            InputStream body = exchange.getRequestBody();
+            if ("gzip".equals(encoding)) {
+                body = new GZIPInputStream(body);
+            }
+            byte[] bytes = body.readAllBytes();
+            String slow = slowMessage;
+            if (delayMillis > 0 && (slow == null || new String(bytes, StandardCharsets.UTF_8).contains(slow))) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            int code = status;
+            if (code / 100 == 2) {
+                List<Map<String, String>> received = JournalExportTransportTest.parse(bytes);
+                synchronized (this) {
+                    requests++;
+                    contentEncodings.add(encoding);
+                    entries.addAll(received);
+                }
+            } else {
+                synchronized (this) {
+                    failures++;
+                }
+            }
+            respond(exchange, code, code / 100 == 2 ? "OK." : "Server error");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int code, String message) throws IOException {
+        byte[] bytes = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    synchronized List<Map<String, String>> entries() {
+        return new ArrayList<>(entries);
+    }
+
+    synchronized int requests() {
+        return requests;
+    }
+
+    synchronized int failures() {
+        return failures;
+    }
+
+    synchronized List<String> contentEncodings() {
+        return new ArrayList<>(contentEncodings);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
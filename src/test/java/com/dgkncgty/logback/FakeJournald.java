@@ -0,0 +1,136 @@
+package com.dgkncgty.logback;
+
+import com.sun.jna.LastErrorException;
+import com.sun.jna.Library;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Datagram socket standing for journald, receiving entries sent with the
+ * journal native protocol. Only works on 64 bits Linux.
+ */
+class FakeJournald implements AutoCloseable {
+
+    interface TestCLibrary extends Library {
+        int socket(int domain, int type, int protocol) throws LastErrorException;
+
+        int bind(int fd, Pointer address, int length) throws LastErrorException;
+
+        int recvmsg(int fd, Pointer message, int flags) throws LastErrorException;
+
+        NativeLong pread(int fd, Pointer buffer, NativeLong count, long offset) throws LastErrorException;
+
+        int close(int fd);
+    }
+
+    static final TestCLibrary C = Native.load("c", TestCLibrary.class);
+
+    private static final int MSG_DONTWAIT = 0x40;
+
+    private static final int EAGAIN = 11;
+
+    final File socket;
+
+    private final int fd;
+
+    FakeJournald(File socket) {
+        this.socket = socket;
+        fd = C.socket(CLibrary.AF_UNIX, CLibrary.SOCK_DGRAM, 0);
+        byte[] path = socket.getPath().getBytes(StandardCharsets.UTF_8);
+        Memory address = new Memory(110);
+        address.clear();
+        address.setShort(0, (short) CLibrary.AF_UNIX);
+        address.write(2, path, 0, path.length);
+        C.bind(fd, address, 2 + path.length + 1);
+    }
+
+    /**
+     * Receives the pending entries, as lists of {@code KEY=value} fields.
+     */
+    List<List<String>> receive() {
+        List<List<String>> entries = new ArrayList<>();
+        byte[] datagram;
+        while ((datagram = receiveDatagram()) != null) {
+            entries.add(parse(datagram));
+        }
+        return entries;
+    }
+
+    private byte[] receiveDatagram() {
+        Memory buffer = new Memory(1 << 20);
+        Memory iovec = new Memory(16);
+        iovec.setPointer(0, buffer);
+        iovec.setLong(8, buffer.size());
+        Memory control = new Memory(64);
+        control.clear();
+        Memory message = new Memory(56);
+        message.clear();
+        message.setPointer(16, iovec);
+        message.setLong(24, 1);
+        message.setPointer(32, control);
+        message.setLong(40, control.size());
+        int length;
+        try {
+            length = C.recvmsg(fd, message, MSG_DONTWAIT);
+        } catch (LastErrorException e) {
+            if (e.getErrorCode() == EAGAIN) {
+                return null;
+            }
+            throw e;
+        }
+        if (message.getLong(40) > 0 && control.getInt(12) == CLibrary.SCM_RIGHTS) {
+            // the entry was passed as a memfd
+            int memfd = control.getInt(16);
+            Memory content = new Memory(16 << 20);
+            int size =
+                    C.pread(memfd, content, new NativeLong(content.size()), 0).intValue();
+            C.close(memfd);
+            return content.getByteArray(0, size);
+        }
+        return buffer.getByteArray(0, length);
+    }
+
+    /**
+     * Parses an entry in the journal native protocol.
+     */
+    static List<String> parse(byte[] datagram) {
+        List<String> fields = new ArrayList<>();
+        int pos = 0;
+        while (pos < datagram.length) {
+            int end = pos;
+            while (datagram[end] != '=' && datagram[end] != '\n') {
+                end++;
+            }
+            String key = new String(datagram, pos, end - pos, StandardCharsets.UTF_8);
+            if (datagram[end] == '=') {
+                int valueEnd = end + 1;
+                while (datagram[valueEnd] != '\n') {
+                    valueEnd++;
+                }
+                fields.add(key + "=" + new String(datagram, end + 1, valueEnd - end - 1, StandardCharsets.UTF_8));
+                pos = valueEnd + 1;
+            } else {
+                long length = 0;
+                for (int b = 0; b < 8; b++) {
+                    length |= (datagram[end + 1 + b] & 0xffL) << (8 * b);
+                }
+                int valueStart = end + 9;
+                fields.add(key + "=" + new String(datagram, valueStart, (int) length, StandardCharsets.UTF_8));
+                pos = valueStart + (int) length + 1;
+            }
+        }
+        return fields;
+    }
+
+    @Override
+    public void close() {
+        C.close(fd);
+        socket.delete();
+    }
+}
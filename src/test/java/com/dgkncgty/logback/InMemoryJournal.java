@@ -0,0 +1,322 @@
+package com.dgkncgty.logback;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An implementation of the journald library keeping the entries sent with
+ * {@code sd_journal_sendv} in memory, and reading them back through the
+ * {@code sd_journal} functions, so that the native transport and the reader
+ * can be tested without a journal.
+ *
+ * <p>Matches on the same field are OR-ed, on different fields AND-ed, and
+ * disjunctions OR-ed; conjunctions are not modelled. Cursors are
+ * {@code i=<index>}.
+ */
+class InMemoryJournal implements SystemdJournalLibrary {
+
+    private static final int IOVEC_SIZE = Native.POINTER_SIZE + Native.SIZE_T_SIZE;
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    private final Map<Pointer, Reader> readers = new HashMap<>();
+
+    private static final class Entry {
+        final long realtimeUsec;
+        final List<byte[]> fields;
+
+        Entry(long realtimeUsec, List<byte[]> fields) {
+            this.realtimeUsec = realtimeUsec;
+            this.fields = fields;
+        }
+    }
+
+    private static final class Reader {
+        final Memory handle = new Memory(1);
+        final List<Map<String, Set<String>>> disjunctions = new ArrayList<>();
+        int position = -1;
+        int enumerated = 0;
+        int seen = 0;
+        /** keeps the data returned to the caller alive */
+        Memory data;
+    }
+
+    synchronized List<Map<String, String>> entries() {
+        List<Map<String, String>> result = new ArrayList<>();
+        for (Entry entry : entries) {
+            Map<String, String> fields = new HashMap<>();
+            for (byte[] field : entry.fields) {
+                String text = new String(field, StandardCharsets.UTF_8);
+                int eq = text.indexOf('=');
+                fields.put(text.substring(0, eq), text.substring(eq + 1));
+            }
+            result.add(fields);
+        }
+        return result;
+    }
+
+    @Override
+    public int sd_journal_print(int priority, String format, Object... args) {
+        return -38;
+    }
+
+    @Override
+    public int sd_journal_send(String format, Object... args) {
+        return -38;
+    }
+
+    @Override
+    public synchronized int sd_journal_sendv(Pointer iov, int n) {
+        List<byte[]> fields = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            long offset = (long) i * IOVEC_SIZE;
+            Pointer base = iov.getPointer(offset);
+            long length = Native.SIZE_T_SIZE == 8
+                    ? iov.getLong(offset + Native.POINTER_SIZE)
+                    : iov.getInt(offset + Native.POINTER_SIZE);
+            fields.add(base.getByteArray(0, (int) length));
+        }
+        entries.add(new Entry(TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis()), fields));
+        notifyAll();
+        return 0;
+    }
+
+    @Override
+    public int sd_journal_perror(String message) {
+        return -38;
+    }
+
+    @Override
+    public synchronized int sd_journal_open(Pointer ret, int flags) {
+        Reader reader = new Reader();
+        reader.seen = entries.size();
+        readers.put(reader.handle, reader);
+        ret.setPointer(0, reader.handle);
+        return 0;
+    }
+
+    @Override
+    public synchronized void sd_journal_close(Pointer journal) {
+        readers.remove(journal);
+    }
+
+    @Override
+    public int sd_journal_set_data_threshold(Pointer journal, NativeLong size) {
+        return 0;
+    }
+
+    @Override
+    public synchronized int sd_journal_add_match(Pointer journal, byte[] data, NativeLong size) {
+        String match = new String(data, 0, size.intValue(), StandardCharsets.UTF_8);
+        int eq = match.indexOf('=');
+        if (eq <= 0) {
+            return -22;
+        }
+        Reader reader = readers.get(journal);
+        if (reader.disjunctions.isEmpty()) {
+            reader.disjunctions.add(new HashMap<>());
+        }
+        reader.disjunctions
+                .get(reader.disjunctions.size() - 1)
+                .computeIfAbsent(match.substring(0, eq), k -> new HashSet<>())
+                .add(match.substring(eq + 1));
+        return 0;
+    }
+
+    @Override
+    public synchronized int sd_journal_add_disjunction(Pointer journal) {
+        readers.get(journal).disjunctions.add(new HashMap<>());
+        return 0;
+    }
+
+    @Override
+    public int sd_journal_add_conjunction(Pointer journal) {
+        return 0;
+    }
+
+    @Override
+    public synchronized void sd_journal_flush_matches(Pointer journal) {
+        readers.get(journal).disjunctions.clear();
+    }
+
+    @Override
+    public synchronized int sd_journal_seek_head(Pointer journal) {
+        readers.get(journal).position = -1;
+        return 0;
+    }
+
+    @Override
+    public synchronized int sd_journal_seek_tail(Pointer journal) {
+        readers.get(journal).position = entries.size() - 1;
+        return 0;
+    }
+
+    @Override
+    public synchronized int sd_journal_seek_cursor(Pointer journal, String cursor) {
+        if (!cursor.startsWith("i=")) {
+            return -22;
+        }
+        readers.get(journal).position = Integer.parseInt(cursor.substring(2)) - 1;
+        return 0;
+    }
+
+    @Override
+    public synchronized int sd_journal_next(Pointer journal) {
+        Reader reader = readers.get(journal);
+        for (int i = reader.position + 1; i < entries.size(); i++) {
+            if (matches(reader, entries.get(i))) {
+                reader.position = i;
+                reader.enumerated = 0;
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public synchronized int sd_journal_get_data(Pointer journal, String field, Pointer data, Pointer length) {
+        Reader reader = readers.get(journal);
+        if (reader.position < 0 || reader.position >= entries.size()) {
+            return -99;
+        }
+        byte[] prefix = (field + "=").getBytes(StandardCharsets.UTF_8);
+        for (byte[] candidate : entries.get(reader.position).fields) {
+            if (startsWith(candidate, prefix)) {
+                setData(reader, candidate, data, length);
+                return 0;
+            }
+        }
+        return -2;
+    }
+
+    @Override
+    public synchronized void sd_journal_restart_data(Pointer journal) {
+        readers.get(journal).enumerated = 0;
+    }
+
+    @Override
+    public synchronized int sd_journal_enumerate_data(Pointer journal, Pointer data, Pointer length) {
+        Reader reader = readers.get(journal);
+        if (reader.position < 0 || reader.position >= entries.size()) {
+            return -99;
+        }
+        List<byte[]> fields = entries.get(reader.position).fields;
+        if (reader.enumerated >= fields.size()) {
+            return 0;
+        }
+        setData(reader, fields.get(reader.enumerated++), data, length);
+        return 1;
+    }
+
+    @Override
+    public synchronized int sd_journal_get_realtime_usec(Pointer journal, Pointer usec) {
+        Reader reader = readers.get(journal);
+        if (reader.position < 0 || reader.position >= entries.size()) {
+            return -99;
+        }
+        usec.setLong(0, entries.get(reader.position).realtimeUsec);
+        return 0;
+    }
+
+    @Override
+    public synchronized int sd_journal_get_cursor(Pointer journal, Pointer cursor) {
+        Reader reader = readers.get(journal);
+        if (reader.position < 0 || reader.position >= entries.size()) {
+            return -99;
+        }
+        byte[] text = ("i=" + reader.position).getBytes(StandardCharsets.US_ASCII);
+        // freed by the caller, as the string allocated by libsystemd
+        Pointer copy = new Pointer(Native.malloc(text.length + 1));
+        copy.write(0, text, 0, text.length);
+        copy.setByte(text.length, (byte) 0);
+        cursor.setPointer(0, copy);
+        return 0;
+    }
+
+    @Override
+    public synchronized int sd_journal_test_cursor(Pointer journal, String cursor) {
+        return cursor.equals("i=" + readers.get(journal).position) ? 1 : 0;
+    }
+
+    @Override
+    public synchronized int sd_journal_wait(Pointer journal, long timeoutUsec) {
+        Reader reader = readers.get(journal);
+        long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(timeoutUsec);
+        while (entries.size() == reader.seen) {
+            long remaining = timeoutUsec < 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (timeoutUsec >= 0 && remaining <= 0) {
+                return SD_JOURNAL_NOP;
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -4;
+            }
+        }
+        reader.seen = entries.size();
+        return SD_JOURNAL_APPEND;
+    }
+
+    private static boolean matches(Reader reader, Entry entry) {
+        if (reader.disjunctions.isEmpty()) {
+            return true;
+        }
+        for (Map<String, Set<String>> matches : reader.disjunctions) {
+            if (!matches.isEmpty() && matchesAll(matches, entry)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesAll(Map<String, Set<String>> matches, Entry entry) {
+        for (Map.Entry<String, Set<String>> match : matches.entrySet()) {
+            boolean found = false;
+            for (String value : match.getValue()) {
+                byte[] expected = (match.getKey() + "=" + value).getBytes(StandardCharsets.UTF_8);
+                for (byte[] field : entry.fields) {
+                    found |= Arrays.equals(field, expected);
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWith(byte[] field, byte[] prefix) {
+        if (field.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (field[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void setData(Reader reader, byte[] field, Pointer data, Pointer length) {
+        reader.data = new Memory(Math.max(1, field.length));
+        reader.data.write(0, field, 0, field.length);
+        data.setPointer(0, reader.data);
+        if (Native.SIZE_T_SIZE == 8) {
+            length.setLong(0, field.length);
+        } else {
+            length.setInt(0, field.length);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.ContextAwareBase;
+import ch.qos.logback.core.status.Status;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for JournalCircuitBreaker
+ */
+public class JournalCircuitBreakerTest {
+
+    private LoggerContext loggerContext;
+    private ContextAwareBase owner;
+    private long now;
+    private JournalCircuitBreaker breaker;
+
+    @Before
+    public void setUp() {
+        loggerContext = new LoggerContext();
+        owner = new ContextAwareBase();
+        owner.setContext(loggerContext);
+        now = TimeUnit.SECONDS.toNanos(100);
+        breaker = new JournalCircuitBreaker(owner, 3, 1000, 4000, 10000, () -> now);
+    }
+
+    @Test
+    public void testStaysClosedBelowThreshold() {
+        breaker.onFailure("boom", null);
+        breaker.onFailure("boom", null);
+
+        assertThat(breaker.getState()).isEqualTo(JournalCircuitBreaker.State.CLOSED);
+        assertThat(breaker.allowRequest()).isTrue();
+    }
+
+    @Test
+    public void testSuccessResetsConsecutiveFailures() {
+        breaker.onFailure("boom", null);
+        breaker.onFailure("boom", null);
+        breaker.onSuccess();
+        breaker.onFailure("boom", null);
+        breaker.onFailure("boom", null);
+
+        assertThat(breaker.getState()).isEqualTo(JournalCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void testOpensAfterThresholdAndShortCircuits() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure("boom", null);
+        }
+
+        assertThat(breaker.getState()).isEqualTo(JournalCircuitBreaker.State.OPEN);
+        assertThat(breaker.allowRequest()).isFalse();
+    }
+
+    @Test
+    public void testProbesWithExponentialBackoff() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure("boom", null);
+        }
+
+        now += TimeUnit.MILLISECONDS.toNanos(999);
+        assertThat(breaker.allowRequest()).isFalse();
+
+        now += TimeUnit.MILLISECONDS.toNanos(1);
+        assertThat(breaker.allowRequest()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(JournalCircuitBreaker.State.HALF_OPEN);
+
+        // failed probe doubles the backoff
+        breaker.onFailure("boom", null);
+        assertThat(breaker.getState()).isEqualTo(JournalCircuitBreaker.State.OPEN);
+        now += TimeUnit.MILLISECONDS.toNanos(1999);
+        assertThat(breaker.allowRequest()).isFalse();
+        now += TimeUnit.MILLISECONDS.toNanos(1);
+        assertThat(breaker.allowRequest()).isTrue();
+
+        // backoff is capped
+        breaker.onFailure("boom", null);
+        assertThat(breaker.allowRequest()).isFalse();
+        now += TimeUnit.MILLISECONDS.toNanos(4000);
+        assertThat(breaker.allowRequest()).isTrue();
+        breaker.onFailure("boom", null);
+        now += TimeUnit.MILLISECONDS.toNanos(4000);
+        assertThat(breaker.allowRequest()).isTrue();
+
+        // successful probe closes the breaker
+        breaker.onSuccess();
+        assertThat(breaker.getState()).isEqualTo(JournalCircuitBreaker.State.CLOSED);
+        assertThat(breaker.allowRequest()).isTrue();
+    }
+
+    @Test
+    public void testFailuresAreAggregated() {
+        RuntimeException cause = new RuntimeException("first");
+        breaker.onFailure("first failure", cause);
+        for (int i = 0; i < 100; i++) {
+            breaker.onFailure("other failure", null);
+        }
+
+        List<Status> errors = errors();
+        assertThat(errors).hasSize(1);
+        assertThat(errors.get(0).getMessage()).isEqualTo("first failure");
+        assertThat(errors.get(0).getThrowable()).isSameAs(cause);
+
+        // the next failure after the reporting interval flushes the aggregate
+        now += TimeUnit.SECONDS.toNanos(12);
+        breaker.onFailure("late failure", null);
+
+        errors = errors();
+        assertThat(errors).hasSize(2);
+        assertThat(errors.get(1).getMessage()).startsWith("101 failures in last 12 seconds");
+    }
+
+    @Test
+    public void testFlushReportsPendingFailures() {
+        breaker.onFailure("first failure", null);
+        breaker.onFailure("second failure", null);
+        breaker.flush();
+
+        List<Status> errors = errors();
+        assertThat(errors).hasSize(2);
+        assertThat(errors.get(1).getMessage()).startsWith("1 failures in last");
+
+        breaker.flush();
+        assertThat(errors()).hasSize(2);
+    }
+
+    private List<Status> errors() {
+        return loggerContext.getStatusManager().getCopyOfStatusList().stream()
+                .filter(s -> s.getLevel() == Status.ERROR)
+                .collect(Collectors.toList());
+    }
+}
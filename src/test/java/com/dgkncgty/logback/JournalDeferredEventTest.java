@@ -0,0 +1,147 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
+import ch.qos.logback.core.layout.EchoLayout;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.event.KeyValuePair;
+
+/**
+ * Unit tests for JournalDeferredEvent
+ */
+public class JournalDeferredEventTest {
+
+    private Logger logger;
+
+    @Before
+    public void setUp() {
+        logger = new LoggerContext().getLogger(JournalDeferredEventTest.class);
+    }
+
+    @Test
+    public void testImmutableArgumentsAreKept() {
+        Object[] arguments = {"text", 42, 1.5, Level.class, Thread.State.NEW};
+        JournalDeferredEvent deferred = new JournalDeferredEvent(event("{} {} {} {} {}", arguments), false);
+
+        assertThat(deferred.getArgumentArray()[0]).isSameAs(arguments[0]);
+        assertThat(deferred.getArgumentArray()[1]).isSameAs(arguments[1]);
+        assertThat(deferred.getArgumentArray()[2]).isSameAs(arguments[2]);
+        assertThat(deferred.getArgumentArray()[3]).isEqualTo("class ch.qos.logback.classic.Level");
+        assertThat(deferred.getArgumentArray()[4]).isSameAs(Thread.State.NEW);
+        assertThat(deferred.getFormattedMessage()).isEqualTo("text 42 1.5 class ch.qos.logback.classic.Level NEW");
+    }
+
+    @Test
+    public void testMutableArgumentsAreSnapshot() {
+        List<String> list = new ArrayList<>();
+        list.add("a");
+        int[] array = {1, 2};
+        LoggingEvent event = event("{} {}", list, array);
+        event.setKeyValuePairs(new ArrayList<>(Collections.singletonList(new KeyValuePair("list", list))));
+        JournalDeferredEvent deferred = new JournalDeferredEvent(event, false);
+
+        list.add("b");
+        array[0] = 3;
+
+        assertThat(deferred.getFormattedMessage()).isEqualTo("[a] [1, 2]");
+        assertThat(deferred.getKeyValuePairs().get(0).value).isEqualTo("[a]");
+        assertThat(event.getFormattedMessage()).isEqualTo("[a, b] [3, 2]");
+    }
+
+    @Test
+    public void testThreadNameIsCapturedOnLoggingThread() throws Exception {
+        LoggingEvent event = event("message");
+        JournalDeferredEvent deferred = new JournalDeferredEvent(event, false);
+
+        AtomicReference<String> threadName = new AtomicReference<>();
+        Thread writer = new Thread(() -> threadName.set(deferred.getThreadName()), "writer");
+        writer.start();
+        writer.join();
+
+        assertThat(threadName.get()).isEqualTo(Thread.currentThread().getName());
+        assertThat(deferred.getEvent()).isSameAs(event);
+    }
+
+    @Test
+    public void testCallerDataIsOnlyKeptIfAsked() {
+        assertThat(new JournalDeferredEvent(event("message"), false).hasCallerData())
+                .isFalse();
+
+        JournalDeferredEvent deferred = new JournalDeferredEvent(event("message"), true);
+        assertThat(deferred.hasCallerData()).isTrue();
+        assertThat(deferred.getCallerData()[0].getMethodName()).isEqualTo("testCallerDataIsOnlyKeptIfAsked");
+    }
+
+    @Test
+    public void testRetainedSizeCountsContents() {
+        int small = new JournalDeferredEvent(event("message"), false).retainedSize();
+
+        char[] large = new char[100_000];
+        Arrays.fill(large, 'x');
+        assertThat(new JournalDeferredEvent(event("{}", new String(large)), false).retainedSize())
+                .isGreaterThan(small + 100_000);
+
+        LoggingEvent withMdc = event("message");
+        withMdc.getMDCPropertyMap().put("REQUEST", new String(large));
+        assertThat(new JournalDeferredEvent(withMdc, false).retainedSize()).isGreaterThan(small + 100_000);
+
+        LoggingEvent failed = new LoggingEvent(
+                JournalDeferredEvent.class.getName(),
+                logger,
+                Level.ERROR,
+                "failed",
+                new RuntimeException("boom"),
+                null);
+        failed.setMDCPropertyMap(new HashMap<>());
+        assertThat(new JournalDeferredEvent(failed, false).retainedSize()).isGreaterThan(small);
+    }
+
+    @Test
+    public void testNeedsCallerData() {
+        assertThat(JournalDeferredEvent.needsCallerData(null)).isFalse();
+        assertThat(JournalDeferredEvent.needsCallerData(pattern("%-5level %logger{36} %msg%n")))
+                .isFalse();
+        assertThat(JournalDeferredEvent.needsCallerData(pattern("%msg (%file:%line)")))
+                .isTrue();
+        assertThat(JournalDeferredEvent.needsCallerData(pattern("%M %msg"))).isTrue();
+        assertThat(JournalDeferredEvent.needsCallerData(pattern("%msg%n%caller{2}")))
+                .isTrue();
+        assertThat(JournalDeferredEvent.needsCallerData(pattern("%-20C{1} %msg")))
+                .isTrue();
+
+        // layouts other than patterns may use it
+        LayoutWrappingEncoder<ILoggingEvent> custom = new LayoutWrappingEncoder<>();
+        custom.setLayout(new EchoLayout<>());
+        assertThat(JournalDeferredEvent.needsCallerData(custom)).isTrue();
+    }
+
+    private static PatternLayoutEncoder pattern(String pattern) {
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setPattern(pattern);
+        encoder.setContext(new LoggerContext());
+        encoder.start();
+        return encoder;
+    }
+
+    private LoggingEvent event(String message, Object... arguments) {
+        // caller data is computed when the deferred event is created
+        LoggingEvent event =
+                new LoggingEvent(JournalDeferredEvent.class.getName(), logger, Level.INFO, message, null, arguments);
+        event.setMDCPropertyMap(new HashMap<>());
+        return event;
+    }
+}
@@ -0,0 +1,128 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+/**
+ * Unit tests for JournalEntry
+ */
+public class JournalEntryTest {
+
+    private static final byte[] KEY = "KEY=".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void testAddString() {
+        JournalEntry entry = new JournalEntry();
+        entry.add(KEY, "value");
+
+        assertThat(entry.fieldCount()).isEqualTo(1);
+        assertThat(entry.field(0)).isEqualTo("KEY=value");
+        assertThat(entry.fieldLength(0)).isEqualTo(9);
+        assertThat(entry.size()).isEqualTo(13);
+    }
+
+    @Test
+    public void testAddNullString() {
+        JournalEntry entry = new JournalEntry();
+        entry.add(KEY, (String) null);
+
+        assertThat(entry.field(0)).isEqualTo("KEY=(null)");
+    }
+
+    @Test
+    public void testUtf8EncodingMatchesString() {
+        String[] values = {"Unicode: 你好 мир العربية 🌍", "é", "\u0000", "￿", "a\ud800b", "\udc00"};
+        for (String value : values) {
+            JournalEntry entry = new JournalEntry(16);
+            entry.add(KEY, value);
+
+            byte[] expected = ("KEY=" + value).getBytes(StandardCharsets.UTF_8);
+            byte[] actual = new byte[entry.fieldLength(0)];
+            System.arraycopy(entry.array(), entry.fieldOffset(0), actual, 0, actual.length);
+            assertThat(actual).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void testAddLong() {
+        long[] values = {0, 7, -7, 10, 42, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long value : values) {
+            JournalEntry entry = new JournalEntry();
+            entry.add(KEY, value);
+
+            assertThat(entry.field(0)).isEqualTo("KEY=" + value);
+        }
+    }
+
+    @Test
+    public void testFieldBuiltIncrementally() {
+        JournalEntry entry = new JournalEntry(4);
+        entry.beginField(KEY)
+                .appendUtf8("a")
+                .appendByte((byte) '.')
+                .appendLong(12)
+                .endField();
+        entry.add(KEY, "second");
+
+        assertThat(entry.fieldCount()).isEqualTo(2);
+        assertThat(entry.field(0)).isEqualTo("KEY=a.12");
+        assertThat(entry.field(1)).isEqualTo("KEY=second");
+    }
+
+    @Test
+    public void testManyFields() {
+        JournalEntry entry = new JournalEntry();
+        for (int i = 0; i < 100; i++) {
+            entry.add(KEY, i);
+        }
+
+        assertThat(entry.fieldCount()).isEqualTo(100);
+        assertThat(entry.field(99)).isEqualTo("KEY=99");
+    }
+
+    @Test
+    public void testResetReusesEntry() {
+        JournalEntry entry = new JournalEntry();
+        entry.add(KEY, "first");
+        entry.reset();
+        entry.add(KEY, "second");
+
+        assertThat(entry.fieldCount()).isEqualTo(1);
+        assertThat(entry.field(0)).isEqualTo("KEY=second");
+    }
+
+    @Test
+    public void testSerializationRoundTrip() {
+        JournalEntry entry = new JournalEntry();
+        entry.add(KEY, "multi\nline");
+        entry.add(KEY, 12);
+
+        ByteBuffer buffer = ByteBuffer.allocate(entry.size());
+        entry.writeTo(buffer);
+        buffer.flip();
+
+        JournalEntry copy = new JournalEntry(4);
+        copy.readFrom(buffer, buffer.remaining());
+
+        assertThat(copy.fieldCount()).isEqualTo(2);
+        assertThat(copy.field(0)).isEqualTo("KEY=multi\nline");
+        assertThat(copy.field(1)).isEqualTo("KEY=12");
+    }
+
+    @Test
+    public void testReadTruncatedEntry() {
+        JournalEntry entry = new JournalEntry();
+        entry.add(KEY, "value");
+
+        ByteBuffer buffer = ByteBuffer.allocate(entry.size());
+        entry.writeTo(buffer);
+        buffer.flip();
+
+        assertThatThrownBy(() -> new JournalEntry().readFrom(buffer, buffer.remaining() - 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
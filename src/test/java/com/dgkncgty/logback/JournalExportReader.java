@@ -0,0 +1,183 @@
+package com.dgkncgty.logback;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads entries in the journal export format, e.g. the output of
+ * {@code journalctl -o export}, one at a time, so that the dumps replayed by
+ * {@link JournalExportReplayer} are read with bounded memory, whatever their
+ * size.
+ *
+ * <p>Each entry is decoded into a reused {@link JournalEntry}, with its fields
+ * in the {@code KEY=value} form, including binary ones. Entries larger than the
+ * given maximum are rejected instead of being read into memory.
+ *
+ * <p>This class is not thread-safe.
+ */
+final class JournalExportReader implements Closeable {
+
+    private static final byte[] NO_PREFIX = new byte[0];
+
+    private final InputStream in;
+
+    private final int maxEntrySize;
+
+    private final byte[] buffer = new byte[64 * 1024];
+
+    private int position = 0;
+
+    private int limit = 0;
+
+    private long entries = 0;
+
+    JournalExportReader(InputStream in, int maxEntrySize) {
+        this.in = in;
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * Reads the next entry.
+     *
+     * @return {@code false} at the end of the stream
+     * @throws IOException if the stream is malformed or an entry is larger
+     *     than the maximum size
+     */
+    boolean next(JournalEntry entry) throws IOException {
+        entry.reset();
+        while (true) {
+            int b = read();
+            if (b < 0) {
+                if (entry.fieldCount() > 0) {
+                    // the last entry of a truncated dump
+                    entries++;
+                    return true;
+                }
+                return false;
+            }
+            if (b == '\n') {
+                if (entry.fieldCount() > 0) {
+                    entries++;
+                    return true;
+                }
+                // blank lines between entries
+                continue;
+            }
+            readField(entry, (byte) b);
+            if (entry.size() > maxEntrySize) {
+                throw new IOException("Entry " + (entries + 1) + " is larger than " + maxEntrySize + " bytes");
+            }
+        }
+    }
+
+    /**
+     * Number of entries read so far.
+     */
+    long entries() {
+        return entries;
+    }
+
+    private void readField(JournalEntry entry, byte first) throws IOException {
+        entry.beginField(NO_PREFIX).appendByte(first);
+        int nameLength = 1;
+        while (true) {
+            int b = read();
+            if (b < 0) {
+                throw new EOFException("Truncated field in entry " + (entries + 1));
+            }
+            if (b == '=') {
+                entry.appendByte((byte) '=');
+                readLine(entry);
+                break;
+            }
+            if (b == '\n') {
+                // binary field: little-endian 64 bits length, value, newline
+                entry.appendByte((byte) '=');
+                long length = 0;
+                for (int i = 0; i < 8; i++) {
+                    length |= (long) readByte() << (8 * i);
+                }
+                if (length < 0 || length > maxEntrySize) {
+                    throw new IOException("Field of " + length + " bytes in entry " + (entries + 1) + " is larger than "
+                            + maxEntrySize + " bytes");
+                }
+                readBytes(entry, (int) length);
+                if (readByte() != '\n') {
+                    throw new IOException("Missing newline after binary field in entry " + (entries + 1));
+                }
+                break;
+            }
+            if (++nameLength > JournalFieldNames.MAX_NAME_LENGTH) {
+                throw new IOException("Field name longer than " + JournalFieldNames.MAX_NAME_LENGTH + " bytes in entry "
+                        + (entries + 1));
+            }
+            entry.appendByte((byte) b);
+        }
+        entry.endField();
+    }
+
+    private void readLine(JournalEntry entry) throws IOException {
+        while (true) {
+            if (position == limit && !fill()) {
+                throw new EOFException("Truncated field in entry " + (entries + 1));
+            }
+            int end = position;
+            while (end < limit && buffer[end] != '\n') {
+                end++;
+            }
+            entry.appendBytes(buffer, position, end - position);
+            boolean found = end < limit;
+            position = found ? end + 1 : end;
+            if (found) {
+                return;
+            }
+            if (entry.size() > maxEntrySize) {
+                throw new IOException("Entry " + (entries + 1) + " is larger than " + maxEntrySize + " bytes");
+            }
+        }
+    }
+
+    private void readBytes(JournalEntry entry, int length) throws IOException {
+        while (length > 0) {
+            if (position == limit && !fill()) {
+                throw new EOFException("Truncated field in entry " + (entries + 1));
+            }
+            int count = Math.min(length, limit - position);
+            entry.appendBytes(buffer, position, count);
+            position += count;
+            length -= count;
+        }
+    }
+
+    private int readByte() throws IOException {
+        int b = read();
+        if (b < 0) {
+            throw new EOFException("Truncated field in entry " + (entries + 1));
+        }
+        return b;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    private boolean fill() throws IOException {
+        int count = in.read(buffer, 0, buffer.length);
+        if (count <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = count;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
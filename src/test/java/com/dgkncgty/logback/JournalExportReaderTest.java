@@ -0,0 +1,106 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+/**
+ * Unit tests for JournalExportReader
+ */
+public class JournalExportReaderTest {
+
+    @Test
+    public void testReadsTextAndBinaryFields() throws Exception {
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        write(dump, "__CURSOR=s=1;i=2\n__REALTIME_TIMESTAMP=1728396309123456\nMESSAGE\n");
+        dump.write(new byte[] {11, 0, 0, 0, 0, 0, 0, 0});
+        write(dump, "first\nline2\nPRIORITY=6\n\n\nMESSAGE=second\nEMPTY=\n\n");
+
+        JournalExportReader reader = reader(dump.toByteArray(), 1024);
+        JournalEntry entry = new JournalEntry();
+
+        assertThat(reader.next(entry)).isTrue();
+        assertThat(entry.fieldCount()).isEqualTo(4);
+        assertThat(entry.field(0)).isEqualTo("__CURSOR=s=1;i=2");
+        assertThat(entry.field(2)).isEqualTo("MESSAGE=first\nline2");
+        assertThat(entry.field(3)).isEqualTo("PRIORITY=6");
+
+        assertThat(reader.next(entry)).isTrue();
+        assertThat(entry.field(0)).isEqualTo("MESSAGE=second");
+        assertThat(entry.field(1)).isEqualTo("EMPTY=");
+
+        assertThat(reader.next(entry)).isFalse();
+        assertThat(reader.entries()).isEqualTo(2);
+    }
+
+    @Test
+    public void testStreamsLargeDumpsWithSmallReads() throws Exception {
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        for (int i = 0; i < 10_000; i++) {
+            write(dump, "MESSAGE=message " + i + "\nPRIORITY=6\n\n");
+        }
+        // a stream returning a few bytes at a time
+        InputStream trickle = new ByteArrayInputStream(dump.toByteArray()) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+
+        JournalExportReader reader = new JournalExportReader(trickle, 1024);
+        JournalEntry entry = new JournalEntry();
+        int count = 0;
+        while (reader.next(entry)) {
+            assertThat(entry.field(0)).isEqualTo("MESSAGE=message " + count);
+            count++;
+        }
+        assertThat(count).isEqualTo(10_000);
+    }
+
+    @Test
+    public void testRejectsOversizedEntries() throws Exception {
+        StringBuilder large = new StringBuilder("MESSAGE=");
+        for (int i = 0; i < 200_000; i++) {
+            large.append('x');
+        }
+        JournalExportReader reader = reader(large.append("\n\n").toString().getBytes(StandardCharsets.UTF_8), 1024);
+        assertThatThrownBy(() -> reader.next(new JournalEntry()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("larger than 1024 bytes");
+
+        byte[] binary = {'M', 'E', 'S', 'S', 'A', 'G', 'E', '\n', 0, 0, 0, 0, 1, 0, 0, 0};
+        assertThatThrownBy(() -> reader(binary, 1024).next(new JournalEntry()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("larger than 1024 bytes");
+    }
+
+    @Test
+    public void testTruncatedDumps() throws Exception {
+        JournalEntry entry = new JournalEntry();
+
+        JournalExportReader lastEntry = reader("MESSAGE=last\n".getBytes(StandardCharsets.UTF_8), 1024);
+        assertThat(lastEntry.next(entry)).isTrue();
+        assertThat(entry.field(0)).isEqualTo("MESSAGE=last");
+        assertThat(lastEntry.next(entry)).isFalse();
+
+        assertThatThrownBy(() -> reader("MESSAGE=tor".getBytes(StandardCharsets.UTF_8), 1024)
+                        .next(entry))
+                .isInstanceOf(EOFException.class);
+    }
+
+    private static JournalExportReader reader(byte[] bytes, int maxEntrySize) {
+        return new JournalExportReader(new ByteArrayInputStream(bytes), maxEntrySize);
+    }
+
+    private static void write(ByteArrayOutputStream out, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,265 @@
+package com.dgkncgty.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import ch.qos.logback.core.Appender;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Turns the entries of a journal export dump back into logging events and
+ * pushes them through an appender, at a given rate or as fast as possible, so
+ * that benchmarks run on real traffic.
+ *
+ * <p>{@code MESSAGE}, {@code PRIORITY}, {@code LOGGER_NAME} and
+ * {@code THREAD_NAME} are mapped back to the event, the {@code EXN_*} fields
+ * to its exception, and the other user fields become its MDC. Fields added by
+ * journald, starting with an underscore, and the ones the appender adds on its
+ * own are dropped.
+ */
+class JournalExportReplayer {
+
+    /** fields the appender writes from the event itself */
+    private static final Set<String> GENERATED_FIELDS = new HashSet<>(Arrays.asList(
+            "MESSAGE",
+            "PRIORITY",
+            "LOGGER_NAME",
+            "THREAD_NAME",
+            "EXN_NAME",
+            "EXN_MESSAGE",
+            "EXN_STACKTRACE",
+            "CODE_FILE",
+            "CODE_LINE",
+            "CODE_FUNC",
+            "SYSLOG_IDENTIFIER",
+            "SYSLOG_FACILITY",
+            "SYSLOG_PID",
+            "SYSLOG_TIMESTAMP",
+            "EVENT_TIMESTAMP_USEC",
+            "SAMPLE_RATE",
+            "SEQNUM",
+            "SEQNUM_ID"));
+
+    private final LoggerContext context;
+
+    JournalExportReplayer(LoggerContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Replays every entry of a dump.
+     *
+     * @param eventsPerSecond the rate at which events are appended, 0 for as
+     *     fast as possible
+     * @return the number of events replayed
+     */
+    long replay(JournalExportReader reader, Appender<ILoggingEvent> appender, long eventsPerSecond) throws IOException {
+        JournalEntry entry = new JournalEntry();
+        long intervalNanos = eventsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / eventsPerSecond : 0;
+        long start = System.nanoTime();
+        long count = 0;
+        while (reader.next(entry)) {
+            if (intervalNanos > 0) {
+                long delay = start + count * intervalNanos - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+            }
+            appender.doAppend(toEvent(entry));
+            count++;
+        }
+        return count;
+    }
+
+    LoggingEvent toEvent(JournalEntry entry) {
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < entry.fieldCount(); i++) {
+            String field =
+                    new String(entry.array(), entry.fieldOffset(i), entry.fieldLength(i), StandardCharsets.UTF_8);
+            int eq = field.indexOf('=');
+            fields.put(field.substring(0, eq), field.substring(eq + 1));
+        }
+
+        String loggerName = fields.getOrDefault("LOGGER_NAME", fields.getOrDefault("SYSLOG_IDENTIFIER", "replay"));
+        ReplayedEvent event = new ReplayedEvent(
+                JournalExportReplayer.class.getName(),
+                context.getLogger(loggerName),
+                level(fields.get("PRIORITY")),
+                fields.getOrDefault("MESSAGE", ""),
+                null,
+                null);
+        if (fields.containsKey("THREAD_NAME")) {
+            event.setThreadName(fields.get("THREAD_NAME"));
+        }
+        if (fields.containsKey("EXN_NAME")) {
+            event.throwable = throwable(fields);
+        }
+
+        Map<String, String> mdc = new HashMap<>();
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            String name = field.getKey();
+            if (!name.startsWith("_") && !GENERATED_FIELDS.contains(name)) {
+                mdc.put(name, field.getValue());
+            }
+        }
+        event.setMDCPropertyMap(mdc);
+        return event;
+    }
+
+    static Level level(String priority) {
+        if (priority == null || priority.length() != 1) {
+            return Level.INFO;
+        }
+        switch (priority.charAt(0)) {
+            case '0':
+            case '1':
+            case '2':
+            case '3':
+                return Level.ERROR;
+            case '4':
+                return Level.WARN;
+            case '7':
+                return Level.DEBUG;
+            default:
+                return Level.INFO;
+        }
+    }
+
+    /**
+     * Rebuilds the exception from its name, message and stack trace, as
+     * written by the appender, down the caused by chain.
+     */
+    private static IThrowableProxy throwable(Map<String, String> fields) {
+        ReplayedThrowableProxy top = new ReplayedThrowableProxy(fields.get("EXN_NAME"), fields.get("EXN_MESSAGE"));
+        ReplayedThrowableProxy current = top;
+        String stackTrace = fields.get("EXN_STACKTRACE");
+        if (stackTrace != null) {
+            for (String line : stackTrace.split("\n")) {
+                line = line.trim();
+                if (line.startsWith("Caused by: ")) {
+                    String cause = line.substring("Caused by: ".length());
+                    int colon = cause.indexOf(": ");
+                    ReplayedThrowableProxy next = colon < 0
+                            ? new ReplayedThrowableProxy(cause, null)
+                            : new ReplayedThrowableProxy(cause.substring(0, colon), cause.substring(colon + 2));
+                    current.cause = next;
+                    current = next;
+                } else if (line.startsWith("at ")) {
+                    current.stack.add(new StackTraceElementProxy(element(line.substring(3))));
+                }
+            }
+        }
+        if (top.stack.isEmpty()) {
+            // the appender only logs exceptions with a stack trace
+            String function = fields.getOrDefault("CODE_FUNC", "replay.Unknown.unknown");
+            int dot = function.lastIndexOf('.');
+            top.stack.add(new StackTraceElementProxy(new StackTraceElement(
+                    dot < 0 ? "replay.Unknown" : function.substring(0, dot),
+                    function.substring(dot + 1),
+                    fields.get("CODE_FILE"),
+                    parseInt(fields.get("CODE_LINE")))));
+        }
+        return top;
+    }
+
+    /**
+     * Parses {@code class.method(File.java:12)}.
+     */
+    static StackTraceElement element(String frame) {
+        int paren = frame.indexOf('(');
+        String function = paren < 0 ? frame : frame.substring(0, paren);
+        int dot = function.lastIndexOf('.');
+        String location = paren < 0 ? "" : frame.substring(paren + 1, frame.length() - 1);
+        int colon = location.lastIndexOf(':');
+        String file = colon < 0 ? location : location.substring(0, colon);
+        int line = colon < 0 ? (location.equals("Native Method") ? -2 : -1) : parseInt(location.substring(colon + 1));
+        return new StackTraceElement(
+                dot < 0 ? "" : function.substring(0, dot),
+                function.substring(dot + 1),
+                file.isEmpty() || file.equals("Native Method") || file.equals("Unknown Source") ? null : file,
+                line);
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return value == null ? -1 : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** an event whose exception is only known by its proxy */
+    private static final class ReplayedEvent extends LoggingEvent {
+        private IThrowableProxy throwable;
+
+        ReplayedEvent(String fqcn, Logger logger, Level level, String message, Throwable t, Object[] args) {
+            super(fqcn, logger, level, message, t, args);
+        }
+
+        @Override
+        public IThrowableProxy getThrowableProxy() {
+            return throwable;
+        }
+    }
+
+    private static final class ReplayedThrowableProxy implements IThrowableProxy {
+        private final String className;
+        private final String message;
+        private final List<StackTraceElementProxy> stack = new ArrayList<>();
+        private IThrowableProxy cause;
+
+        ReplayedThrowableProxy(String className, String message) {
+            this.className = className;
+            this.message = message;
+        }
+
+        @Override
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String getClassName() {
+            return className;
+        }
+
+        @Override
+        public StackTraceElementProxy[] getStackTraceElementProxyArray() {
+            return stack.toArray(new StackTraceElementProxy[0]);
+        }
+
+        @Override
+        public int getCommonFrames() {
+            return 0;
+        }
+
+        @Override
+        public IThrowableProxy getCause() {
+            return cause;
+        }
+
+        @Override
+        public IThrowableProxy[] getSuppressed() {
+            return new IThrowableProxy[0];
+        }
+
+        @Override
+        public boolean isCyclic() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for JournalExportReplayer
+ */
+public class JournalExportReplayerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReplaysExportedEvents() throws Exception {
+        LoggerContext context = new LoggerContext();
+        File dump = new File(folder.getRoot(), "journal.export");
+
+        // a dump written by the appender itself
+        SystemdJournalAppender exporting = new SystemdJournalAppender();
+        exporting.setContext(context);
+        exporting.setTransport("export");
+        exporting.setExportFile(dump.getPath());
+        exporting.setLogMdc(true);
+        exporting.setLogLoggerName(true);
+        exporting.setLogStackTrace(true);
+        exporting.start();
+        Map<String, String> mdc = new HashMap<>();
+        mdc.put("REQUEST_ID", "42");
+        LoggingEvent info = new LoggingEvent(
+                JournalExportReplayerTest.class.getName(),
+                context.getLogger("com.example.Orders"),
+                Level.INFO,
+                "order placed",
+                null,
+                null);
+        info.setMDCPropertyMap(mdc);
+        exporting.doAppend(info);
+        LoggingEvent error = new LoggingEvent(
+                JournalExportReplayerTest.class.getName(),
+                context.getLogger("com.example.Orders"),
+                Level.ERROR,
+                "order failed",
+                new IllegalStateException("boom", new IllegalArgumentException("cause")),
+                null);
+        error.setMDCPropertyMap(new HashMap<>());
+        exporting.doAppend(error);
+        exporting.stop();
+
+        RecordingJournalTransport transport = new RecordingJournalTransport();
+        SystemdJournalAppender replayed = new SystemdJournalAppender();
+        replayed.setContext(context);
+        replayed.setLogMdc(true);
+        replayed.setLogLoggerName(true);
+        replayed.setLogStackTrace(true);
+        replayed.transport = transport;
+        replayed.start();
+        try (JournalExportReader reader = new JournalExportReader(new FileInputStream(dump), 1024 * 1024)) {
+            assertThat(new JournalExportReplayer(context).replay(reader, replayed, 0))
+                    .isEqualTo(2);
+        }
+        replayed.stop();
+
+        assertThat(transport.messages()).containsExactly("order placed", "order failed");
+        assertThat(transport.fields(0))
+                .containsEntry("PRIORITY", "6")
+                .containsEntry("LOGGER_NAME", "com.example.Orders")
+                .containsEntry("REQUEST_ID", "42")
+                .containsEntry("THREAD_NAME", Thread.currentThread().getName())
+                .doesNotContainKey("__REALTIME_TIMESTAMP");
+        Map<String, String> failure = transport.fields(1);
+        assertThat(failure)
+                .containsEntry("PRIORITY", "3")
+                .containsEntry("EXN_NAME", "java.lang.IllegalStateException")
+                .containsEntry("EXN_MESSAGE", "boom")
+                .containsKey("CODE_FUNC");
+        assertThat(failure.get("EXN_STACKTRACE"))
+                .contains("at com.dgkncgty.logback.JournalExportReplayerTest.testReplaysExportedEvents(")
+                .contains("Caused by: java.lang.IllegalArgumentException: cause");
+    }
+
+    @Test
+    public void testParsesStackFrames() {
+        StackTraceElement element = JournalExportReplayer.element("com.example.Orders.place(Orders.java:12)");
+        assertThat(element.getClassName()).isEqualTo("com.example.Orders");
+        assertThat(element.getMethodName()).isEqualTo("place");
+        assertThat(element.getFileName()).isEqualTo("Orders.java");
+        assertThat(element.getLineNumber()).isEqualTo(12);
+
+        assertThat(JournalExportReplayer.element("java.lang.Thread.sleep(Native Method)")
+                        .isNativeMethod())
+                .isTrue();
+        assertThat(JournalExportReplayer.level("0")).isEqualTo(Level.ERROR);
+        assertThat(JournalExportReplayer.level("5")).isEqualTo(Level.INFO);
+        assertThat(JournalExportReplayer.level(null)).isEqualTo(Level.INFO);
+    }
+}
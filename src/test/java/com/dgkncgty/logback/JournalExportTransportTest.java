@@ -0,0 +1,215 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for JournalExportTransport and JournalExportFile
+ */
+public class JournalExportTransportTest {
+
+    private static final byte[] MESSAGE = "MESSAGE=".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PRIORITY = "PRIORITY=".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EVENT_TIMESTAMP_USEC = "EVENT_TIMESTAMP_USEC=".getBytes(StandardCharsets.US_ASCII);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWritesExportFormat() throws Exception {
+        File file = new File(folder.getRoot(), "journal.export");
+        JournalExportTransport transport =
+                new JournalExportTransport(new JournalExportFile(file.getPath(), 0, 0), 4096, () -> 1234L);
+        transport.start();
+
+        transport.send(new JournalEntry().add(MESSAGE, "first").add(PRIORITY, 6));
+        transport.send(new JournalEntry().add(MESSAGE, "two\nlines").add(EVENT_TIMESTAMP_USEC, 1728396309123456L));
+        // buffered until flushed
+        assertThat(file.length()).isZero();
+        transport.flush();
+        transport.stop();
+
+        byte[] expected = concat(
+                "__REALTIME_TIMESTAMP=1234000\nMESSAGE=first\nPRIORITY=6\n\n",
+                "__REALTIME_TIMESTAMP=1728396309123456\nMESSAGE\n",
+                new byte[] {9, 0, 0, 0, 0, 0, 0, 0},
+                "two\nlines\nEVENT_TIMESTAMP_USEC=1728396309123456\n\n");
+        assertThat(Files.readAllBytes(file.toPath())).isEqualTo(expected);
+        assertThat(parse(file)).hasSize(2);
+        assertThat(parse(file).get(1)).containsEntry("MESSAGE", "two\nlines");
+    }
+
+    @Test
+    public void testRotatesBetweenBatches() throws Exception {
+        File file = new File(folder.getRoot(), "journal.export");
+        JournalExportFile exportFile = new JournalExportFile(file.getPath(), 200, 2);
+        JournalExportTransport transport = new JournalExportTransport(exportFile, 1024, () -> 1L);
+        transport.start();
+
+        for (int i = 0; i < 20; i++) {
+            transport.send(new JournalEntry().add(MESSAGE, "message " + i));
+            // one batch per entry
+            transport.flush();
+        }
+        transport.stop();
+
+        assertThat(file.length()).isLessThanOrEqualTo(200);
+        assertThat(exportFile.rotated(1)).exists();
+        assertThat(exportFile.rotated(2)).exists();
+        assertThat(exportFile.rotated(3)).doesNotExist();
+
+        // each file is a valid stream, the newest entries being in the file itself
+        List<String> messages = new ArrayList<>();
+        for (File part : new File[] {exportFile.rotated(2), exportFile.rotated(1), file}) {
+            for (Map<String, String> entry : parse(part)) {
+                messages.add(entry.get("MESSAGE"));
+            }
+        }
+        assertThat(messages).endsWith("message 18", "message 19");
+        for (int i = 1; i < messages.size(); i++) {
+            int previous = Integer.parseInt(messages.get(i - 1).substring(8));
+            assertThat(Integer.parseInt(messages.get(i).substring(8))).isEqualTo(previous + 1);
+        }
+    }
+
+    @Test
+    public void testSharedBetweenTransports() throws Exception {
+        File file = new File(folder.getRoot(), "journal.export");
+        JournalExportFile exportFile = new JournalExportFile(file.getPath(), 0, 0);
+        JournalExportTransport first = new JournalExportTransport(exportFile, 1024);
+        JournalExportTransport second = new JournalExportTransport(exportFile, 1024);
+        first.start();
+        second.start();
+
+        first.send(new JournalEntry().add(MESSAGE, "first"));
+        second.send(new JournalEntry().add(MESSAGE, "second"));
+        first.stop();
+        // still open for the second transport
+        second.send(new JournalEntry().add(MESSAGE, "third"));
+        second.stop();
+
+        assertThat(parse(file)).extracting(entry -> entry.get("MESSAGE")).containsExactly("first", "second", "third");
+    }
+
+    @Test
+    public void testKeepsBatchesFailingToWrite() throws Exception {
+        FlakyTarget target = new FlakyTarget();
+        JournalExportTransport transport = new JournalExportTransport(target, 1024, () -> 1L);
+        transport.start();
+
+        transport.send(new JournalEntry().add(MESSAGE, "first"));
+        transport.send(new JournalEntry().add(MESSAGE, "second"));
+        // part of the batch is written before failing
+        target.failures = 1;
+        assertThatThrownBy(transport::flush).isInstanceOf(IOException.class);
+        target.failures = 1;
+        assertThatThrownBy(transport::flush).isInstanceOf(IOException.class);
+        transport.send(new JournalEntry().add(MESSAGE, "third"));
+        transport.flush();
+        transport.stop();
+
+        assertThat(parse(target.written.toByteArray()))
+                .extracting(entry -> entry.get("MESSAGE"))
+                .containsExactly("first", "second", "third");
+    }
+
+    /**
+     * Target writing half of the batch before failing, as many times as
+     * asked.
+     */
+    private static final class FlakyTarget
+            implements JournalExportTransport.Target, JournalExportTransport.Target.Lane {
+
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        int failures = 0;
+
+        @Override
+        public JournalExportTransport.Target.Lane acquire() {
+            return this;
+        }
+
+        @Override
+        public void release() {}
+
+        @Override
+        public void write(ByteBuffer batch) throws IOException {
+            int length = failures > 0 ? batch.remaining() / 2 : batch.remaining();
+            byte[] bytes = new byte[length];
+            batch.get(bytes);
+            written.write(bytes);
+            if (failures > 0) {
+                failures--;
+                throw new IOException("Disk full");
+            }
+        }
+    }
+
+    /**
+     * Reads the entries of an export file, by field name.
+     */
+    static List<Map<String, String>> parse(File file) throws Exception {
+        return parse(Files.readAllBytes(file.toPath()));
+    }
+
+    /**
+     * Reads the entries of an export format stream, by field name.
+     */
+    static List<Map<String, String>> parse(byte[] bytes) {
+        List<Map<String, String>> entries = new ArrayList<>();
+        Map<String, String> entry = new LinkedHashMap<>();
+        int pos = 0;
+        while (pos < bytes.length) {
+            int end = pos;
+            while (bytes[end] != '\n' && bytes[end] != '=') {
+                end++;
+            }
+            if (end == pos) {
+                entries.add(entry);
+                entry = new LinkedHashMap<>();
+                pos++;
+                continue;
+            }
+            String name = new String(bytes, pos, end - pos, StandardCharsets.US_ASCII);
+            if (bytes[end] == '=') {
+                int lineEnd = end;
+                while (bytes[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+                entry.put(name, new String(bytes, end + 1, lineEnd - end - 1, StandardCharsets.UTF_8));
+                pos = lineEnd + 1;
+            } else {
+                int length = 0;
+                for (int b = 7; b >= 0; b--) {
+                    length = (length << 8) | (bytes[end + 1 + b] & 0xff);
+                }
+                entry.put(name, new String(bytes, end + 9, length, StandardCharsets.UTF_8));
+                pos = end + 9 + length + 1;
+            }
+        }
+        return entries;
+    }
+
+    private static byte[] concat(Object... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Object part : parts) {
+            byte[] bytes = part instanceof String ? ((String) part).getBytes(StandardCharsets.UTF_8) : (byte[]) part;
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,82 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for JournalFlightRecorder
+ */
+public class JournalFlightRecorderTest {
+
+    private Logger logger;
+    private long now;
+    private JournalFlightRecorder recorder;
+
+    @Before
+    public void setUp() {
+        logger = new LoggerContext().getLogger(JournalFlightRecorderTest.class);
+        now = TimeUnit.SECONDS.toNanos(100);
+        recorder = new JournalFlightRecorder(3, 2, 1000, () -> now);
+    }
+
+    @Test
+    public void testDrainReturnsEventsInOrder() {
+        recorder.record("a", event("a1"));
+        recorder.record("b", event("b1"));
+        recorder.record("a", event("a2"));
+
+        assertThat(messages(recorder.drain("a"))).containsExactly("a1", "a2");
+        assertThat(recorder.drain("a")).isEmpty();
+        assertThat(messages(recorder.drain("b"))).containsExactly("b1");
+    }
+
+    @Test
+    public void testKeepsMostRecentEvents() {
+        for (int i = 0; i < 5; i++) {
+            recorder.record("a", event("a" + i));
+        }
+
+        assertThat(messages(recorder.drain("a"))).containsExactly("a2", "a3", "a4");
+    }
+
+    @Test
+    public void testDiscardsLeastRecentlyUsedContext() {
+        recorder.record("a", event("a1"));
+        recorder.record("b", event("b1"));
+        recorder.record("a", event("a2"));
+        recorder.record("c", event("c1"));
+
+        assertThat(recorder.size()).isEqualTo(2);
+        assertThat(recorder.drain("b")).isEmpty();
+        assertThat(messages(recorder.drain("a"))).containsExactly("a1", "a2");
+    }
+
+    @Test
+    public void testDiscardsExpiredContexts() {
+        recorder.record("a", event("a1"));
+        now += TimeUnit.MILLISECONDS.toNanos(600);
+        recorder.record("b", event("b1"));
+        now += TimeUnit.MILLISECONDS.toNanos(600);
+
+        assertThat(recorder.drain("a")).isEmpty();
+        assertThat(messages(recorder.drain("b"))).containsExactly("b1");
+    }
+
+    private ILoggingEvent event(String message) {
+        return new LoggingEvent("com.example.Test", logger, Level.DEBUG, message, null, null);
+    }
+
+    private static List<String> messages(List<ILoggingEvent> events) {
+        return events.stream().map(ILoggingEvent::getMessage).collect(Collectors.toList());
+    }
+}
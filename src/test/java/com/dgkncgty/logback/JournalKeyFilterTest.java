@@ -0,0 +1,50 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for JournalKeyFilter
+ */
+public class JournalKeyFilterTest {
+
+    @Test
+    public void testEmptyListsAcceptEverything() {
+        JournalKeyFilter filter = JournalKeyFilter.compile("", " , ");
+
+        assertThat(filter).isSameAs(JournalKeyFilter.ALL);
+        assertThat(filter.accept("anything")).isTrue();
+    }
+
+    @Test
+    public void testIncludes() {
+        JournalKeyFilter filter = JournalKeyFilter.compile("request_id, user.*", "");
+
+        assertThat(filter.accept("request_id")).isTrue();
+        assertThat(filter.accept("user.id")).isTrue();
+        assertThat(filter.accept("user.")).isTrue();
+        assertThat(filter.accept("request_id_2")).isFalse();
+        assertThat(filter.accept("session")).isFalse();
+    }
+
+    @Test
+    public void testExcludesTakePrecedence() {
+        JournalKeyFilter filter = JournalKeyFilter.compile("user.*", "user.token,payload*");
+
+        assertThat(filter.accept("user.id")).isTrue();
+        assertThat(filter.accept("user.token")).isFalse();
+
+        JournalKeyFilter excludesOnly = JournalKeyFilter.compile(null, "payload*");
+        assertThat(excludesOnly.accept("payload.body")).isFalse();
+        assertThat(excludesOnly.accept("request_id")).isTrue();
+    }
+
+    @Test
+    public void testInvalidPattern() {
+        assertThatThrownBy(() -> JournalKeyFilter.compile("user*.id", ""))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("user*.id");
+    }
+}
@@ -0,0 +1,81 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ListResourceBundle;
+import java.util.Map;
+import java.util.ResourceBundle;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for JournalLoggerFinder
+ */
+public class JournalLoggerFinderTest {
+
+    private RecordingJournalTransport transport;
+    private JournalLoggerFinder finder;
+
+    @Before
+    public void setUp() throws Exception {
+        transport = new RecordingJournalTransport();
+        finder = new JournalLoggerFinder(new JournalWriter(transport), System.Logger.Level.INFO);
+    }
+
+    @Test
+    public void testLogsToJournal() {
+        System.Logger logger = finder.getLogger("jdk.internal.event", Object.class.getModule());
+
+        logger.log(System.Logger.Level.WARNING, "connection {0} closed after {1} ms", "db-1", 42);
+        logger.log(System.Logger.Level.ERROR, "failure", new IllegalStateException("boom"));
+        logger.log(System.Logger.Level.DEBUG, "not logged");
+
+        assertThat(transport.messages()).containsExactly("connection db-1 closed after 42 ms", "failure");
+        Map<String, String> fields = transport.fields(0);
+        assertThat(fields)
+                .containsEntry("PRIORITY", "4")
+                .containsEntry("LOGGER_NAME", "jdk.internal.event")
+                .containsEntry("THREAD_NAME", Thread.currentThread().getName());
+        assertThat(transport.fields(1))
+                .containsEntry("PRIORITY", "3")
+                .containsEntry("EXN_NAME", "java.lang.IllegalStateException")
+                .containsEntry("EXN_MESSAGE", "boom");
+    }
+
+    @Test
+    public void testLevels() {
+        System.Logger logger = finder.getLogger("test", Object.class.getModule());
+
+        assertThat(logger.isLoggable(System.Logger.Level.DEBUG)).isFalse();
+        assertThat(logger.isLoggable(System.Logger.Level.INFO)).isTrue();
+        assertThat(logger.isLoggable(System.Logger.Level.OFF)).isFalse();
+        assertThat(JournalSystemLogger.priority(System.Logger.Level.TRACE)).isEqualTo(7);
+        assertThat(JournalSystemLogger.priority(System.Logger.Level.INFO)).isEqualTo(6);
+        assertThat(finder.getLogger("test", Object.class.getModule())).isSameAs(logger);
+    }
+
+    @Test
+    public void testParsesLevelsLeniently() {
+        assertThat(JournalLoggerFinder.parseLevel(null)).isEqualTo(System.Logger.Level.INFO);
+        assertThat(JournalLoggerFinder.parseLevel("debug")).isEqualTo(System.Logger.Level.DEBUG);
+        assertThat(JournalLoggerFinder.parseLevel(" Warning ")).isEqualTo(System.Logger.Level.WARNING);
+        // a typo must not break platform logging
+        assertThat(JournalLoggerFinder.parseLevel("wrning")).isEqualTo(System.Logger.Level.INFO);
+    }
+
+    @Test
+    public void testLocalizesMessages() {
+        ResourceBundle bundle = new ListResourceBundle() {
+            @Override
+            protected Object[][] getContents() {
+                return new Object[][] {{"closed", "connection {0} closed"}};
+            }
+        };
+        System.Logger logger = finder.getLocalizedLogger("test", bundle, Object.class.getModule());
+
+        logger.log(System.Logger.Level.INFO, "closed", "db-1");
+        logger.log(System.Logger.Level.INFO, "missing key");
+
+        assertThat(transport.messages()).containsExactly("connection db-1 closed", "missing key");
+    }
+}
@@ -0,0 +1,167 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import com.sun.jna.Native;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for JournalReader
+ */
+public class JournalReaderTest {
+
+    private LoggerContext loggerContext;
+    private InMemoryJournal journal;
+    private SystemdJournalAppender appender;
+
+    @Before
+    public void setUp() {
+        loggerContext = new LoggerContext();
+        journal = new InMemoryJournal();
+        appender = new SystemdJournalAppender();
+        appender.setContext(loggerContext);
+        appender.setLogLoggerName(true);
+        appender.setLogMdc(true);
+        appender.journald = journal;
+        appender.start();
+    }
+
+    @After
+    public void tearDown() {
+        appender.stop();
+    }
+
+    @Test
+    public void testReadsEntriesSentByTheAppender() throws Exception {
+        log(Level.INFO, "first", "ORDER_ID", "1");
+        log(Level.ERROR, "second", "ORDER_ID", "2");
+
+        try (JournalReader reader = new JournalReader(journal, SystemdJournalLibrary.SD_JOURNAL_LOCAL_ONLY)) {
+            assertThat(reader.next()).isTrue();
+            assertThat(reader.getField("MESSAGE")).isEqualTo("first");
+            assertThat(reader.getField("ORDER_ID")).isEqualTo("1");
+            assertThat(reader.getField("MISSING")).isNull();
+            assertThat(reader.getRealtimeMicros()).isPositive();
+            Map<String, String> fields = new HashMap<>();
+            reader.forEachField(fields::put);
+            assertThat(fields)
+                    .containsEntry("MESSAGE", "first")
+                    .containsEntry("PRIORITY", "6")
+                    .containsEntry("LOGGER_NAME", "orders");
+
+            assertThat(reader.next()).isTrue();
+            assertThat(reader.getField("MESSAGE")).isEqualTo("second");
+            assertThat(reader.next()).isFalse();
+        }
+    }
+
+    @Test
+    public void testMatches() throws Exception {
+        log(Level.INFO, "placed", "ORDER_ID", "1");
+        log(Level.ERROR, "failed", "ORDER_ID", "2");
+        log(Level.WARN, "retried", "ORDER_ID", "3");
+
+        try (JournalReader reader = new JournalReader(journal, SystemdJournalLibrary.SD_JOURNAL_LOCAL_ONLY)) {
+            reader.addMatch("PRIORITY", "3").addDisjunction().addMatch("ORDER_ID", "3");
+            assertThat(messages(reader)).containsExactly("failed", "retried");
+
+            reader.flushMatches().seekHead();
+            assertThat(messages(reader)).containsExactly("placed", "failed", "retried");
+        }
+    }
+
+    @Test
+    public void testResumesAfterCursor() throws Exception {
+        log(Level.INFO, "first", "ORDER_ID", "1");
+        log(Level.INFO, "second", "ORDER_ID", "2");
+        log(Level.INFO, "third", "ORDER_ID", "3");
+
+        String cursor;
+        try (JournalReader reader = new JournalReader(journal, SystemdJournalLibrary.SD_JOURNAL_LOCAL_ONLY)) {
+            reader.next();
+            reader.next();
+            cursor = reader.getCursor();
+        }
+        try (JournalReader reader = new JournalReader(journal, SystemdJournalLibrary.SD_JOURNAL_LOCAL_ONLY)) {
+            reader.seekAfter(cursor);
+            assertThat(messages(reader)).containsExactly("third");
+        }
+    }
+
+    @Test
+    public void testFollowsAppendedEntries() throws Exception {
+        log(Level.INFO, "before", "ORDER_ID", "1");
+
+        try (JournalReader reader = new JournalReader(journal, SystemdJournalLibrary.SD_JOURNAL_LOCAL_ONLY)) {
+            reader.seekTail();
+            assertThat(reader.next()).isFalse();
+            assertThat(reader.await(10, TimeUnit.MILLISECONDS)).isFalse();
+
+            Thread writer = new Thread(() -> log(Level.INFO, "after", "ORDER_ID", "2"));
+            writer.start();
+            assertThat(reader.await(10, TimeUnit.SECONDS)).isTrue();
+            writer.join();
+            assertThat(messages(reader)).containsExactly("after");
+        }
+    }
+
+    @Test
+    public void testClosedReader() throws Exception {
+        JournalReader reader = new JournalReader(journal, SystemdJournalLibrary.SD_JOURNAL_LOCAL_ONLY);
+        reader.close();
+        reader.close();
+
+        assertThatThrownBy(reader::next).isInstanceOf(IOException.class).hasMessage("Journal reader is closed");
+    }
+
+    @Test
+    public void testNativeLibrary() throws Exception {
+        try {
+            Native.load("systemd", SystemdJournalLibrary.class);
+        } catch (LinkageError e) {
+            Assume.assumeNoException("libsystemd is not available", e);
+        }
+
+        try (JournalReader reader = JournalReader.open()) {
+            reader.addMatch("_TRANSPORT", "journal").addDisjunction().addMatch("_TRANSPORT", "stdout");
+            reader.seekTail();
+            reader.seekHead();
+            for (int i = 0; i < 10 && reader.next(); i++) {
+                assertThat(reader.getCursor()).isNotEmpty();
+                assertThat(reader.getRealtimeMicros()).isPositive();
+                reader.getField("MESSAGE");
+            }
+            reader.await(1, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void log(Level level, String message, String key, String value) {
+        LoggingEvent event = new LoggingEvent(
+                JournalReaderTest.class.getName(), loggerContext.getLogger("orders"), level, message, null, null);
+        Map<String, String> mdc = new HashMap<>();
+        mdc.put(key, value);
+        event.setMDCPropertyMap(mdc);
+        appender.doAppend(event);
+    }
+
+    private static List<String> messages(JournalReader reader) throws IOException {
+        List<String> messages = new ArrayList<>();
+        while (reader.next()) {
+            messages.add(reader.getField("MESSAGE"));
+        }
+        return messages;
+    }
+}
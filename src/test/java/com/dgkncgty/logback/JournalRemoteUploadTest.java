@@ -0,0 +1,248 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.spi.ContextAwareBase;
+import ch.qos.logback.core.status.Status;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for JournalRemoteUpload
+ */
+public class JournalRemoteUploadTest {
+
+    private static final byte[] MESSAGE = "MESSAGE=".getBytes(StandardCharsets.US_ASCII);
+
+    private FakeJournalRemote remote;
+
+    private ContextAwareBase owner;
+
+    @Before
+    public void setUp() throws Exception {
+        remote = new FakeJournalRemote();
+        owner = new ContextAwareBase();
+        owner.setContext(new LoggerContext());
+    }
+
+    @After
+    public void tearDown() {
+        remote.close();
+    }
+
+    @Test
+    public void testUploadsBatches() throws Exception {
+        JournalExportTransport transport =
+                new JournalExportTransport(new JournalRemoteUpload(owner, remote.url(), "none", 5000), 2048);
+        transport.start();
+        for (int i = 0; i < 100; i++) {
+            transport.send(new JournalEntry().add(MESSAGE, "message " + i + "\nsecond line"));
+        }
+        transport.stop();
+
+        assertThat(remote.entries()).hasSize(100);
+        assertThat(remote.entries().get(99)).containsEntry("MESSAGE", "message 99\nsecond line");
+        // batched by size
+        assertThat(remote.requests()).isBetween(2, 10);
+    }
+
+    @Test
+    public void testCompressesWithGzip() throws Exception {
+        JournalExportTransport transport =
+                new JournalExportTransport(new JournalRemoteUpload(owner, remote.url(), "gzip", 5000), 64 * 1024);
+        transport.start();
+        transport.send(new JournalEntry().add(MESSAGE, "compressed"));
+        transport.flush();
+        transport.stop();
+
+        assertThat(remote.entries()).extracting(entry -> entry.get("MESSAGE")).containsExactly("compressed");
+        assertThat(remote.contentEncodings()).containsExactly("gzip");
+    }
+
+    @Test
+    public void testRetriesFailedUploads() throws Exception {
+        remote.status = 500;
+        JournalExportTransport transport =
+                new JournalExportTransport(new JournalRemoteUpload(owner, remote.url(), "none", 5000, 10), 1024);
+        transport.start();
+        transport.send(new JournalEntry().add(MESSAGE, "retried"));
+        // queued, and uploaded by another thread
+        transport.flush();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        // retried once the first failure is known
+        while (remote.failures() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // later batches are refused while the upload fails, and kept
+        transport.send(new JournalEntry().add(MESSAGE, "kept"));
+        assertThatThrownBy(transport::flush).isInstanceOf(IOException.class).hasMessageContaining("HTTP 500");
+        assertThat(remote.entries()).isEmpty();
+
+        remote.status = 202;
+        // written once uploads succeed again
+        while (true) {
+            try {
+                transport.flush();
+                break;
+            } catch (IOException e) {
+                assertThat(System.currentTimeMillis()).isLessThan(deadline);
+                Thread.sleep(10);
+            }
+        }
+        transport.stop();
+
+        assertThat(remote.entries()).extracting(entry -> entry.get("MESSAGE")).containsExactly("retried", "kept");
+    }
+
+    @Test
+    public void testRetriesThrottledUploads() throws Exception {
+        remote.status = 429;
+        JournalExportTransport transport =
+                new JournalExportTransport(new JournalRemoteUpload(owner, remote.url(), "gzip", 5000, 10), 1024);
+        transport.start();
+        transport.send(new JournalEntry().add(MESSAGE, "throttled"));
+        transport.flush();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (remote.failures() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        remote.status = 202;
+        transport.stop();
+
+        assertThat(remote.entries()).extracting(entry -> entry.get("MESSAGE")).containsExactly("throttled");
+    }
+
+    @Test
+    public void testDropsBatchesRejectedForGood() throws Exception {
+        remote.status = 413;
+        JournalExportTransport transport =
+                new JournalExportTransport(new JournalRemoteUpload(owner, remote.url(), "none", 5000, 10), 1024);
+        transport.start();
+        transport.send(new JournalEntry().add(MESSAGE, "too large"));
+        transport.flush();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (errors().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        remote.status = 202;
+        // later batches are not blocked
+        transport.send(new JournalEntry().add(MESSAGE, "accepted"));
+        transport.flush();
+        transport.stop();
+
+        assertThat(remote.failures()).isEqualTo(1);
+        assertThat(remote.entries()).extracting(entry -> entry.get("MESSAGE")).containsExactly("accepted");
+        assertThat(errors()).hasSize(1).allMatch(message -> message.contains("HTTP 413"));
+    }
+
+    @Test
+    public void testKeepsBatchOrderOfEachTransport() throws Exception {
+        remote.delayMillis = 300;
+        remote.slowMessage = "first";
+        JournalRemoteUpload upload = new JournalRemoteUpload(owner, remote.url(), "none", 5000);
+        JournalExportTransport first = new JournalExportTransport(upload, 1024);
+        JournalExportTransport second = new JournalExportTransport(upload, 1024);
+        first.start();
+        second.start();
+
+        first.send(new JournalEntry().add(MESSAGE, "first"));
+        first.flush();
+        first.send(new JournalEntry().add(MESSAGE, "then"));
+        first.flush();
+        second.send(new JournalEntry().add(MESSAGE, "other"));
+        second.flush();
+        first.stop();
+        second.stop();
+
+        assertThat(remote.entries())
+                .extracting(entry -> entry.get("MESSAGE"))
+                .containsSubsequence("first", "then")
+                .contains("other");
+    }
+
+    @Test
+    public void testUploadsOffTheLoggingThread() throws Exception {
+        remote.delayMillis = 500;
+        JournalExportTransport transport =
+                new JournalExportTransport(new JournalRemoteUpload(owner, remote.url(), "none", 5000), 1024);
+        transport.start();
+
+        long start = System.nanoTime();
+        transport.send(new JournalEntry().add(MESSAGE, "slow"));
+        transport.flush();
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.MILLISECONDS.toNanos(250));
+        transport.stop();
+
+        assertThat(remote.entries()).extracting(entry -> entry.get("MESSAGE")).containsExactly("slow");
+    }
+
+    @Test
+    public void testRejectsInvalidSettings() {
+        assertThatThrownBy(() -> new JournalRemoteUpload(owner, "", "none", 1000))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new JournalRemoteUpload(owner, "ftp://host/upload", "none", 1000))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new JournalRemoteUpload(owner, remote.url(), "zstd", 1000))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private List<String> errors() {
+        List<String> errors = new ArrayList<>();
+        for (Status status : owner.getContext().getStatusManager().getCopyOfStatusList()) {
+            if (status.getLevel() == Status.ERROR) {
+                errors.add(status.getMessage());
+            }
+        }
+        return errors;
+    }
+
+    @Test
+    public void testAppenderUploadsFromWriterThreads() throws Exception {
+        LoggerContext context = new LoggerContext();
+        SystemdJournalAppender appender = new SystemdJournalAppender();
+        appender.setContext(context);
+        appender.setTransport("remote");
+        appender.setRemoteUrl(remote.url());
+        appender.setWriterThreads(2);
+        appender.start();
+
+        Thread[] producers = new Thread[4];
+        for (int t = 0; t < producers.length; t++) {
+            producers[t] = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    LoggingEvent event = new LoggingEvent(
+                            JournalRemoteUploadTest.class.getName(),
+                            context.getLogger(JournalRemoteUploadTest.class),
+                            Level.INFO,
+                            "message " + i,
+                            null,
+                            null);
+                    event.setMDCPropertyMap(new HashMap<>());
+                    appender.doAppend(event);
+                }
+            });
+            producers[t].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        appender.stop();
+
+        assertThat(remote.entries()).hasSize(2000);
+        assertThat(remote.entries()).allMatch(entry -> entry.containsKey("__REALTIME_TIMESTAMP"));
+    }
+}
@@ -0,0 +1,155 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for JournalRingFile
+ */
+public class JournalRingFileTest {
+
+    private static final byte[] MESSAGE = "MESSAGE=".getBytes(StandardCharsets.US_ASCII);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private JournalRingFile ring;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.getRoot(), "queue/journal.queue");
+        ring = JournalRingFile.open(file, 1024);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        ring.close();
+    }
+
+    @Test
+    public void testEmptyFile() {
+        assertThat(ring.hasPending()).isFalse();
+        assertThat(ring.peek(new JournalEntry())).isFalse();
+    }
+
+    @Test
+    public void testReadInOrder() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(ring.append(entry("message " + i))).isTrue();
+        }
+
+        assertThat(readAll()).hasSize(10).startsWith("MESSAGE=message 0").endsWith("MESSAGE=message 9");
+        assertThat(ring.hasPending()).isFalse();
+    }
+
+    @Test
+    public void testWrapsAround() {
+        // more than the file can hold at once, read as it goes
+        JournalEntry entry = new JournalEntry();
+        for (int i = 0; i < 500; i++) {
+            assertThat(ring.append(entry("message " + i))).isTrue();
+            if (i % 3 == 2) {
+                for (int j = i - 2; j <= i; j++) {
+                    assertThat(ring.peek(entry)).isTrue();
+                    assertThat(entry.field(0)).isEqualTo("MESSAGE=message " + j);
+                    ring.advance();
+                }
+            }
+        }
+        assertThat(readAll()).containsExactly("MESSAGE=message 498", "MESSAGE=message 499");
+    }
+
+    @Test
+    public void testRefusesEntriesWhenFull() {
+        int appended = 0;
+        while (ring.append(entry("some message that takes room"))) {
+            appended++;
+        }
+
+        assertThat(appended).isGreaterThan(0);
+        assertThat(ring.pendingBytes()).isLessThanOrEqualTo(1024 - JournalRingFile.HEADER_SIZE);
+
+        // reading makes room again
+        ring.peek(new JournalEntry());
+        ring.advance();
+        assertThat(ring.append(entry("some message that takes room"))).isTrue();
+        assertThat(readAll()).hasSize(appended);
+    }
+
+    @Test
+    public void testUnreadEntriesSurviveReopening() throws IOException {
+        for (int i = 0; i < 40; i++) {
+            ring.append(entry("message " + i));
+            if (i < 35) {
+                ring.peek(new JournalEntry());
+                ring.advance();
+            }
+        }
+        ring.close();
+
+        ring = JournalRingFile.open(file, 1024);
+
+        assertThat(readAll())
+                .containsExactly(
+                        "MESSAGE=message 35",
+                        "MESSAGE=message 36",
+                        "MESSAGE=message 37",
+                        "MESSAGE=message 38",
+                        "MESSAGE=message 39");
+        assertThat(ring.append(entry("after reopening"))).isTrue();
+        assertThat(readAll()).containsExactly("MESSAGE=after reopening");
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws IOException {
+        ring.append(entry("first"));
+        ring.append(entry("second"));
+        ring.close();
+
+        // corrupt the payload of the second record
+        int second = JournalRingFile.HEADER_SIZE
+                + JournalRingFile.RECORD_HEADER_SIZE
+                + entry("first").size();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(second + JournalRingFile.RECORD_HEADER_SIZE + 6);
+            raf.write('X');
+        }
+
+        ring = JournalRingFile.open(file, 1024);
+        assertThat(readAll()).containsExactly("MESSAGE=first");
+    }
+
+    @Test
+    public void testKeepsSizeOfExistingFile() throws IOException {
+        ring.close();
+        ring = JournalRingFile.open(file, 4096);
+
+        assertThat(file.length()).isEqualTo(1024);
+    }
+
+    private List<String> readAll() {
+        List<String> fields = new ArrayList<>();
+        JournalEntry entry = new JournalEntry();
+        while (ring.peek(entry)) {
+            fields.add(entry.field(0));
+            ring.advance();
+        }
+        return fields;
+    }
+
+    private static JournalEntry entry(String message) {
+        return new JournalEntry().add(MESSAGE, message);
+    }
+}
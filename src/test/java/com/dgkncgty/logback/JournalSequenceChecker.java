@@ -0,0 +1,94 @@
+package com.dgkncgty.logback;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scans received entries for gaps in their {@code SEQNUM} field, to count the
+ * entries lost between the appender and the journal, e.g. in soak tests.
+ *
+ * <p>Entries may be received out of order, e.g. when spilled entries are
+ * replayed, so the numbers of each sequence are collected before looking for
+ * gaps. Numbers start at 1, so that entries lost at the start of a sequence
+ * are counted too.
+ */
+class JournalSequenceChecker {
+
+    private final Map<String, BitSet> sequences = new LinkedHashMap<>();
+
+    private long entries = 0;
+
+    private long duplicates = 0;
+
+    private long unnumbered = 0;
+
+    void add(Map<String, String> fields) {
+        String id = fields.get("SEQNUM_ID");
+        String seqnum = fields.get("SEQNUM");
+        if (id == null || seqnum == null) {
+            unnumbered++;
+            return;
+        }
+        entries++;
+        BitSet seen = sequences.computeIfAbsent(id, k -> new BitSet());
+        int index = Math.toIntExact(Long.parseLong(seqnum));
+        if (seen.get(index)) {
+            duplicates++;
+        }
+        seen.set(index);
+    }
+
+    void addAll(RecordingJournalTransport transport) {
+        for (int i = 0; i < transport.entries().size(); i++) {
+            add(transport.fields(i));
+        }
+    }
+
+    int sequences() {
+        return sequences.size();
+    }
+
+    long entries() {
+        return entries;
+    }
+
+    long duplicates() {
+        return duplicates;
+    }
+
+    long unnumbered() {
+        return unnumbered;
+    }
+
+    /**
+     * Number of entries missing before the last one received of each
+     * sequence. Entries lost at the end of a sequence cannot be told.
+     */
+    long missing() {
+        long missing = 0;
+        for (BitSet seen : sequences.values()) {
+            missing += seen.length() - 1 - seen.cardinality();
+        }
+        return missing;
+    }
+
+    /**
+     * The missing ranges of each sequence, e.g. {@code 2a4f...:5-7}.
+     */
+    List<String> gaps() {
+        List<String> gaps = new ArrayList<>();
+        for (Map.Entry<String, BitSet> sequence : sequences.entrySet()) {
+            BitSet seen = sequence.getValue();
+            int from = seen.nextClearBit(1);
+            while (from < seen.length()) {
+                int to = seen.nextSetBit(from) - 1;
+                gaps.add(sequence.getKey() + ":" + (from == to ? String.valueOf(from) : from + "-" + to));
+                from = seen.nextClearBit(to + 1);
+            }
+        }
+        return gaps;
+    }
+}
@@ -0,0 +1,55 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.Test;
+
+/**
+ * Unit tests for JournalSequence and JournalSequenceChecker
+ */
+public class JournalSequenceTest {
+
+    private static final byte[] MESSAGE = "MESSAGE=".getBytes();
+
+    @Test
+    public void testStampsIncreasingNumbers() {
+        JournalSequence sequence = new JournalSequence(UUID.fromString("2a4f6c1e-0d3b-4e8a-9f71-5c2b8d0e6a13"));
+        JournalEntry entry = new JournalEntry();
+        for (int i = 0; i < 3; i++) {
+            entry.reset();
+            entry.add(MESSAGE, "message");
+            sequence.stamp(entry);
+        }
+
+        assertThat(entry.field(1)).isEqualTo("SEQNUM=3");
+        assertThat(entry.field(2)).isEqualTo("SEQNUM_ID=2a4f6c1e0d3b4e8a9f715c2b8d0e6a13");
+        assertThat(sequence.last()).isEqualTo(3);
+    }
+
+    @Test
+    public void testCheckerFindsGaps() {
+        JournalSequenceChecker checker = new JournalSequenceChecker();
+        for (long seqnum : new long[] {1, 2, 5, 3, 9, 5}) {
+            checker.add(fields("a", seqnum));
+        }
+        checker.add(fields("b", 2));
+        checker.add(new HashMap<>());
+
+        assertThat(checker.sequences()).isEqualTo(2);
+        assertThat(checker.entries()).isEqualTo(7);
+        assertThat(checker.duplicates()).isEqualTo(1);
+        assertThat(checker.unnumbered()).isEqualTo(1);
+        assertThat(checker.missing()).isEqualTo(5);
+        assertThat(checker.gaps()).containsExactly("a:4", "a:6-8", "b:1");
+    }
+
+    private static Map<String, String> fields(String id, long seqnum) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("SEQNUM_ID", id);
+        fields.put("SEQNUM", String.valueOf(seqnum));
+        return fields;
+    }
+}
@@ -0,0 +1,148 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.sun.jna.Native;
+import com.sun.jna.Platform;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for JournalSocketTransport, using datagram sockets standing for
+ * journald
+ */
+public class JournalSocketTransportTest {
+
+    private static final byte[] MESSAGE = "MESSAGE=".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PRIORITY = "PRIORITY=".getBytes(StandardCharsets.US_ASCII);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FakeJournald first;
+    private FakeJournald second;
+    private JournalSocketTransport transport;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(Platform.isLinux() && Native.POINTER_SIZE == 8);
+        first = new FakeJournald(new File(folder.getRoot(), "first.socket"));
+        second = new FakeJournald(new File(folder.getRoot(), "second.socket"));
+    }
+
+    @After
+    public void tearDown() {
+        if (transport != null) {
+            transport.stop();
+        }
+        if (first != null) {
+            first.close();
+            second.close();
+        }
+    }
+
+    @Test
+    public void testSocketPath() {
+        assertThat(JournalSocketTransport.socketPath("")).isEqualTo("/run/systemd/journal/socket");
+        assertThat(JournalSocketTransport.socketPath("heavy")).isEqualTo("/run/systemd/journal.heavy/socket");
+    }
+
+    @Test
+    public void testSendEntry() throws IOException {
+        transport = start(JournalSocketTransport.Sharding.ROUND_ROBIN, first);
+
+        JournalEntry entry = new JournalEntry();
+        entry.add(MESSAGE, "multi\nline message");
+        entry.add(PRIORITY, 6);
+        transport.send(entry);
+
+        assertThat(first.receive()).containsExactly(Arrays.asList("MESSAGE=multi\nline message", "PRIORITY=6"));
+    }
+
+    @Test
+    public void testRoundRobin() throws IOException {
+        transport = start(JournalSocketTransport.Sharding.ROUND_ROBIN, first, second);
+
+        for (int i = 0; i < 4; i++) {
+            transport.send(new JournalEntry().add(MESSAGE, "message " + i));
+        }
+
+        assertThat(first.receive())
+                .containsExactly(
+                        Collections.singletonList("MESSAGE=message 0"), Collections.singletonList("MESSAGE=message 2"));
+        assertThat(second.receive())
+                .containsExactly(
+                        Collections.singletonList("MESSAGE=message 1"), Collections.singletonList("MESSAGE=message 3"));
+    }
+
+    @Test
+    public void testRoutingKey() throws IOException {
+        transport = start(JournalSocketTransport.Sharding.ROUTING_KEY, first, second);
+
+        for (int i = 0; i < 4; i++) {
+            JournalEntry entry = new JournalEntry().add(MESSAGE, "message " + i);
+            entry.routingKey(-3);
+            transport.send(entry);
+        }
+
+        assertThat(first.receive()).isEmpty();
+        assertThat(second.receive()).hasSize(4);
+    }
+
+    @Test
+    public void testFailsOverToOtherDestination() throws IOException {
+        File missing = new File(folder.getRoot(), "missing.socket");
+        transport = new JournalSocketTransport(
+                Arrays.asList(missing.getPath(), first.socket.getPath()),
+                JournalSocketTransport.Sharding.ROUND_ROBIN,
+                null);
+        transport.start();
+
+        transport.send(new JournalEntry().add(MESSAGE, "message"));
+
+        assertThat(first.receive()).hasSize(1);
+    }
+
+    @Test
+    public void testFailsWhenNoDestinationIsReachable() throws IOException {
+        File missing = new File(folder.getRoot(), "missing.socket");
+        transport = new JournalSocketTransport(
+                Collections.singletonList(missing.getPath()), JournalSocketTransport.Sharding.ROUND_ROBIN, null);
+        transport.start();
+
+        assertThatThrownBy(() -> transport.send(new JournalEntry().add(MESSAGE, "message")))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void testLargeEntryIsPassedThroughMemfd() throws IOException {
+        transport = start(JournalSocketTransport.Sharding.ROUND_ROBIN, first);
+
+        char[] large = new char[12 << 20];
+        Arrays.fill(large, 'x');
+        transport.send(new JournalEntry().add(MESSAGE, new String(large)));
+
+        List<List<String>> entries = first.receive();
+        assertThat(entries).hasSize(1);
+        assertThat(entries.get(0).get(0)).hasSize("MESSAGE=".length() + large.length);
+    }
+
+    private JournalSocketTransport start(JournalSocketTransport.Sharding sharding, FakeJournald... journals)
+            throws IOException {
+        String[] paths = Arrays.stream(journals).map(j -> j.socket.getPath()).toArray(String[]::new);
+        JournalSocketTransport transport = new JournalSocketTransport(Arrays.asList(paths), sharding, null);
+        transport.start();
+        return transport;
+    }
+}
@@ -0,0 +1,162 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for JournalSpillFile
+ */
+public class JournalSpillFileTest {
+
+    private static final byte[] MESSAGE = "MESSAGE=".getBytes(StandardCharsets.US_ASCII);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private JournalSpillFile spill;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.getRoot(), "spill/journal.spill");
+        spill = JournalSpillFile.open(file, 4096);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        spill.close();
+    }
+
+    @Test
+    public void testEmptyFile() {
+        assertThat(spill.hasPending()).isFalse();
+        assertThat(spill.peek(new JournalEntry())).isFalse();
+    }
+
+    @Test
+    public void testReplayInOrder() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(spill.append(entry("message " + i))).isTrue();
+        }
+
+        JournalEntry entry = new JournalEntry();
+        for (int i = 0; i < 10; i++) {
+            assertThat(spill.peek(entry)).isTrue();
+            assertThat(entry.field(0)).isEqualTo("MESSAGE=message " + i);
+            spill.advance();
+        }
+        assertThat(spill.hasPending()).isFalse();
+    }
+
+    @Test
+    public void testPeekDoesNotConsume() {
+        spill.append(entry("first"));
+
+        JournalEntry entry = new JournalEntry();
+        spill.peek(entry);
+        spill.peek(entry);
+
+        assertThat(entry.field(0)).isEqualTo("MESSAGE=first");
+        assertThat(spill.hasPending()).isTrue();
+    }
+
+    @Test
+    public void testSizeCap() {
+        int appended = 0;
+        while (spill.append(entry("some message that takes room"))) {
+            appended++;
+        }
+
+        assertThat(appended).isGreaterThan(0);
+        assertThat(spill.pendingBytes()).isLessThanOrEqualTo(4096 - JournalSpillFile.HEADER_SIZE);
+
+        // space is reclaimed once everything was replayed
+        JournalEntry entry = new JournalEntry();
+        while (spill.peek(entry)) {
+            spill.advance();
+        }
+        assertThat(spill.append(entry("again"))).isTrue();
+    }
+
+    @Test
+    public void testPendingRecordsSurviveReopen() throws IOException {
+        spill.append(entry("first"));
+        spill.append(entry("second"));
+        spill.append(entry("third"));
+        spill.advance();
+        spill.close();
+
+        spill = JournalSpillFile.open(file, 4096);
+
+        JournalEntry entry = new JournalEntry();
+        assertThat(spill.peek(entry)).isTrue();
+        assertThat(entry.field(0)).isEqualTo("MESSAGE=second");
+        spill.advance();
+        assertThat(spill.peek(entry)).isTrue();
+        assertThat(entry.field(0)).isEqualTo("MESSAGE=third");
+        spill.advance();
+        assertThat(spill.hasPending()).isFalse();
+    }
+
+    @Test
+    public void testReplayedRecordsAreNotReplayedAfterReopen() throws IOException {
+        spill.append(entry("first"));
+        spill.append(entry("second"));
+        JournalEntry entry = new JournalEntry();
+        while (spill.peek(entry)) {
+            spill.advance();
+        }
+        spill.append(entry("third"));
+        spill.close();
+
+        spill = JournalSpillFile.open(file, 4096);
+
+        assertThat(spill.peek(entry)).isTrue();
+        assertThat(entry.field(0)).isEqualTo("MESSAGE=third");
+        spill.advance();
+        assertThat(spill.hasPending()).isFalse();
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws IOException {
+        spill.append(entry("first"));
+        spill.append(entry("second"));
+        spill.close();
+
+        // corrupt the last byte of the second record
+        int secondEnd = JournalSpillFile.HEADER_SIZE
+                + 2 * JournalSpillFile.RECORD_HEADER_SIZE
+                + 2 * (4 + "MESSAGE=".length())
+                + "first".length()
+                + "second".length();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(secondEnd - 1);
+            raf.write('X');
+        }
+
+        spill = JournalSpillFile.open(file, 4096);
+
+        JournalEntry entry = new JournalEntry();
+        assertThat(spill.peek(entry)).isTrue();
+        assertThat(entry.field(0)).isEqualTo("MESSAGE=first");
+        spill.advance();
+        assertThat(spill.hasPending()).isFalse();
+        // the torn record is overwritten by the next one
+        assertThat(spill.append(entry("third"))).isTrue();
+        assertThat(spill.peek(entry)).isTrue();
+        assertThat(entry.field(0)).isEqualTo("MESSAGE=third");
+    }
+
+    private static JournalEntry entry(String message) {
+        return new JournalEntry().add(MESSAGE, message);
+    }
+}
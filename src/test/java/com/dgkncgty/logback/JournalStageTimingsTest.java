@@ -0,0 +1,62 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Unit tests for JournalStageTimings
+ */
+public class JournalStageTimingsTest {
+
+    @Test
+    public void testBucketBounds() {
+        for (long nanos : new long[] {0, 1, 7, 8, 15, 16, 17, 100, 1_000, 123_456_789, Long.MAX_VALUE / 2}) {
+            long upperBound = JournalStageTimings.upperBound(JournalStageTimings.bucket(nanos));
+            assertThat(upperBound).isGreaterThanOrEqualTo(nanos);
+            assertThat((double) upperBound).isLessThanOrEqualTo(nanos * 1.125 + 1);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        JournalStageTimings timings = new JournalStageTimings();
+        for (int i = 1; i <= 1000; i++) {
+            timings.record(JournalStageTimings.Stage.SEND, i * 1000L);
+        }
+
+        JournalStageTiming send = timing(timings.snapshot(), "SEND");
+        assertThat(send.getCount()).isEqualTo(1000);
+        assertThat(send.getMeanNanos()).isEqualTo(500_500);
+        assertThat(send.getP50Nanos()).isBetween(500_000L, 562_500L);
+        assertThat(send.getP99Nanos()).isBetween(990_000L, 1_113_750L);
+        assertThat(send.getMaxNanos()).isEqualTo(1_000_000);
+        assertThat(timing(timings.snapshot(), "FORMAT").getCount()).isZero();
+
+        timings.reset();
+        assertThat(timing(timings.snapshot(), "SEND").getCount()).isZero();
+    }
+
+    @Test
+    public void testSampleRecordsLappedStagesOnly() {
+        JournalStageTimings timings = new JournalStageTimings();
+        JournalStageTimings.Sample sample = timings.start();
+        sample.lap(JournalStageTimings.Stage.FORMAT);
+        sample.lap(JournalStageTimings.Stage.FIELDS);
+        sample.lap(JournalStageTimings.Stage.FIELDS);
+        sample.finish();
+
+        List<JournalStageTiming> snapshot = timings.snapshot();
+        assertThat(timing(snapshot, "FORMAT").getCount()).isEqualTo(1);
+        assertThat(timing(snapshot, "FIELDS").getCount()).isEqualTo(1);
+        assertThat(timing(snapshot, "STACK_TRACE").getCount()).isZero();
+    }
+
+    private static JournalStageTiming timing(List<JournalStageTiming> timings, String stage) {
+        return timings.stream()
+                .filter(t -> t.getStage().equals(stage))
+                .findFirst()
+                .get();
+    }
+}
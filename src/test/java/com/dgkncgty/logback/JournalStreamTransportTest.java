@@ -0,0 +1,141 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for JournalStreamTransport, using a unix domain socket server
+ * standing for journald
+ */
+public class JournalStreamTransportTest {
+
+    private static final byte[] MESSAGE = "MESSAGE=".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PRIORITY = "PRIORITY=".getBytes(StandardCharsets.US_ASCII);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File socket;
+    private ServerSocketChannel server;
+    private JournalStreamTransport transport;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(Runtime.version().feature() >= 16);
+        socket = new File(folder.getRoot(), "stdout");
+        // unix domain sockets are not part of the Java 11 API this project is
+        // compiled against
+        ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+        server = (ServerSocketChannel) ServerSocketChannel.class
+                .getMethod("open", ProtocolFamily.class)
+                .invoke(null, unix);
+        SocketAddress address = (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress")
+                .getMethod("of", String.class)
+                .invoke(null, socket.getPath());
+        server.bind(address);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (transport != null) {
+            transport.stop();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testSocketPath() {
+        assertThat(JournalStreamTransport.socketPath("")).isEqualTo("/run/systemd/journal/stdout");
+        assertThat(JournalStreamTransport.socketPath("heavy")).isEqualTo("/run/systemd/journal.heavy/stdout");
+    }
+
+    @Test
+    public void testLinesAreBatched() throws IOException {
+        transport = new JournalStreamTransport(socket.getPath(), "my-app", 4096);
+        transport.start();
+
+        transport.send(entry("first message", 6));
+        SocketChannel client = server.accept();
+        transport.send(entry("second message", 7));
+        transport.send(entry("third\nmessage", 4));
+
+        // only the header was written so far
+        assertThat(read(client)).isEqualTo("my-app\n\n6\n1\n0\n0\n0\n");
+
+        transport.flush();
+        assertThat(read(client)).isEqualTo("<6>first message\n<7>second message\n<4>third\n<4>message\n");
+    }
+
+    @Test
+    public void testErrorsAreFlushedRightAway() throws IOException {
+        transport = new JournalStreamTransport(socket.getPath(), "my-app", 4096);
+        transport.start();
+
+        transport.send(entry("failure", 3));
+        SocketChannel client = server.accept();
+
+        assertThat(read(client)).isEqualTo("my-app\n\n6\n1\n0\n0\n0\n<3>failure\n");
+    }
+
+    @Test
+    public void testLineLargerThanBuffer() throws IOException {
+        transport = new JournalStreamTransport(socket.getPath(), "my-app", 64);
+        transport.start();
+
+        char[] large = new char[200];
+        Arrays.fill(large, 'x');
+        transport.send(entry("small", 6));
+        SocketChannel client = server.accept();
+        read(client);
+        transport.send(entry(new String(large), 6));
+
+        assertThat(read(client)).isEqualTo("<6>small\n<6>" + new String(large) + "\n");
+    }
+
+    @Test
+    public void testConnectionFailure() throws IOException {
+        transport = new JournalStreamTransport(new File(folder.getRoot(), "missing").getPath(), "my-app", 4096);
+        transport.start();
+
+        assertThatThrownBy(() -> transport.send(entry("message", 6))).isInstanceOf(IOException.class);
+    }
+
+    private static JournalEntry entry(String message, int priority) {
+        return new JournalEntry().add(MESSAGE, message).add(PRIORITY, priority);
+    }
+
+    /**
+     * Reads whatever is available on the connection.
+     */
+    private static String read(SocketChannel client) throws IOException {
+        client.configureBlocking(false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        int read;
+        while ((read = client.read(buffer)) > 0) {
+            out.write(buffer.array(), 0, read);
+            buffer.clear();
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,43 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.ZoneOffset;
+import org.junit.Test;
+
+/**
+ * Unit tests for JournalTimestampFields
+ */
+public class JournalTimestampFieldsTest {
+
+    private final JournalTimestampFields fields = new JournalTimestampFields(ZoneOffset.UTC);
+
+    @Test
+    public void testEncodesMicroseconds() {
+        // 2024-10-08T14:05:09.123456789Z
+        long millis = 1728396309123L;
+        JournalEntry entry = new JournalEntry();
+        fields.append(entry, millis, 123456789);
+
+        assertThat(entry.fieldCount()).isEqualTo(2);
+        assertThat(entry.field(0)).isEqualTo("EVENT_TIMESTAMP_USEC=1728396309123456");
+        assertThat(entry.field(1)).isEqualTo("SYSLOG_TIMESTAMP=Oct  8 14:05:09");
+    }
+
+    @Test
+    public void testReusesCachedMillisecond() {
+        long millis = 1728396309123L;
+        JournalEntry entry = new JournalEntry();
+        fields.append(entry, millis, 123004000);
+        fields.append(entry, millis, 123999000);
+        fields.append(entry, millis + 1, -1);
+        fields.append(entry, millis + 1000, 124000000);
+
+        assertThat(entry.field(0)).isEqualTo("EVENT_TIMESTAMP_USEC=1728396309123004");
+        assertThat(entry.field(2)).isEqualTo("EVENT_TIMESTAMP_USEC=1728396309123999");
+        assertThat(entry.field(4)).isEqualTo("EVENT_TIMESTAMP_USEC=1728396309124000");
+        assertThat(entry.field(5)).isEqualTo("SYSLOG_TIMESTAMP=Oct  8 14:05:09");
+        assertThat(entry.field(6)).isEqualTo("EVENT_TIMESTAMP_USEC=1728396310123000");
+        assertThat(entry.field(7)).isEqualTo("SYSLOG_TIMESTAMP=Oct  8 14:05:10");
+    }
+}
@@ -0,0 +1,67 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.qos.logback.classic.Level;
+import org.junit.Test;
+
+/**
+ * Unit tests for JournalTraceSampler
+ */
+public class JournalTraceSamplerTest {
+
+    private final JournalTraceSampler sampler = new JournalTraceSampler(100, 10, 2);
+
+    @Test
+    public void testRates() {
+        assertThat(sampler.rate(Level.TRACE)).isEqualTo(100);
+        assertThat(sampler.rate(Level.DEBUG)).isEqualTo(10);
+        assertThat(sampler.rate(Level.INFO)).isEqualTo(2);
+        assertThat(sampler.rate(Level.WARN)).isEqualTo(1);
+        assertThat(sampler.rate(Level.ERROR)).isEqualTo(1);
+        assertThat(new JournalTraceSampler(1, 0, 1).isEnabled()).isFalse();
+    }
+
+    @Test
+    public void testDecisionIsStablePerTrace() {
+        for (int i = 0; i < 100; i++) {
+            String traceId = "trace-" + i;
+            boolean kept = sampler.keep(traceId, 10);
+            for (int j = 0; j < 10; j++) {
+                assertThat(sampler.keep(traceId, 10)).isEqualTo(kept);
+            }
+        }
+    }
+
+    @Test
+    public void testKeptTracesAreKeptAtHigherRates() {
+        for (int i = 0; i < 10_000; i++) {
+            String traceId = "trace-" + i;
+            if (sampler.keep(traceId, 100)) {
+                assertThat(sampler.keep(traceId, 10)).isTrue();
+            }
+            if (sampler.keep(traceId, 10)) {
+                assertThat(sampler.keep(traceId, 2)).isTrue();
+            }
+        }
+    }
+
+    @Test
+    public void testKeepsAboutOneOutOfRate() {
+        int kept = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (sampler.keep("4bf92f3577b34da6a3ce929d0e0e" + i, 10)) {
+                kept++;
+            }
+        }
+        assertThat(kept).isBetween(9_000, 11_000);
+
+        int keptWithoutTrace = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (sampler.keep(null, 10)) {
+                keptWithoutTrace++;
+            }
+        }
+        assertThat(keptWithoutTrace).isBetween(9_000, 11_000);
+    }
+}
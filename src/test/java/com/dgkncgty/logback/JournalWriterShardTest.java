@@ -0,0 +1,188 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.spi.ContextAwareBase;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for JournalWriterShard
+ */
+public class JournalWriterShardTest {
+
+    private static final byte[] MESSAGE = "MESSAGE=".getBytes();
+
+    private ContextAwareBase owner;
+
+    @Before
+    public void setUp() {
+        owner = new ContextAwareBase();
+        owner.setContext(new LoggerContext());
+    }
+
+    @Test
+    public void testDeliversInOrderAndDrainsOnStop() throws Exception {
+        RecordingJournalTransport transport = new RecordingJournalTransport();
+        JournalWriterShard shard = newShard(transport, (s, item) -> send(s, item.entry), 1024 * 1024);
+        shard.start();
+
+        for (int i = 0; i < 500; i++) {
+            JournalWriterShard.Item item = shard.acquire();
+            item.entry.add(MESSAGE, "message " + i);
+            shard.enqueue(item);
+        }
+
+        assertThat(shard.stop(5000)).isTrue();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            expected.add("message " + i);
+        }
+        assertThat(transport.messages()).isEqualTo(expected);
+        assertThat(shard.size()).isZero();
+    }
+
+    @Test
+    public void testAcquireFailsWhenCapacityIsUsed() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingJournalTransport transport = new RecordingJournalTransport();
+        JournalWriterShard shard = newShard(
+                transport,
+                (s, item) -> {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    send(s, item.entry);
+                },
+                2 * new JournalEntry().array().length);
+        shard.start();
+
+        JournalWriterShard.Item first = shard.acquire();
+        JournalWriterShard.Item second = shard.acquire();
+        assertThat(shard.acquire()).isNull();
+
+        // released items free their slot
+        shard.release(second);
+        JournalWriterShard.Item third = shard.acquire();
+        assertThat(third).isNotNull();
+
+        first.entry.add(MESSAGE, "first");
+        shard.enqueue(first);
+        third.entry.add(MESSAGE, "third");
+        shard.enqueue(third);
+        release.countDown();
+
+        assertThat(shard.stop(5000)).isTrue();
+        assertThat(transport.messages()).containsExactly("first", "third");
+    }
+
+    @Test
+    public void testCapacityCountsEntrySize() {
+        JournalWriterShard shard = newShard(new RecordingJournalTransport(), (s, item) -> {}, 4096);
+
+        JournalWriterShard.Item large = shard.acquire();
+        char[] stackTrace = new char[10_000];
+        Arrays.fill(stackTrace, 'x');
+        large.entry.add(MESSAGE, new String(stackTrace));
+        shard.enqueue(large);
+
+        assertThat(shard.bytes()).isGreaterThanOrEqualTo(10_000);
+        assertThat(shard.acquire()).isNull();
+    }
+
+    @Test
+    public void testItemsAreDroppedWhenOverCapacity() {
+        JournalWriterShard shard = newShard(new RecordingJournalTransport(), (s, item) -> {}, 4096);
+
+        JournalWriterShard.Item large = shard.acquire();
+        large.entry.add(MESSAGE, new String(new char[10_000]));
+        shard.release(large);
+
+        // the large buffer is not kept for reuse
+        assertThat(shard.bytes()).isZero();
+        assertThat(shard.acquire()).isNotNull();
+    }
+
+    @Test
+    public void testCapacityCountsDeferredEvents() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        JournalWriterShard shard = newShard(
+                new RecordingJournalTransport(),
+                (s, item) -> {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                },
+                64 * 1024);
+        shard.start();
+
+        LoggerContext context = new LoggerContext();
+        char[] message = new char[20_000];
+        Arrays.fill(message, 'x');
+        LoggingEvent event = new LoggingEvent(
+                JournalWriterShardTest.class.getName(),
+                context.getLogger("large"),
+                Level.INFO,
+                new String(message),
+                null,
+                null);
+        event.setMDCPropertyMap(new HashMap<>());
+
+        // the entries stay empty, only the events weigh
+        int queued = 0;
+        JournalWriterShard.Item item;
+        while ((item = shard.acquire()) != null) {
+            JournalDeferredEvent deferred = new JournalDeferredEvent(event, false);
+            item.event = deferred;
+            item.eventBytes = deferred.retainedSize();
+            item.deferred = true;
+            shard.enqueue(item);
+            queued++;
+            assertThat(queued).isLessThan(10);
+        }
+        assertThat(queued).isEqualTo(4);
+        assertThat(shard.bytes()).isGreaterThan(64 * 1024).isLessThan(64 * 1024 + 21_000);
+
+        release.countDown();
+        assertThat(shard.stop(5000)).isTrue();
+        // only the entry buffers kept for reuse are left
+        assertThat(shard.bytes()).isLessThanOrEqualTo(4L * new JournalEntry().array().length);
+        assertThat(shard.acquire()).isNotNull();
+    }
+
+    @Test
+    public void testPlatformThreadIsNotVirtual() {
+        assertThat(JournalWriterShard.isVirtual(Thread.currentThread())).isFalse();
+    }
+
+    private JournalWriterShard newShard(
+            JournalTransport transport, JournalWriterShard.Delivery delivery, long capacityBytes) {
+        return new JournalWriterShard(
+                "test-writer",
+                transport,
+                new JournalCircuitBreaker(owner, 5, 1000, 1000, 1000),
+                delivery,
+                capacityBytes);
+    }
+
+    private static void send(JournalWriterShard shard, JournalEntry entry) {
+        try {
+            shard.transport.send(entry);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.sun.management.ThreadMXBean;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for JournalWriter and JournalEntryBuilder
+ */
+public class JournalWriterTest {
+
+    private static final int BATCH_SIZE = 8;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWritesFields() throws Exception {
+        RecordingJournalTransport transport = new RecordingJournalTransport();
+        JournalWriter writer = new JournalWriter(transport);
+        JournalEntryBuilder entry = writer.newEntry();
+
+        entry.message("Quote received")
+                .priority(6)
+                .field("SYMBOL", "ACME")
+                .field("PRICE", -1234)
+                .send();
+        entry.message("second").field("SYMBOL", (CharSequence) null).send();
+
+        assertThat(transport.entries().get(0))
+                .containsExactly("MESSAGE=Quote received", "PRIORITY=6", "SYMBOL=ACME", "PRICE=-1234");
+        assertThat(transport.entries().get(1)).containsExactly("MESSAGE=second", "SYMBOL=(null)");
+    }
+
+    @Test
+    public void testRejectsInvalidFieldNames() throws Exception {
+        JournalEntryBuilder entry = new JournalWriter(new RecordingJournalTransport()).newEntry();
+
+        assertThatThrownBy(() -> entry.field("price", 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> entry.field("_PRICE", 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> entry.field(null, "value")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testFailedEntriesAreCleared() throws Exception {
+        RecordingJournalTransport transport = new RecordingJournalTransport();
+        JournalWriter writer = new JournalWriter(transport);
+        JournalEntryBuilder entry = writer.newEntry();
+
+        transport.failing = true;
+        assertThatThrownBy(() -> entry.message("lost").send()).isInstanceOf(IOException.class);
+        transport.failing = false;
+        entry.message("sent").send();
+        writer.close();
+
+        assertThat(transport.entries()).containsExactly(Collections.singletonList("MESSAGE=sent"));
+        assertThatThrownBy(() -> entry.message("closed").send()).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void testSendingEntriesDoesNotAllocate() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean);
+        ThreadMXBean allocations = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported());
+
+        try (FakeJournald journald = new FakeJournald(new File(folder.getRoot(), "journal.socket"))) {
+            JournalWriter writer = new JournalWriter(new JournalSocketTransport(
+                    Collections.singletonList(journald.socket.getPath()),
+                    JournalSocketTransport.Sharding.ROUND_ROBIN,
+                    null));
+            JournalEntryBuilder entry = writer.newEntry();
+            StringBuilder symbol = new StringBuilder("ACME");
+            long threadId = Thread.currentThread().getId();
+
+            long allocated = 0;
+            for (int batch = 0; batch < 600; batch++) {
+                long before = allocations.getThreadAllocatedBytes(threadId);
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    entry.message("Quote received")
+                            .field("SYMBOL", symbol)
+                            .field("PRICE", i)
+                            .send();
+                }
+                long after = allocations.getThreadAllocatedBytes(threadId);
+                // the first batches warm up the buffers and the JIT
+                if (batch >= 100) {
+                    allocated += after - before;
+                }
+                // read outside of the measure, the socket queue is limited
+                assertThat(journald.receive()).hasSize(BATCH_SIZE);
+            }
+            writer.close();
+
+            // calls through a JNA proxy would take about 100 bytes per entry
+            assertThat(allocated).isLessThan(1000);
+        }
+    }
+}
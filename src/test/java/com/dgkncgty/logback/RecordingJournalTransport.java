@@ -0,0 +1,58 @@
+package com.dgkncgty.logback;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transport recording the entries it receives, used to check what would be
+ * sent to the journal.
+ */
+class RecordingJournalTransport implements JournalTransport {
+
+    final List<List<String>> entries = new ArrayList<>();
+
+    volatile boolean failing = false;
+
+    int failures = 0;
+
+    @Override
+    public synchronized void send(JournalEntry entry) throws IOException {
+        if (failing) {
+            failures++;
+            throw new IOException("journal is down");
+        }
+        List<String> fields = new ArrayList<>();
+        for (int i = 0; i < entry.fieldCount(); i++) {
+            fields.add(entry.field(i));
+        }
+        entries.add(fields);
+    }
+
+    synchronized List<List<String>> entries() {
+        return new ArrayList<>(entries);
+    }
+
+    /**
+     * The fields of a received entry, by name. Repeated fields keep the last
+     * value.
+     */
+    synchronized Map<String, String> fields(int index) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (String field : entries.get(index)) {
+            int eq = field.indexOf('=');
+            fields.put(field.substring(0, eq), field.substring(eq + 1));
+        }
+        return fields;
+    }
+
+    synchronized List<String> messages() {
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            messages.add(fields(i).get("MESSAGE"));
+        }
+        return messages;
+    }
+}
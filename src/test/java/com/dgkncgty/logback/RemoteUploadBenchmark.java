@@ -0,0 +1,75 @@
+package com.dgkncgty.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.util.Duration;
+import java.util.HashMap;
+
+/**
+ * Measures the throughput of the {@code remote} transport uploading to a
+ * local stand-in for systemd-journal-remote, with 1 to 4 writer threads, with
+ * and without compression.
+ *
+ * <p>Run it with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.dgkncgty.logback.RemoteUploadBenchmark}, optionally
+ * passing the number of events as argument.
+ */
+public class RemoteUploadBenchmark {
+
+    private static final int[] WRITER_THREADS = {1, 2, 4};
+
+    public static void main(String[] args) throws Exception {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        System.out.printf("%8s %20s %20s%n", "writers", "none (events/s)", "gzip (events/s)");
+        for (int writerThreads : WRITER_THREADS) {
+            double none = run(events, writerThreads, "none");
+            double gzip = run(events, writerThreads, "gzip");
+            System.out.printf("%8d %20.0f %20.0f%n", writerThreads, none, gzip);
+        }
+    }
+
+    private static double run(int events, int writerThreads, String compression) throws Exception {
+        try (FakeJournalRemote remote = new FakeJournalRemote()) {
+            LoggerContext context = new LoggerContext();
+            Logger logger = context.getLogger(RemoteUploadBenchmark.class);
+
+            SystemdJournalAppender appender = new SystemdJournalAppender();
+            appender.setContext(context);
+            appender.setTransport("remote");
+            appender.setRemoteUrl(remote.url());
+            appender.setRemoteCompression(compression);
+            appender.setWriterThreads(writerThreads);
+            appender.setMaxFlushTime(Duration.buildByMinutes(1));
+            appender.start();
+
+            // one producer per writer thread, events being spread by thread
+            Thread[] producers = new Thread[writerThreads];
+            long start = System.nanoTime();
+            for (int t = 0; t < producers.length; t++) {
+                producers[t] = new Thread(() -> {
+                    LoggingEvent event = new LoggingEvent(
+                            RemoteUploadBenchmark.class.getName(),
+                            logger,
+                            Level.INFO,
+                            "benchmark message {}",
+                            null,
+                            null);
+                    event.setMDCPropertyMap(new HashMap<>());
+                    for (int i = 0; i < events / producers.length; i++) {
+                        appender.doAppend(event);
+                    }
+                });
+                producers[t].start();
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            appender.stop();
+            long elapsed = System.nanoTime() - start;
+            return remote.entries().size() * 1e9 / elapsed;
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.dgkncgty.logback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.joran.JoranConfigurator;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.status.Status;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+import org.slf4j.event.KeyValuePair;
+
+/**
+ * Tests checking the fields of the entries sent to the journal
+ */
+public class SystemdJournalAppenderFieldsTest {
+
+    private LoggerContext loggerContext;
+    private Logger logger;
+    private RecordingJournalTransport transport;
+    private SystemdJournalAppender appender;
+
+    @Before
+    public void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        logger = loggerContext.getLogger(SystemdJournalAppenderFieldsTest.class);
+
+        transport = new RecordingJournalTransport();
+        appender = new SystemdJournalAppender();
+        appender.setContext(loggerContext);
+        appender.transport = transport;
+    }
+
+    @After
+    public void tearDown() {
+        if (appender != null && appender.isStarted()) {
+            appender.stop();
+        }
+    }
+
+    @Test
+    public void testDefaultFields() {
+        appender.start();
+
+        appender.append(createLoggingEvent(Level.WARN, "some message", null));
+
+        Map<String, String> fields = transport.fields(0);
+        assertThat(fields).containsEntry("MESSAGE", "some message");
+        assertThat(fields).containsEntry("PRIORITY", "4");
+        assertThat(fields).containsEntry("THREAD_NAME", Thread.currentThread().getName());
+        assertThat(fields).doesNotContainKey("LOGGER_NAME");
+    }
+
+    @Test
+    public void testEventTimestamp() {
+        appender.start();
+
+        LoggingEvent event = createLoggingEvent(Level.INFO, "message", null);
+        event.setInstant(Instant.ofEpochSecond(1728396309L, 123456789));
+        appender.append(event);
+        appender.setLogEventTimestamp(false);
+        appender.append(event);
+
+        assertThat(transport.fields(0)).containsEntry("EVENT_TIMESTAMP_USEC", "1728396309123456");
+        assertThat(transport.fields(0)).containsKey("SYSLOG_TIMESTAMP");
+        assertThat(transport.fields(1)).doesNotContainKeys("EVENT_TIMESTAMP_USEC", "SYSLOG_TIMESTAMP");
+    }
+
+    @Test
+    public void testMdcFields() {
+        appender.setLogMdc(true);
+        appender.setMdcKeyPrefix("my-");
+        appender.start();
+
+        Map<String, String> mdc = new HashMap<>();
+        mdc.put("request.id", "1234");
+        mdc.put(SystemdJournal.MESSAGE_ID, "abcd");
+        appender.append(createLoggingEvent(Level.INFO, "message", mdc));
+        appender.append(createLoggingEvent(Level.INFO, "message", mdc));
+
+        for (int i = 0; i < 2; i++) {
+            Map<String, String> fields = transport.fields(i);
+            assertThat(fields).containsEntry("MY_REQUEST_ID", "1234");
+            assertThat(fields).containsEntry("MESSAGE_ID", "abcd");
+            assertThat(fields).doesNotContainKey("MY_MESSAGE_ID");
+        }
+    }
+
+    @Test
+    public void testMdcIncludesAndExcludes() {
+        appender.setLogMdc(true);
+        appender.setMdcIncludes("request_id,user.*");
+        appender.setMdcExcludes("user.token");
+        appender.start();
+
+        Map<String, String> mdc = new HashMap<>();
+        mdc.put("request_id", "1234");
+        mdc.put("user.id", "42");
+        mdc.put("user.token", "secret");
+        mdc.put("payload", "large");
+        mdc.put(SystemdJournal.MESSAGE_ID, "abcd");
+        appender.append(createLoggingEvent(Level.INFO, "message", mdc));
+        appender.append(createLoggingEvent(Level.INFO, "message", mdc));
+
+        for (int i = 0; i < 2; i++) {
+            Map<String, String> fields = transport.fields(i);
+            assertThat(fields).containsEntry("REQUEST_ID", "1234");
+            assertThat(fields).containsEntry("USER_ID", "42");
+            assertThat(fields).containsEntry("MESSAGE_ID", "abcd");
+            assertThat(fields).doesNotContainKeys("USER_TOKEN", "PAYLOAD");
+        }
+    }
+
+    @Test
+    public void testInvalidMdcPatternPreventsStart() {
+        appender.setLogMdc(true);
+        appender.setMdcIncludes("user*.id");
+        appender.start();
+
+        assertThat(appender.isStarted()).isFalse();
+    }
+
+    @Test
+    public void testFlightRecorderSendsDebugEventsOnError() {
+        appender.setFlightRecorderKey("trace_id");
+        appender.start();
+
+        Map<String, String> failing = new HashMap<>();
+        failing.put("trace_id", "failing");
+        Map<String, String> succeeding = new HashMap<>();
+        succeeding.put("trace_id", "succeeding");
+
+        appender.append(createLoggingEvent(Level.DEBUG, "failing debug", failing));
+        appender.append(createLoggingEvent(Level.DEBUG, "succeeding debug", succeeding));
+        appender.append(createLoggingEvent(Level.TRACE, "failing trace", failing));
+        appender.append(createLoggingEvent(Level.INFO, "failing info", failing));
+        appender.append(createLoggingEvent(Level.DEBUG, "untraced debug", null));
+        assertThat(transport.messages()).containsExactly("failing info", "untraced debug");
+
+        appender.append(createLoggingEvent(Level.ERROR, "failing error", failing));
+        appender.append(createLoggingEvent(Level.ERROR, "failing error again", failing));
+
+        assertThat(transport.messages())
+                .containsExactly(
+                        "failing info",
+                        "untraced debug",
+                        "failing debug",
+                        "failing trace",
+                        "failing error",
+                        "failing error again");
+    }
+
+    @Test
+    public void testFlightRecorderKeepsSourceLocation() {
+        appender.setFlightRecorderKey("trace_id");
+        appender.setLogSourceLocation(true);
+        appender.start();
+        logger.setLevel(Level.DEBUG);
+        logger.addAppender(appender);
+
+        loggerContext.getMDCAdapter().put("trace_id", "failing");
+        int line = new Throwable().getStackTrace()[0].getLineNumber() + 1;
+        logger.debug("failing debug");
+        logger.error("failing error");
+        loggerContext.getMDCAdapter().clear();
+
+        assertThat(transport.messages()).containsExactly("failing debug", "failing error");
+        assertThat(transport.fields(0)).containsEntry("CODE_LINE", String.valueOf(line));
+        assertThat(transport.fields(1)).containsEntry("CODE_LINE", String.valueOf(line + 1));
+    }
+
+    @Test
+    public void testTraceSampling() {
+        appender.setSamplingKey("trace_id");
+        appender.setDebugSampleRate(4);
+        appender.start();
+
+        JournalTraceSampler sampler = new JournalTraceSampler(1, 4, 1);
+        int expected = 0;
+        for (int i = 0; i < 200; i++) {
+            Map<String, String> mdc = new HashMap<>();
+            mdc.put("trace_id", "trace-" + i);
+            appender.append(createLoggingEvent(Level.DEBUG, "debug " + i, mdc));
+            appender.append(createLoggingEvent(Level.INFO, "info " + i, mdc));
+            appender.append(createLoggingEvent(Level.WARN, "warn " + i, mdc));
+            expected += sampler.keep("trace-" + i, 4) ? 3 : 2;
+        }
+
+        assertThat(transport.entries()).hasSize(expected);
+        assertThat(expected).isLessThan(200 * 3);
+        for (int i = 0; i < expected; i++) {
+            Map<String, String> fields = transport.fields(i);
+            if (fields.get("MESSAGE").startsWith("debug")) {
+                assertThat(fields).containsEntry("SAMPLE_RATE", "4");
+            } else {
+                assertThat(fields).doesNotContainKey("SAMPLE_RATE");
+            }
+        }
+    }
+
+    @Test
+    public void testFlightRecorderKeepsUnsampledTraces() {
+        appender.setSamplingKey("trace_id");
+        appender.setDebugSampleRate(1000);
+        appender.setInfoSampleRate(1000);
+        appender.setFlightRecorderKey("trace_id");
+        appender.start();
+
+        JournalTraceSampler sampler = new JournalTraceSampler(1, 1000, 1000);
+        String dropped = "trace-0";
+        for (int i = 1; sampler.keep(dropped, 1000); i++) {
+            dropped = "trace-" + i;
+        }
+        Map<String, String> failing = new HashMap<>();
+        failing.put("trace_id", dropped);
+        Map<String, String> succeeding = new HashMap<>();
+        succeeding.put("trace_id", dropped + "-ok");
+
+        appender.append(createLoggingEvent(Level.DEBUG, "failing debug", failing));
+        appender.append(createLoggingEvent(Level.INFO, "failing info", failing));
+        appender.append(createLoggingEvent(Level.DEBUG, "succeeding debug", succeeding));
+        appender.append(createLoggingEvent(Level.ERROR, "failing error", failing));
+
+        // the info event is not recorded, and was sampled out
+        assertThat(transport.messages()).containsExactly("failing debug", "failing error");
+        assertThat(transport.fields(0)).doesNotContainKey("SAMPLE_RATE");
+    }
+
+    @Test
+    public void testKeyValuePairs() {
+        appender.setLogKeyValuePairs(true);
+        appender.start();
+
+        LoggingEvent event = createLoggingEvent(Level.INFO, "order placed", null);
+        event.addKeyValuePair(new KeyValuePair("order_id", 42L));
+        event.addKeyValuePair(new KeyValuePair("quantity", 3));
+        event.addKeyValuePair(new KeyValuePair("express", true));
+        event.addKeyValuePair(new KeyValuePair("customer.name", "Zoë"));
+        event.addKeyValuePair(new KeyValuePair("price", 9.5d));
+        event.addKeyValuePair(new KeyValuePair("currency", '€'));
+        event.addKeyValuePair(new KeyValuePair("coupon", null));
+        appender.append(event);
+
+        Map<String, String> fields = transport.fields(0);
+        assertThat(fields).containsEntry("ORDER_ID", "42");
+        assertThat(fields).containsEntry("QUANTITY", "3");
+        assertThat(fields).containsEntry("EXPRESS", "true");
+        assertThat(fields).containsEntry("CUSTOMER_NAME", "Zoë");
+        assertThat(fields).containsEntry("PRICE", "9.5");
+        assertThat(fields).containsEntry("CURRENCY", "€");
+        assertThat(fields).containsEntry("COUPON", "(null)");
+    }
+
+    @Test
+    public void testKeyValuePairsWithPrefix() {
+        appender.setLogKeyValuePairs(true);
+        appender.setKeyValueKeyPrefix("kv_");
+        appender.start();
+
+        LoggingEvent event = createLoggingEvent(Level.INFO, "message", null);
+        event.addKeyValuePair(new KeyValuePair("id", -7));
+        appender.append(event);
+
+        assertThat(transport.fields(0)).containsEntry("KV_ID", "-7");
+    }
+
+    @Test
+    public void testKeyValuePairsDisabledByDefault() {
+        appender.start();
+
+        LoggingEvent event = createLoggingEvent(Level.INFO, "message", null);
+        event.addKeyValuePair(new KeyValuePair("id", 1));
+        appender.append(event);
+
+        assertThat(transport.fields(0)).doesNotContainKey("ID");
+    }
+
+    @Test
+    public void testMarkers() {
+        appender.setLogMarkers(true);
+        appender.start();
+
+        LoggingEvent event = createLoggingEvent(Level.INFO, "message", null);
+        event.addMarker(MarkerFactory.getMarker("AUDIT"));
+        event.addMarker(MarkerFactory.getMarker("SECURITY"));
+        appender.append(event);
+        appender.append(createLoggingEvent(Level.INFO, "message", null));
+
+        assertThat(transport.fields(0)).containsEntry("MARKERS", "AUDIT,SECURITY");
+        assertThat(transport.fields(1)).doesNotContainKey("MARKERS");
+    }
+
+    @Test
+    public void testMarkerFieldMappings() {
+        appender.addMarkerField("AUDIT");
+        appender.addMarkerField("security: category=sec ops");
+        appender.start();
+
+        Marker security = MarkerFactory.getDetachedMarker("security");
+        Marker login = MarkerFactory.getDetachedMarker("login");
+        login.add(security);
+
+        LoggingEvent event = createLoggingEvent(Level.INFO, "message", null);
+        event.addMarker(MarkerFactory.getMarker("AUDIT"));
+        event.addMarker(login);
+        appender.append(event);
+
+        Map<String, String> fields = transport.fields(0);
+        assertThat(fields).containsEntry("AUDIT", "1");
+        assertThat(fields).containsEntry("CATEGORY", "sec ops");
+        assertThat(fields).doesNotContainKey("MARKERS");
+    }
+
+    @Test
+    public void testInvalidMarkerFieldPreventsStart() {
+        appender.addMarkerField("AUDIT:no-value");
+        appender.start();
+
+        assertThat(appender.isStarted()).isFalse();
+    }
+
+    @Test
+    public void testMarkerFieldNamesAreValidated() {
+        for (String definition : new String[] {"audit:_AUDIT=1", "x:1FIELD=1", "_AUDIT"}) {
+            SystemdJournalAppender invalid = new SystemdJournalAppender();
+            invalid.setContext(loggerContext);
+            invalid.transport = transport;
+            invalid.addMarkerField(definition);
+            invalid.start();
+
+            assertThat(invalid.isStarted()).as(definition).isFalse();
+        }
+        assertThat(loggerContext.getStatusManager().getCopyOfStatusList())
+                .filteredOn(status -> status.getLevel() == Status.ERROR)
+                .extracting(Status::getMessage)
+                .anyMatch(message -> message.contains("Invalid field name [_AUDIT]"))
+                .anyMatch(message -> message.contains("Invalid field name [1FIELD]"));
+    }
+
+    @Test
+    public void testStaticFields() {
+        appender.addField(new JournalField("SERVICE_VERSION", "1.2.3"));
+        appender.addField(new JournalField("REGION", "eu-west-1"));
+        appender.start();
+
+        appender.append(createLoggingEvent(Level.INFO, "first", null));
+        appender.append(createLoggingEvent(Level.INFO, "second", null));
+
+        for (int i = 0; i < 2; i++) {
+            Map<String, String> fields = transport.fields(i);
+            assertThat(fields).containsEntry("SERVICE_VERSION", "1.2.3");
+            assertThat(fields).containsEntry("REGION", "eu-west-1");
+        }
+    }
+
+    @Test
+    public void testStaticFieldsFromConfiguration() throws Exception {
+        JoranConfigurator configurator = new JoranConfigurator();
+        configurator.setContext(loggerContext);
+        String configuration = "<configuration>"
+                + "<appender name='JOURNAL' class='com.dgkncgty.logback.SystemdJournalAppender'>"
+                + "<field><name>DEPLOYMENT</name><value>canary</value></field>"
+                + "</appender>"
+                + "<root><appender-ref ref='JOURNAL'/></root>"
+                + "</configuration>";
+        configurator.doConfigure(new ByteArrayInputStream(configuration.getBytes(StandardCharsets.UTF_8)));
+
+        SystemdJournalAppender configured = (SystemdJournalAppender)
+                loggerContext.getLogger(Logger.ROOT_LOGGER_NAME).getAppender("JOURNAL");
+        assertThat(configured.getFields()).singleElement().satisfies(field -> {
+            assertThat(field.getName()).isEqualTo("DEPLOYMENT");
+            assertThat(field.getValue()).isEqualTo("canary");
+        });
+        configured.stop();
+    }
+
+    @Test
+    public void testInvalidStaticFieldPreventsStart() {
+        appender.addField(new JournalField("_PID", "1"));
+        appender.start();
+
+        assertThat(appender.isStarted()).isFalse();
+        assertThat(JournalFieldNames.isValidName("service_version")).isFalse();
+        assertThat(JournalFieldNames.isValidName("1ST")).isFalse();
+        assertThat(JournalFieldNames.isValidName("SERVICE_VERSION_2")).isTrue();
+    }
+
+    private LoggingEvent createLoggingEvent(Level level, String message, Map<String, String> mdc) {
+        LoggingEvent event = new LoggingEvent("com.example.TestClass", logger, level, message, null, null);
+        if (mdc != null) {
+            event.setMDCPropertyMap(mdc);
+        }
+        return event;
+    }
+}
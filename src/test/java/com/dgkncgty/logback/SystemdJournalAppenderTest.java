@@ -1,14 +1,43 @@
 package com.dgkncgty.logback;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.LayoutBase;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
+import ch.qos.logback.core.read.ListAppender;
+import ch.qos.logback.core.status.Status;
+import ch.qos.logback.core.util.Duration;
+import ch.qos.logback.core.util.FileSize;
+import com.sun.jna.Pointer;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * Unit tests for SystemdJournalAppender
@@ -18,6 +47,9 @@ import org.junit.Test;
  */
 public class SystemdJournalAppenderTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private LoggerContext loggerContext;
     private Logger logger;
     private SystemdJournalAppender appender;
@@ -367,6 +399,612 @@ public class SystemdJournalAppenderTest {
         newAppender.stop();
     }
 
+    @Test
+    public void testCircuitBreakerShortCircuitsToFallback() {
+        FailingJournal journal = new FailingJournal();
+        ListAppender<ILoggingEvent> fallback = new ListAppender<>();
+        fallback.start();
+
+        SystemdJournalAppender guarded = new SystemdJournalAppender();
+        guarded.setContext(loggerContext);
+        guarded.setCircuitBreakerThreshold(2);
+        guarded.journald = journal;
+        guarded.addAppender(fallback);
+        guarded.start();
+
+        for (int i = 0; i < 10; i++) {
+            guarded.append(createLoggingEvent(Level.INFO, "message " + i, null, new HashMap<>()));
+        }
+
+        // only the events before the breaker opened reached the native call
+        assertThat(journal.calls).isEqualTo(2);
+        assertThat(fallback.list).hasSize(10);
+
+        guarded.stop();
+        assertThat(fallback.isStarted()).isFalse();
+    }
+
+    @Test
+    public void testSpilledEventsAreReplayedInOrder() throws Exception {
+        RecordingJournalTransport transport = new RecordingJournalTransport();
+        transport.failing = true;
+        ListAppender<ILoggingEvent> fallback = new ListAppender<>();
+        fallback.start();
+
+        SystemdJournalAppender spilling = new SystemdJournalAppender();
+        spilling.setContext(loggerContext);
+        spilling.setCircuitBreakerThreshold(1);
+        spilling.setCircuitBreakerInitialBackoff(Duration.buildByMilliseconds(1));
+        spilling.setSpillFile(folder.newFile("journal.spill").getPath());
+        spilling.setSpillReplayInterval(Duration.buildByDays(1));
+        spilling.transport = transport;
+        spilling.addAppender(fallback);
+        spilling.start();
+
+        for (int i = 0; i < 5; i++) {
+            spilling.append(createLoggingEvent(Level.INFO, "message " + i, null, new HashMap<>()));
+        }
+        assertThat(transport.entries()).isEmpty();
+        assertThat(fallback.list).isEmpty();
+
+        transport.failing = false;
+        Thread.sleep(5);
+        spilling.append(createLoggingEvent(Level.INFO, "message 5", null, new HashMap<>()));
+
+        assertThat(transport.messages())
+                .containsExactly("message 0", "message 1", "message 2", "message 3", "message 4", "message 5");
+
+        spilling.stop();
+    }
+
+    @Test
+    public void testSpilledEventsAreReplayedInBackground() throws Exception {
+        RecordingJournalTransport transport = new RecordingJournalTransport();
+        transport.failing = true;
+
+        SystemdJournalAppender spilling = new SystemdJournalAppender();
+        spilling.setContext(loggerContext);
+        spilling.setCircuitBreakerThreshold(1);
+        spilling.setCircuitBreakerInitialBackoff(Duration.buildByMilliseconds(1));
+        spilling.setSpillFile(folder.newFile("journal.spill").getPath());
+        spilling.setSpillReplayInterval(Duration.buildByMilliseconds(10));
+        spilling.transport = transport;
+        spilling.start();
+
+        for (int i = 0; i < 3; i++) {
+            spilling.append(createLoggingEvent(Level.INFO, "message " + i, null, new HashMap<>()));
+        }
+        transport.failing = false;
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (transport.entries().size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(transport.messages()).containsExactly("message 0", "message 1", "message 2");
+
+        spilling.stop();
+    }
+
+    @Test
+    public void testInvalidTransportOpensNoSpillFile() {
+        File spillFile = new File(folder.getRoot(), "journal.spill");
+
+        SystemdJournalAppender invalid = new SystemdJournalAppender();
+        invalid.setContext(loggerContext);
+        invalid.setSpillFile(spillFile.getPath());
+        invalid.setTransport("carrier-pigeon");
+        invalid.start();
+
+        assertThat(invalid.isStarted()).isFalse();
+        assertThat(spillFile).doesNotExist();
+    }
+
+    @Test
+    public void testFailedStartClosesQueueFiles() throws Exception {
+        String queueFile = new File(folder.getRoot(), "journal.queue").getPath();
+        RecordingJournalTransport transport = new RecordingJournalTransport();
+
+        SystemdJournalAppender badSpill = new SystemdJournalAppender();
+        badSpill.setContext(loggerContext);
+        badSpill.setQueueFile(queueFile);
+        badSpill.setWriterThreads(2);
+        badSpill.setSpillFile(new File(folder.newFile("not-a-directory"), "journal.spill").getPath());
+        badSpill.transport = transport;
+        badSpill.transportFactory = () -> transport;
+        badSpill.start();
+        assertThat(badSpill.isStarted()).isFalse();
+        assertThat(openFiles()).noneMatch(path -> path.startsWith(queueFile));
+
+        SystemdJournalAppender badTransport = new SystemdJournalAppender();
+        badTransport.setContext(loggerContext);
+        badTransport.setQueueFile(queueFile);
+        badTransport.setTransport("carrier-pigeon");
+        badTransport.start();
+        assertThat(badTransport.isStarted()).isFalse();
+        assertThat(openFiles()).noneMatch(path -> path.startsWith(queueFile));
+
+        // a fixed configuration starts normally
+        badSpill.setSpillFile(null);
+        badSpill.start();
+        assertThat(badSpill.isStarted()).isTrue();
+        badSpill.doAppend(createLoggingEvent(Level.INFO, "message", null, new HashMap<>()));
+        badSpill.stop();
+        assertThat(transport.messages()).containsExactly("message");
+    }
+
+    /** the files this process has open, Linux only */
+    private static List<String> openFiles() throws IOException {
+        List<String> files = new ArrayList<>();
+        try (DirectoryStream<Path> fds = Files.newDirectoryStream(Paths.get("/proc/self/fd"))) {
+            for (Path fd : fds) {
+                try {
+                    files.add(Files.readSymbolicLink(fd).toString());
+                } catch (IOException e) {
+                    // closed in the meantime
+                }
+            }
+        }
+        return files;
+    }
+
+    @Test
+    public void testMissingLibraryFailsOnceAtStart() {
+        String previous = System.getProperty("systemd.library");
+        System.setProperty("systemd.library", "no-such-systemd-library");
+        try {
+            ListAppender<ILoggingEvent> fallback = new ListAppender<>();
+            fallback.start();
+
+            SystemdJournalAppender missing = new SystemdJournalAppender();
+            missing.setContext(loggerContext);
+            missing.addAppender(fallback);
+            missing.start();
+            assertThat(missing.isStarted()).isTrue();
+
+            for (int i = 0; i < 10; i++) {
+                missing.append(createLoggingEvent(Level.INFO, "message " + i, null, new HashMap<>()));
+            }
+
+            assertThat(fallback.list).hasSize(10);
+            assertThat(loggerContext.getStatusManager().getCopyOfStatusList())
+                    .filteredOn(status -> status.getLevel() == Status.ERROR)
+                    .hasSize(1)
+                    .allMatch(status -> status.getMessage().startsWith("systemd journal is not available"));
+
+            missing.stop();
+        } finally {
+            if (previous == null) {
+                System.clearProperty("systemd.library");
+            } else {
+                System.setProperty("systemd.library", previous);
+            }
+        }
+    }
+
+    @Test
+    public void testTransportWarmUpInBackground() {
+        RecordingJournalTransport transport = new RecordingJournalTransport();
+
+        SystemdJournalAppender warmedUp = new SystemdJournalAppender();
+        warmedUp.setContext(loggerContext);
+        warmedUp.setTransportWarmUp(true);
+        warmedUp.transport = transport;
+        warmedUp.start();
+
+        warmedUp.append(createLoggingEvent(Level.INFO, "first message", null, new HashMap<>()));
+
+        assertThat(transport.messages()).containsExactly("first message");
+
+        warmedUp.stop();
+    }
+
+    @Test
+    public void testVirtualThreadEventsAreSentFromWriterThread() throws Exception {
+        Method startVirtualThread;
+        try {
+            startVirtualThread = Thread.class.getMethod("startVirtualThread", Runnable.class);
+        } catch (NoSuchMethodException e) {
+            startVirtualThread = null;
+        }
+        Assume.assumeNotNull(startVirtualThread);
+
+        List<Thread> senders = new CopyOnWriteArrayList<>();
+        RecordingJournalTransport transport = new RecordingJournalTransport() {
+            @Override
+            public synchronized void send(JournalEntry entry) throws IOException {
+                senders.add(Thread.currentThread());
+                super.send(entry);
+            }
+        };
+
+        SystemdJournalAppender offloading = new SystemdJournalAppender();
+        offloading.setContext(loggerContext);
+        offloading.transport = transport;
+        offloading.transportFactory = () -> transport;
+        offloading.start();
+
+        Thread producer = (Thread) startVirtualThread.invoke(null, (Runnable) () -> {
+            for (int i = 0; i < 100; i++) {
+                offloading.doAppend(createLoggingEvent(Level.INFO, "message " + i, null, new HashMap<>()));
+            }
+        });
+        producer.join();
+        // platform threads are still sent directly
+        offloading.doAppend(createLoggingEvent(Level.INFO, "platform", null, new HashMap<>()));
+        offloading.stop();
+
+        assertThat(transport.messages()).hasSize(101).startsWith("message 0").endsWith("message 99", "platform");
+        assertThat(senders.subList(0, 100)).noneMatch(JournalWriterShard::isVirtual);
+        assertThat(senders.get(100)).isSameAs(Thread.currentThread());
+    }
+
+    @Test
+    public void testPlatformThreadsAreSentDirectlyAfterVirtualThreads() throws Exception {
+        List<Thread> senders = new CopyOnWriteArrayList<>();
+        RecordingJournalTransport transport = new RecordingJournalTransport() {
+            @Override
+            public synchronized void send(JournalEntry entry) throws IOException {
+                senders.add(Thread.currentThread());
+                super.send(entry);
+            }
+        };
+
+        SystemdJournalAppender offloading = new SystemdJournalAppender();
+        offloading.setContext(loggerContext);
+        offloading.transport = transport;
+        offloading.transportFactory = () -> transport;
+        Thread producer =
+                new Thread(() -> offloading.doAppend(createLoggingEvent(Level.INFO, "virtual", null, new HashMap<>())));
+        // stands for a virtual thread, whatever the Java version
+        offloading.virtualThreads = thread -> thread == producer;
+        offloading.start();
+
+        producer.start();
+        producer.join();
+        offloading.doAppend(createLoggingEvent(Level.INFO, "platform", null, new HashMap<>()));
+        offloading.stop();
+
+        assertThat(transport.messages()).containsExactlyInAnyOrder("virtual", "platform");
+        int platform = transport.messages().indexOf("platform");
+        assertThat(senders.get(platform)).isSameAs(Thread.currentThread());
+        assertThat(senders.get(1 - platform)).isNotSameAs(producer).isNotSameAs(Thread.currentThread());
+    }
+
+    @Test
+    public void testWriterThreadsKeepPerThreadOrder() throws Exception {
+        RecordingJournalTransport transport = new RecordingJournalTransport();
+
+        SystemdJournalAppender sharded = new SystemdJournalAppender();
+        sharded.setContext(loggerContext);
+        sharded.setWriterThreads(4);
+        sharded.setWriterQueueCapacity(new FileSize(4 * FileSize.KB_COEFFICIENT));
+        sharded.transport = transport;
+        sharded.transportFactory = () -> transport;
+        sharded.start();
+
+        Thread[] producers = new Thread[8];
+        for (int t = 0; t < producers.length; t++) {
+            String prefix = "producer " + t + " ";
+            producers[t] = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    sharded.doAppend(createLoggingEvent(Level.INFO, prefix + i, null, new HashMap<>()));
+                }
+            });
+            producers[t].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        sharded.stop();
+
+        List<String> messages = transport.messages();
+        assertThat(messages).hasSize(8 * 200);
+        for (int t = 0; t < producers.length; t++) {
+            String prefix = "producer " + t + " ";
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                expected.add(prefix + i);
+            }
+            assertThat(messages.stream().filter(m -> m.startsWith(prefix))).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    public void testWriterThreadsStartTheirTransportAgain() throws Exception {
+        AtomicInteger starts = new AtomicInteger();
+        RecordingJournalTransport transport = new RecordingJournalTransport() {
+            @Override
+            public void start() throws IOException {
+                if (starts.incrementAndGet() == 1) {
+                    throw new IOException("journald socket not there yet");
+                }
+            }
+        };
+
+        SystemdJournalAppender retrying = new SystemdJournalAppender();
+        retrying.setContext(loggerContext);
+        retrying.setWriterThreads(1);
+        retrying.transport = new RecordingJournalTransport();
+        retrying.transportFactory = () -> transport;
+        retrying.start();
+
+        retrying.doAppend(createLoggingEvent(Level.INFO, "after a failed start", null, new HashMap<>()));
+        retrying.stop();
+
+        assertThat(starts.get()).isEqualTo(2);
+        assertThat(transport.messages()).containsExactly("after a failed start");
+    }
+
+    @Test
+    public void testWriterThreadsCheckSpillWithoutLock() throws Exception {
+        RecordingJournalTransport transport = new RecordingJournalTransport();
+
+        SystemdJournalAppender spilling = new SystemdJournalAppender();
+        spilling.setContext(loggerContext);
+        spilling.setWriterThreads(1);
+        spilling.setSpillFile(folder.newFile("journal.spill").getPath());
+        spilling.transport = transport;
+        spilling.transportFactory = () -> transport;
+        spilling.start();
+
+        // sent by the writer thread while the appender lock is held
+        synchronized (spilling) {
+            spilling.doAppend(createLoggingEvent(Level.INFO, "not blocked", null, new HashMap<>()));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (transport.messages().isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(transport.messages()).containsExactly("not blocked");
+        }
+        spilling.stop();
+    }
+
+    @Test
+    public void testWriterThreadsFormatDeferredEvents() throws Exception {
+        RecordingJournalTransport transport = new RecordingJournalTransport();
+        List<String> formattingThreads = new CopyOnWriteArrayList<>();
+        LayoutBase<ILoggingEvent> layout = new LayoutBase<ILoggingEvent>() {
+            @Override
+            public String doLayout(ILoggingEvent event) {
+                formattingThreads.add(Thread.currentThread().getName());
+                return event.getFormattedMessage();
+            }
+        };
+        LayoutWrappingEncoder<ILoggingEvent> encoder = new LayoutWrappingEncoder<>();
+        encoder.setLayout(layout);
+        encoder.setContext(loggerContext);
+        encoder.start();
+
+        SystemdJournalAppender deferred = new SystemdJournalAppender();
+        deferred.setContext(loggerContext);
+        deferred.setName("deferred");
+        deferred.setWriterThreads(1);
+        deferred.setEncoder(encoder);
+        deferred.transport = transport;
+        deferred.transportFactory = () -> transport;
+        deferred.start();
+
+        StringBuilder mutable = new StringBuilder("before");
+        LoggingEvent event = createLoggingEvent(Level.INFO, "value {} of {}", null, new HashMap<>());
+        event.setArgumentArray(new Object[] {42, mutable});
+        deferred.doAppend(event);
+        mutable.setLength(0);
+        mutable.append("after");
+        deferred.stop();
+
+        assertThat(transport.messages()).containsExactly("value 42 of before");
+        assertThat(transport.fields(0))
+                .containsEntry("THREAD_NAME", Thread.currentThread().getName());
+        assertThat(formattingThreads).containsExactly("deferred-writer-0");
+    }
+
+    @Test
+    public void testDeferredEventsKeepCallerDataForPatterns() throws Exception {
+        RecordingJournalTransport transport = new RecordingJournalTransport();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setPattern("%msg in %M");
+        encoder.setContext(loggerContext);
+        encoder.start();
+
+        SystemdJournalAppender deferred = new SystemdJournalAppender();
+        deferred.setContext(loggerContext);
+        deferred.setWriterThreads(1);
+        deferred.setEncoder(encoder);
+        deferred.transport = transport;
+        deferred.transportFactory = () -> transport;
+        deferred.start();
+
+        // the caller is whoever called doAppend
+        LoggingEvent event =
+                new LoggingEvent(UnsynchronizedAppenderBase.class.getName(), logger, Level.INFO, "message", null, null);
+        event.setMDCPropertyMap(new HashMap<>());
+        deferred.doAppend(event);
+        deferred.stop();
+
+        assertThat(transport.messages()).containsExactly("message in testDeferredEventsKeepCallerDataForPatterns");
+    }
+
+    @Test
+    public void testSequenceNumbersShowLostEntries() throws Exception {
+        RecordingJournalTransport transport = new RecordingJournalTransport();
+
+        SystemdJournalAppender numbered = new SystemdJournalAppender();
+        numbered.setContext(loggerContext);
+        numbered.setLogSequenceNumber(true);
+        numbered.setWriterThreads(2);
+        numbered.transport = transport;
+        numbered.transportFactory = () -> transport;
+        numbered.start();
+
+        Thread[] producers = new Thread[4];
+        for (int t = 0; t < producers.length; t++) {
+            producers[t] = new Thread(() -> {
+                for (int i = 0; i < 250; i++) {
+                    numbered.doAppend(createLoggingEvent(Level.INFO, "message " + i, null, new HashMap<>()));
+                }
+            });
+            producers[t].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        numbered.stop();
+
+        JournalSequenceChecker checker = new JournalSequenceChecker();
+        checker.addAll(transport);
+        assertThat(checker.sequences()).isEqualTo(2);
+        assertThat(checker.entries()).isEqualTo(1000);
+        assertThat(checker.missing()).isZero();
+        assertThat(checker.duplicates()).isZero();
+
+        // entries that do not reach the journal leave gaps
+        RecordingJournalTransport flaky = new RecordingJournalTransport();
+        SystemdJournalAppender direct = new SystemdJournalAppender();
+        direct.setContext(loggerContext);
+        direct.setLogSequenceNumber(true);
+        direct.setCircuitBreakerThreshold(0);
+        direct.transport = flaky;
+        direct.start();
+        for (int i = 0; i < 10; i++) {
+            flaky.failing = i % 3 == 1;
+            direct.doAppend(createLoggingEvent(Level.INFO, "message " + i, null, new HashMap<>()));
+        }
+        direct.stop();
+
+        checker = new JournalSequenceChecker();
+        checker.addAll(flaky);
+        assertThat(checker.missing()).isEqualTo(3);
+        assertThat(checker.gaps())
+                .hasSize(3)
+                .allMatch(gap -> gap.endsWith(":2") || gap.endsWith(":5") || gap.endsWith(":8"));
+    }
+
+    @Test
+    public void testExportTransportWritesFile() throws Exception {
+        File file = new File(folder.getRoot(), "journal.export");
+
+        SystemdJournalAppender exporting = new SystemdJournalAppender();
+        exporting.setContext(loggerContext);
+        exporting.setTransport("export");
+        exporting.setExportFile(file.getPath());
+        exporting.setWriterThreads(2);
+        exporting.start();
+        for (int i = 0; i < 10; i++) {
+            exporting.doAppend(createLoggingEvent(Level.INFO, "message " + i, null, new HashMap<>()));
+        }
+        exporting.doAppend(createLoggingEvent(Level.ERROR, "multi\nline", null, new HashMap<>()));
+        exporting.stop();
+
+        List<Map<String, String>> entries = JournalExportTransportTest.parse(file);
+        assertThat(entries).hasSize(11);
+        assertThat(entries.get(10))
+                .containsEntry("MESSAGE", "multi\nline")
+                .containsEntry("PRIORITY", "3")
+                .containsKey("__REALTIME_TIMESTAMP");
+        assertThat(entries.get(10).get("__REALTIME_TIMESTAMP"))
+                .isEqualTo(entries.get(10).get("EVENT_TIMESTAMP_USEC"));
+    }
+
+    @Test
+    public void testQueueFileIsSentAfterRestart() throws Exception {
+        String queueFile = new File(folder.getRoot(), "journal.queue").getPath();
+        RecordingJournalTransport down = new RecordingJournalTransport();
+        down.failing = true;
+
+        SystemdJournalAppender first = new SystemdJournalAppender();
+        first.setContext(loggerContext);
+        first.setQueueFile(queueFile);
+        first.setMaxFlushTime(Duration.buildByMilliseconds(100));
+        first.transport = down;
+        first.transportFactory = () -> down;
+        first.start();
+        for (int i = 0; i < 5; i++) {
+            first.doAppend(createLoggingEvent(Level.INFO, "message " + i, null, new HashMap<>()));
+        }
+        first.stop();
+
+        assertThat(down.entries()).isEmpty();
+        assertThat(down.failures).isGreaterThan(0);
+
+        RecordingJournalTransport up = new RecordingJournalTransport();
+        SystemdJournalAppender second = new SystemdJournalAppender();
+        second.setContext(loggerContext);
+        second.setQueueFile(queueFile);
+        second.transport = up;
+        second.transportFactory = () -> up;
+        second.start();
+        second.doAppend(createLoggingEvent(Level.INFO, "message 5", null, new HashMap<>()));
+        second.stop();
+
+        assertThat(up.messages())
+                .containsExactly("message 0", "message 1", "message 2", "message 3", "message 4", "message 5");
+    }
+
+    @Test
+    public void testStageTimingsAreExposedThroughJmx() throws Exception {
+        RecordingJournalTransport transport = new RecordingJournalTransport();
+
+        SystemdJournalAppender timed = new SystemdJournalAppender();
+        timed.setContext(loggerContext);
+        timed.setName("timed");
+        timed.setTimingSampleInterval(1);
+        timed.transport = transport;
+        timed.start();
+
+        for (int i = 0; i < 10; i++) {
+            timed.doAppend(createLoggingEvent(Level.INFO, "message " + i, null, new HashMap<>()));
+        }
+        timed.doAppend(createLoggingEvent(Level.ERROR, "failure", new RuntimeException("boom"), new HashMap<>()));
+
+        Map<String, Long> counts = new HashMap<>();
+        for (JournalStageTiming timing : timed.getStageTimings()) {
+            counts.put(timing.getStage(), timing.getCount());
+        }
+        assertThat(counts)
+                .containsEntry("FORMAT", 11L)
+                .containsEntry("FIELDS", 11L)
+                .containsEntry("STACK_TRACE", 1L)
+                .containsEntry("MDC", 0L)
+                .containsEntry("SEND", 11L);
+
+        ObjectName name = new ObjectName("com.dgkncgty.logback:type=SystemdJournalAppender,context="
+                + ObjectName.quote(String.valueOf(loggerContext.getName())) + ",name=" + ObjectName.quote("timed"));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertThat(server.isRegistered(name)).isTrue();
+        assertThat((Object[]) server.getAttribute(name, "StageTimings")).hasSize(5);
+
+        timed.stop();
+        assertThat(server.isRegistered(name)).isFalse();
+    }
+
+    static class FailingJournal extends InMemoryJournal {
+        int calls = 0;
+
+        @Override
+        public int sd_journal_print(int priority, String format, Object... args) {
+            calls++;
+            return -2;
+        }
+
+        @Override
+        public int sd_journal_send(String format, Object... args) {
+            calls++;
+            return -2;
+        }
+
+        @Override
+        public int sd_journal_sendv(Pointer iov, int n) {
+            calls++;
+            return -2;
+        }
+
+        @Override
+        public int sd_journal_perror(String message) {
+            calls++;
+            return -2;
+        }
+    }
+
     // Helper method to create logging events
     private LoggingEvent createLoggingEvent(Level level, String message, Throwable throwable, Map<String, String> mdc) {
         LoggingEvent event = new LoggingEvent("com.example.TestClass", logger, level, message, throwable, null);
@@ -0,0 +1,84 @@
+package com.dgkncgty.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.util.Duration;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the throughput of the appender from 1 to 32 logging threads, with
+ * events sent from the logging threads and through writer threads.
+ *
+ * <p>Entries go to a transport that only counts them, so that this measures
+ * the appender itself and not journald. Run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.dgkncgty.logback.WriterScalingBenchmark}, optionally
+ * passing the number of events per thread and of writer threads as arguments.
+ */
+public class WriterScalingBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32};
+
+    public static void main(String[] args) throws Exception {
+        int eventsPerThread = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int writerThreads = args.length > 1
+                ? Integer.parseInt(args[1])
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+        System.out.printf("%8s %20s %20s%n", "threads", "direct (events/s)", writerThreads + " writers (events/s)");
+        for (int threads : THREADS) {
+            double direct = run(threads, eventsPerThread, 0);
+            double sharded = run(threads, eventsPerThread, writerThreads);
+            System.out.printf("%8d %20.0f %20.0f%n", threads, direct, sharded);
+        }
+    }
+
+    private static double run(int threads, int eventsPerThread, int writerThreads) throws InterruptedException {
+        LoggerContext context = new LoggerContext();
+        Logger logger = context.getLogger(WriterScalingBenchmark.class);
+        LongAdder sent = new LongAdder();
+        JournalTransport counting = entry -> sent.increment();
+
+        SystemdJournalAppender appender = new SystemdJournalAppender();
+        appender.setContext(context);
+        appender.setWriterThreads(writerThreads);
+        appender.transport = counting;
+        appender.transportFactory = () -> counting;
+        appender.start();
+
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            producers[t] = new Thread(() -> {
+                LoggingEvent event = new LoggingEvent(
+                        WriterScalingBenchmark.class.getName(), logger, Level.INFO, "benchmark message {}", null, null);
+                event.setMDCPropertyMap(new HashMap<>());
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < eventsPerThread; i++) {
+                    appender.doAppend(event);
+                }
+            });
+            producers[t].start();
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        appender.setMaxFlushTime(Duration.buildByMinutes(1));
+        appender.stop();
+        long elapsed = System.nanoTime() - start;
+        return sent.sum() * 1e9 / elapsed;
+    }
+}